@@ -0,0 +1,305 @@
+package projects.graph;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>{@link AdaptiveGraph} is a {@link Graph} that picks its own representation. It serves every call from one of three
+ * complete implementations of this package, and it keeps track of the density E / V^2 of the graph and of the mix of
+ * operations that it receives:</p>
+ * <ul>
+ *     <li>{@link Representation#MATRIX}, a {@link TiledAdjacencyMatrixGraph}, for dense graphs, and for moderately dense
+ *     graphs whose workload is dominated by {@link #edgeBetween(int, int)} and {@link #getEdgeWeight(int, int)}, which a
+ *     matrix answers in O(1) time.</li>
+ *     <li>{@link Representation#SPARSE}, an {@link IndexedSparseAdjacencyMatrixGraph}, for sparse graphs whose workload
+ *     is dominated by mutations, which it buffers in amortized O(1) time. Since the first query after a run of mutations
+ *     merges the buffer in O(V + E) time, the window must also interleave few queries with its mutations: the merges
+ *     that it would have caused may cost at most {@link #MERGE_COST_PER_MUTATION} per mutation.</li>
+ *     <li>{@link Representation#LIST}, a {@link DeltaCSRGraph}, for all other sparse graphs. Its rows are contiguous arrays,
+ *     so it suits neighbor scans, like {@link #getNeighbors(int)} and the traversals of {@link Graph}, and it absorbs
+ *     interleaved mutations in its delta log.</li>
+ * </ul>
+ * <p>Every {@link #getWindowSize()} operations, the counts of the window that just ended are compared to the thresholds
+ * of the instance, and if another representation suits them better, the graph <b>migrates</b> to it: the current
+ * representation is converted to a {@link CSRGraph} and the new one is built out of it in bulk, in O(V + E) time for
+ * the sparse representations and O(V^2 / {@link TiledAdjacencyMatrixGraph#TILE_SIZE}^2 + E) time for the matrix. Since a
+ * migration can only happen once per window, its cost is amortized over at least as many operations. The graph only
+ * leaves the matrix once its density drops to half the threshold that made it enter it, so that a density that
+ * hovers around the threshold does not cause a migration per window.</p>
+ *
+ * <p>The shortest path searches of {@link Graph} count as a <b>single</b> scan each, and run on the current
+ * representation as a whole, so that a migration never happens in the middle of a search.</p>
+ *
+ * <p>Like most implementations of this package, {@link AdaptiveGraph} is not thread-safe.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see TiledAdjacencyMatrixGraph
+ * @see IndexedSparseAdjacencyMatrixGraph
+ * @see DeltaCSRGraph
+ */
+public class AdaptiveGraph extends Graph {
+
+    /**
+     * The representations that an {@link AdaptiveGraph} switches between.
+     */
+    public enum Representation {
+        /** A {@link TiledAdjacencyMatrixGraph}. */
+        MATRIX,
+        /** A {@link DeltaCSRGraph}. */
+        LIST,
+        /** An {@link IndexedSparseAdjacencyMatrixGraph}. */
+        SPARSE
+    }
+
+    /**
+     * The default density E / V^2 above which the graph is stored as a matrix.
+     */
+    public static final double DEFAULT_DENSE_THRESHOLD = 0.25;
+
+    /**
+     * The default share of mutations in a window above which a sparse graph is stored as a {@link Representation#SPARSE}
+     * matrix.
+     */
+    public static final double DEFAULT_WRITE_THRESHOLD = 0.9;
+
+    /**
+     * The maximum estimated cost of the merges of a {@link Representation#SPARSE} matrix per mutation of a window, for the
+     * window to be served by one. Every query that follows a mutation counts as a merge of cost V + E.
+     */
+    public static final int MERGE_COST_PER_MUTATION = 64;
+
+    /**
+     * The default number of operations between two evaluations of the representation.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 12;
+
+    /* The share of lookups in a window above which a graph of a quarter of the dense threshold is stored as a matrix. */
+    private static final double LOOKUP_THRESHOLD = 0.5;
+
+    private final double denseThreshold, writeThreshold;
+    private final int windowSize;
+    private Graph delegate;
+    private Representation representation;
+    private int lookups, scans, mutations, operations;
+    private int merges; // The queries of the window that followed a mutation, each of which merges a sparse matrix.
+    private boolean mutated; // Whether the last operation was a mutation.
+    private int migrations;
+
+    /**
+     * Creates an empty {@link AdaptiveGraph} with the default thresholds. It starts out as a {@link Representation#LIST}.
+     */
+    public AdaptiveGraph(){
+        this(DEFAULT_DENSE_THRESHOLD, DEFAULT_WRITE_THRESHOLD, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates an empty {@link AdaptiveGraph} with the provided thresholds. It starts out as a {@link Representation#LIST}.
+     * @param denseThreshold The density E / V^2 above which the graph is stored as a matrix.
+     * @param writeThreshold The share of mutations in a window above which a sparse graph is stored as a
+     *                       {@link Representation#SPARSE} matrix.
+     * @param windowSize The number of operations between two evaluations of the representation.
+     * @throws RuntimeException if denseThreshold or writeThreshold are not in (0, 1], or if windowSize &lt; 1.
+     */
+    public AdaptiveGraph(double denseThreshold, double writeThreshold, int windowSize){
+        if(!(denseThreshold > 0 && denseThreshold <= 1) || !(writeThreshold > 0 && writeThreshold <= 1))
+            throw new RuntimeException("AdaptiveGraph::AdaptiveGraph(): Thresholds should be in (0, 1], were " +
+                    denseThreshold + " and " + writeThreshold + ".");
+        if(windowSize < 1)
+            throw new RuntimeException("AdaptiveGraph::AdaptiveGraph(): Window size should be positive, was: " + windowSize + ".");
+        this.denseThreshold = denseThreshold;
+        this.writeThreshold = writeThreshold;
+        this.windowSize = windowSize;
+        delegate = new DeltaCSRGraph();
+        representation = Representation.LIST;
+    }
+
+    @Override
+    public void addNode() {
+        record(0, 0, 1);
+        delegate.addNode();
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        record(0, 0, 1);
+        delegate.addEdge(source, dest, weight);
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        record(0, 0, 1);
+        delegate.deleteEdge(source, dest);
+    }
+
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        record(0, 0, sources.length);
+        delegate.addEdges(sources, dests, weights);
+    }
+
+    @Override
+    public void deleteEdges(int[] sources, int[] dests) {
+        record(0, 0, sources.length);
+        delegate.deleteEdges(sources, dests);
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        record(1, 0, 0);
+        return delegate.edgeBetween(source, dest);
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        record(1, 0, 0);
+        return delegate.getEdgeWeight(source, dest);
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        record(0, 1, 0);
+        return delegate.getNeighbors(node);
+    }
+
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        record(0, 1, 0);
+        delegate.forEachNeighbor(node, visitor);
+    }
+
+    @Override
+    public List<Integer> shortestPath(int source, int dest, ShortestPathWorkspace ws) {
+        record(0, 1, 0);
+        return delegate.shortestPath(source, dest, ws);
+    }
+
+    @Override
+    public List<Integer> shortestPath(int source, int dest, Heuristic heuristic, ShortestPathWorkspace ws) {
+        record(0, 1, 0);
+        return delegate.shortestPath(source, dest, heuristic, ws);
+    }
+
+    @Override
+    public List<Integer> bidirectionalShortestPath(int source, int dest, Graph reverse) {
+        record(0, 1, 0);
+        return delegate.bidirectionalShortestPath(source, dest, reverse);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return delegate.getNumNodes();
+    }
+
+    @Override
+    public int getNumEdges() {
+        return delegate.getNumEdges();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        lookups = scans = mutations = operations = merges = 0;
+        mutated = false;
+    }
+
+    @Override
+    public CSRGraph transpose() {
+        return delegate.transpose();
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the representation that currently serves the calls.
+     * @return The current {@link Representation}.
+     */
+    public Representation getRepresentation(){
+        return representation;
+    }
+
+    /**
+     * Returns the number of times that the graph has changed representation.
+     * @return The number of migrations so far.
+     */
+    public int getMigrations(){
+        return migrations;
+    }
+
+    /**
+     * Returns the number of operations between two evaluations of the representation.
+     * @return The size of the window.
+     */
+    public int getWindowSize(){
+        return windowSize;
+    }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, through the toCSRGraph() method of the current
+     * representation.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return CSRGraph.fromGraph(delegate);
+    }
+
+    /* Counts an operation, and re-evaluates the representation at the end of every window, before the operation is
+     * served. */
+    private void record(int lookup, int scan, int mutation){
+        lookups += lookup;
+        scans += scan;
+        mutations += mutation;
+        operations += lookup + scan + mutation;
+        if(mutation > 0){
+            mutated = true;
+        } else if(mutated){
+            merges++;
+            mutated = false;
+        }
+        if(operations < windowSize)
+            return;
+        Representation best = choose();
+        lookups = scans = mutations = operations = merges = 0;
+        if(best != representation)
+            migrate(best);
+    }
+
+    private Representation choose(){
+        int numNodes = delegate.getNumNodes();
+        double density = numNodes == 0 ? 0 : delegate.getNumEdges() / ((double)numNodes * numNodes);
+        double threshold = representation == Representation.MATRIX ? denseThreshold / 2 : denseThreshold;
+        if(density >= threshold || (density >= threshold / 4 && lookups >= LOOKUP_THRESHOLD * operations))
+            return Representation.MATRIX;
+        if(mutations >= writeThreshold * operations &&
+                merges * ((double)numNodes + delegate.getNumEdges()) <= (double)MERGE_COST_PER_MUTATION * mutations)
+            return Representation.SPARSE;
+        return Representation.LIST;
+    }
+
+    private void migrate(Representation target){
+        CSRGraph csr = CSRGraph.fromGraph(delegate);
+        int numNodes = csr.getNumNodes();
+        Graph migrated;
+        if(target == Representation.LIST){
+            migrated = new DeltaCSRGraph(csr); // Adopts the immutable arrays of csr as its base.
+        } else {
+            if(target == Representation.MATRIX){
+                migrated = new TiledAdjacencyMatrixGraph(numNodes);
+                for(int node = 0; node < numNodes; node++)
+                    migrated.addNode();
+            } else {
+                migrated = new IndexedSparseAdjacencyMatrixGraph(numNodes);
+            }
+            int[] sources = new int[csr.targets.length];
+            for(int node = 0; node < numNodes; node++)
+                for(int edge = csr.offsets[node]; edge < csr.offsets[node + 1]; edge++)
+                    sources[edge] = node;
+            migrated.addEdges(sources, csr.targets, csr.weights);
+        }
+        delegate = migrated;
+        representation = target;
+        migrations++;
+    }
+}
@@ -1,5 +1,7 @@
 package projects.graph;
 
+import projects.graph.utils.IntNeighborList;
+import projects.graph.utils.Neighbor;
 import projects.graph.utils.NeighborList;
 
 import java.util.Set;
@@ -12,12 +14,16 @@ import java.util.Set;
  * to be sorted in any way, the insertion of a new edge is a O(1) operation (find the list corresponding to the source node in O(1)
  * and add the new list node up front.</p>
  *
+ * <p>Any element of the array may also be an {@link IntNeighborList}, which is a {@link NeighborList} that stores its
+ * neighbors in primitive arrays instead of list nodes, and which can optionally keep them sorted for binary search.</p>
+ *
  * @author --- YOUR NAME HERE! ---
  *
  * @see Graph
  * @see AdjacencyMatrixGraph
  * @see SparseAdjacencyMatrixGraph
  * @see NeighborList
+ * @see IntNeighborList
  */
 public class AdjacencyListGraph extends Graph {
 
@@ -91,6 +97,27 @@ public class AdjacencyListGraph extends Graph {
         throw UNIMPL_METHOD;
     }
 
+    /**
+     * Visits the {@link NeighborList} of node, in list order. This is an O(deg(node)) operation. For an
+     * {@link IntNeighborList}, it reads the primitive arrays directly and allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        NeighborList neighbors = list[node];
+        if(neighbors == null)
+            return;
+        if(neighbors instanceof IntNeighborList){
+            IntNeighborList row = (IntNeighborList)neighbors;
+            for(int i = 0; i < row.getCount(); i++)
+                visitor.visit(row.getNodeAt(i), row.getWeightAt(i));
+            return;
+        }
+        for(Neighbor n : neighbors)
+            visitor.visit(n.getNode(), n.getWeight());
+    }
+
     /* Methods specific to this class follow. */
 
     /**
@@ -116,4 +143,37 @@ public class AdjacencyListGraph extends Graph {
     public SparseAdjacencyMatrixGraph toSparseAdjacencyMatrixGraph(){
         throw UNIMPL_METHOD;
     }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}. Every {@link NeighborList} is copied into
+     * a contiguous row and then sorted by target node. This is an O(V + E log(deg)) operation.
+     *
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        int numNodes = getNumNodes();
+        int[] offsets = new int[numNodes + 1];
+        for(int i = 0; i < numNodes; i++)
+            offsets[i + 1] = offsets[i] + (list[i] == null ? 0 : list[i].getCount());
+        int[] targets = new int[offsets[numNodes]], weights = new int[offsets[numNodes]];
+        for(int i = 0; i < numNodes; i++){
+            if(list[i] == null)
+                continue;
+            if(list[i] instanceof IntNeighborList){ // No Neighbor instances to allocate, and possibly already sorted.
+                IntNeighborList row = (IntNeighborList)list[i];
+                row.copyTo(targets, weights, offsets[i]);
+                if(!row.isSorted())
+                    CSRGraph.sortRow(targets, weights, offsets[i], offsets[i + 1]);
+                continue;
+            }
+            int edge = offsets[i];
+            for(Neighbor n : list[i]){
+                targets[edge] = n.getNode();
+                weights[edge++] = n.getWeight();
+            }
+            CSRGraph.sortRow(targets, weights, offsets[i], offsets[i + 1]);
+        }
+        return new CSRGraph(offsets, targets, weights);
+    }
 }
\ No newline at end of file
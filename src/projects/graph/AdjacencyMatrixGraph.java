@@ -1,6 +1,7 @@
 package projects.graph;
 
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * <p>{@link AdjacencyMatrixGraph} is a {@link Graph} implemented as an <b>adjacency matrix</b>. An adjacency matrix
@@ -22,6 +23,8 @@ import java.util.Set;
  * @see Graph
  * @see SparseAdjacencyMatrixGraph
  * @see AdjacencyListGraph
+ * @see TiledAdjacencyMatrixGraph
+ * @see BitPackedAdjacencyMatrixGraph
  */
 public class AdjacencyMatrixGraph extends Graph {
 
@@ -97,6 +100,20 @@ public class AdjacencyMatrixGraph extends Graph {
     }
 
 
+    /**
+     * Visits the non-zero cells of the row of node, in ascending column order. This is an O(V) operation that allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        int[] row = matrix[node];
+        int numNodes = getNumNodes();
+        for(int j = 0; j < numNodes; j++)
+            if(row[j] != 0)
+                visitor.visit(j, row[j]);
+    }
+
     /* Methods specific to this class follow. */
 
     /**
@@ -126,4 +143,17 @@ public class AdjacencyMatrixGraph extends Graph {
     public AdjacencyListGraph toAdjacencyListGraph(){
         throw UNIMPL_METHOD;
     }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}. Every row of the matrix is scanned once, in
+     * ascending column order, so the rows of the {@link CSRGraph} come out already sorted. This is an O(V^2) operation,
+     * like every full scan of the matrix, but blocks of rows are scanned in parallel on the common {@link ForkJoinPool}
+     * and then concatenated in <b>row-major order</b>.
+     *
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return CSRGraph.fromRowScans(getNumNodes(), getNumEdges(), this::forEachNeighbor, true, ForkJoinPool.commonPool());
+    }
 }
\ No newline at end of file
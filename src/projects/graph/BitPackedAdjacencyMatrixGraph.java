@@ -0,0 +1,334 @@
+package projects.graph;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>{@link BitPackedAdjacencyMatrixGraph} is a {@link Graph} implemented as a dense adjacency matrix that is stored in
+ * as few bits per cell as its weights allow. The existence of every edge is a single bit of a <tt>long[]</tt> bitset,
+ * in row-major order, and the weights live in a separate <b>weight plane</b> whose width is chosen automatically from
+ * the maximum weight seen so far:</p>
+ *  <ul>
+ *      <li>While every weight is 1, there is no plane at all, and a cell costs 1 bit, instead of the 32 bits of a cell of
+ *      {@link AdjacencyMatrixGraph}.</li>
+ *      <li>Weights up to 255 are stored in a <tt>byte[]</tt> plane, for 9 bits per cell.</li>
+ *      <li>Weights up to 65535 are stored in a <tt>short[]</tt> plane, for 17 bits per cell.</li>
+ *      <li>Larger weights are stored in an <tt>int[]</tt> plane.</li>
+ *  </ul>
+ * <p>The plane is widened, in one O(V^2) pass, the first time a weight that does not fit it is inserted. It is never
+ * narrowed again, even if that weight is later deleted.</p>
+ *
+ * <p>{@link #forEachNeighbor(int, NeighborVisitor)} scans the bitset of a row one 64-bit word at a time and jumps from
+ * edge to edge with {@link Long#numberOfTrailingZeros(long)}, so it costs O(V / 64 + deg) instead of O(V).
+ * {@link #edgeBetween(int, int)}, {@link #getEdgeWeight(int, int)}, {@link #addEdge(int, int, int)} and
+ * {@link #deleteEdge(int, int)} are O(1). Like {@link TiledAdjacencyMatrixGraph}, the matrix doubles its capacity when
+ * it runs out of room, so {@link #addNode()} is amortized O(V).</p>
+ *
+ * <p>Since the planes are flat arrays indexed by an <tt>int</tt>, the graph can hold at most {@link #MAX_NODES} nodes.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see AdjacencyMatrixGraph
+ * @see TiledAdjacencyMatrixGraph
+ */
+public class BitPackedAdjacencyMatrixGraph extends Graph {
+
+    /**
+     * The maximum number of nodes, i.e the largest V such that V^2 cells can be indexed by an <tt>int</tt>.
+     */
+    public static final int MAX_NODES = 46340;
+
+    private static final int UNWEIGHTED = 0, BYTE_PLANE = 8, SHORT_PLANE = 16, INT_PLANE = 32;
+
+    private long[] bits; // Row i occupies the words [i * wordsPerRow, (i + 1) * wordsPerRow).
+    private int wordsPerRow;
+    private int capacity; // The number of rows (and columns) that the arrays have room for.
+    private int planeBits;
+    private byte[] bytePlane;
+    private short[] shortPlane;
+    private int[] intPlane;
+    private int numNodes, numEdges;
+
+    /**
+     * Creates an empty {@link BitPackedAdjacencyMatrixGraph}.
+     */
+    public BitPackedAdjacencyMatrixGraph(){
+        this(0);
+    }
+
+    /**
+     * Creates an empty {@link BitPackedAdjacencyMatrixGraph} with room for capacity nodes, so that the first capacity
+     * calls to {@link #addNode()} never grow it.
+     * @param capacity The number of nodes to pre-size the graph for.
+     * @throws RuntimeException if capacity is not in [0, {@link #MAX_NODES}].
+     */
+    public BitPackedAdjacencyMatrixGraph(int capacity){
+        if(capacity < 0 || capacity > MAX_NODES)
+            throw new RuntimeException("BitPackedAdjacencyMatrixGraph::BitPackedAdjacencyMatrixGraph(): Capacity " +
+                    capacity + " is not in [0, " + MAX_NODES + "].");
+        allocate(Math.max(capacity, 64));
+        numNodes = numEdges = 0;
+    }
+
+    @Override
+    public void addNode() {
+        if(numNodes == capacity){
+            if(capacity == MAX_NODES)
+                throw new RuntimeException("BitPackedAdjacencyMatrixGraph::addNode(): Cannot store more than " + MAX_NODES + " nodes.");
+            grow((int)Math.min(2L * capacity, MAX_NODES));
+        }
+        numNodes++;
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("BitPackedAdjacencyMatrixGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("BitPackedAdjacencyMatrixGraph::addEdge(): Edge " + source + "->" + dest + " is out of bounds.");
+        if(weight > maxWeight(planeBits))
+            widenPlane(weight);
+        set(source, dest, weight);
+    }
+
+    /**
+     * Adds a batch of edges in a single pass, after checking the whole batch once. The weight plane is widened at most
+     * once, for the largest weight of the batch.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, a node is out of bounds or a weight is negative.
+     */
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("BitPackedAdjacencyMatrixGraph::addEdges()", numNodes, sources, dests, weights);
+        int maxBatchWeight = 0;
+        for(int weight : weights)
+            maxBatchWeight = Math.max(maxBatchWeight, weight);
+        if(maxBatchWeight > maxWeight(planeBits))
+            widenPlane(maxBatchWeight);
+        for(int i = 0; i < sources.length; i++)
+            set(sources[i], dests[i], weights[i]);
+    }
+
+    @Override
+    public void deleteEdges(int[] sources, int[] dests) {
+        if(sources.length != dests.length)
+            throw new RuntimeException("BitPackedAdjacencyMatrixGraph::deleteEdges(): The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++)
+            if(contains(sources[i]) && contains(dests[i]))
+                set(sources[i], dests[i], 0);
+    }
+
+    /* Writes a cell whose weight fits the current plane, and keeps the edge count up to date. */
+    private void set(int source, int dest, int weight){
+        int word = source * wordsPerRow + (dest >>> 6);
+        long mask = 1L << dest; // Shifts of longs only use the low 6 bits of the distance.
+        boolean existed = (bits[word] & mask) != 0;
+        if(weight == 0){
+            if(existed){
+                bits[word] &= ~mask;
+                numEdges--;
+            }
+            return;
+        }
+        if(!existed){
+            bits[word] |= mask;
+            numEdges++;
+        }
+        setWeight(source * capacity + dest, weight);
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            addEdge(source, dest, 0);
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return contains(source) && contains(dest) && hasBit(source, dest);
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        return edgeBetween(source, dest) ? weightAt(source * capacity + dest) : 0;
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits the row of node, in ascending column order, one bitset word at a time. This is an O(V / 64 + deg(node))
+     * operation that allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        int rowStart = node * wordsPerRow, cellStart = node * capacity;
+        int usedWords = (numNodes + 63) >>> 6;
+        for(int w = 0; w < usedWords; w++){
+            long word = bits[rowStart + w];
+            while(word != 0){
+                int neighbor = (w << 6) + Long.numberOfTrailingZeros(word);
+                visitor.visit(neighbor, weightAt(cellStart + neighbor));
+                word &= word - 1; // Clears the lowest set bit.
+            }
+        }
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public void clear() {
+        allocate(64);
+        numNodes = numEdges = 0;
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the number of bits that the weight plane spends on every cell: 0 while all weights are 1, and then 8, 16
+     * or 32, depending on the maximum weight seen.
+     * @return The width of the weight plane, in bits.
+     */
+    public int getWeightBits(){
+        return planeBits;
+    }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, built through word scans of every row. Blocks
+     * of rows are scanned in parallel on the common {@link ForkJoinPool} and then concatenated in row-major order.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return CSRGraph.fromRowScans(numNodes, numEdges, this::forEachNeighbor, true, ForkJoinPool.commonPool());
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    private boolean hasBit(int source, int dest){
+        return (bits[source * wordsPerRow + (dest >>> 6)] & (1L << dest)) != 0;
+    }
+
+    private static int maxWeight(int planeBits){
+        switch(planeBits){
+            case UNWEIGHTED:
+                return 1;
+            case BYTE_PLANE:
+                return 0xFF;
+            case SHORT_PLANE:
+                return 0xFFFF;
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+
+    private int weightAt(int cell){
+        switch(planeBits){
+            case UNWEIGHTED:
+                return 1;
+            case BYTE_PLANE:
+                return bytePlane[cell] & 0xFF;
+            case SHORT_PLANE:
+                return shortPlane[cell] & 0xFFFF;
+            default:
+                return intPlane[cell];
+        }
+    }
+
+    private void setWeight(int cell, int weight){
+        switch(planeBits){
+            case UNWEIGHTED:
+                break; // weight == 1.
+            case BYTE_PLANE:
+                bytePlane[cell] = (byte)weight;
+                break;
+            case SHORT_PLANE:
+                shortPlane[cell] = (short)weight;
+                break;
+            default:
+                intPlane[cell] = weight;
+        }
+    }
+
+    private void allocate(int newCapacity){
+        capacity = newCapacity;
+        wordsPerRow = (capacity + 63) >>> 6;
+        bits = new long[capacity * wordsPerRow];
+        planeBits = UNWEIGHTED;
+        bytePlane = null;
+        shortPlane = null;
+        intPlane = null;
+    }
+
+    /* Moves every existing weight to the narrowest plane that can also hold weight. */
+    private void widenPlane(int weight){
+        int newBits = weight <= 0xFF ? BYTE_PLANE : weight <= 0xFFFF ? SHORT_PLANE : INT_PLANE;
+        int cells = capacity * capacity;
+        byte[] newBytes = newBits == BYTE_PLANE ? new byte[cells] : null;
+        short[] newShorts = newBits == SHORT_PLANE ? new short[cells] : null;
+        int[] newInts = newBits == INT_PLANE ? new int[cells] : null;
+        for(int node = 0; node < numNodes; node++){
+            int cellStart = node * capacity;
+            for(int w = 0; w < wordsPerRow; w++){
+                for(long word = bits[node * wordsPerRow + w]; word != 0; word &= word - 1){
+                    int cell = cellStart + (w << 6) + Long.numberOfTrailingZeros(word);
+                    int old = weightAt(cell);
+                    if(newBytes != null)
+                        newBytes[cell] = (byte)old;
+                    else if(newShorts != null)
+                        newShorts[cell] = (short)old;
+                    else
+                        newInts[cell] = old;
+                }
+            }
+        }
+        bytePlane = newBytes;
+        shortPlane = newShorts;
+        intPlane = newInts;
+        planeBits = newBits;
+    }
+
+    /* Copies the bitset and the plane into arrays with room for newCapacity nodes. */
+    private void grow(int newCapacity){
+        int newWordsPerRow = (newCapacity + 63) >>> 6;
+        long[] newBitset = new long[newCapacity * newWordsPerRow];
+        for(int node = 0; node < numNodes; node++)
+            System.arraycopy(bits, node * wordsPerRow, newBitset, node * newWordsPerRow, wordsPerRow);
+        int cells = newCapacity * newCapacity;
+        if(bytePlane != null)
+            bytePlane = copyRows(bytePlane, new byte[cells], newCapacity);
+        else if(shortPlane != null)
+            shortPlane = copyRows(shortPlane, new short[cells], newCapacity);
+        else if(intPlane != null)
+            intPlane = copyRows(intPlane, new int[cells], newCapacity);
+        bits = newBitset;
+        wordsPerRow = newWordsPerRow;
+        capacity = newCapacity;
+    }
+
+    private <T> T copyRows(T from, T to, int newCapacity){
+        for(int node = 0; node < numNodes; node++)
+            System.arraycopy(from, node * capacity, to, node * newCapacity, numNodes);
+        return to;
+    }
+}
@@ -0,0 +1,484 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>{@link CSRGraph} is an <b>immutable</b> {@link Graph} stored in <b>compressed sparse row</b> (CSR) format. Three
+ * primitive arrays make up the entire representation:</p>
+ * <ol>
+ *     <li><tt>offsets</tt>, of length V + 1, where the out-edges of node i occupy the index range
+ *     [offsets[i], offsets[i + 1]) of the two other arrays.</li>
+ *     <li><tt>targets</tt>, of length E, which holds the sink node of every edge.</li>
+ *     <li><tt>weights</tt>, of length E, which holds the weight of every edge.</li>
+ * </ol>
+ *
+ * <p>Within every row, the targets are kept sorted in ascending order. This means that {@link #edgeBetween(int, int)} and
+ * {@link #getEdgeWeight(int, int)} run in O(log(deg)) time via binary search, while a scan of all the neighbors of a node
+ * is a linear walk over contiguous memory, without any of the pointer chasing that the {@link projects.graph.utils.NeighborList}
+ * of {@link AdjacencyListGraph} requires. The space occupied is exactly 4(V + 1) + 8E bytes of array payload, as opposed to a
+ * {@link projects.graph.utils.NeighborList} node and a {@link projects.graph.utils.Neighbor} object per edge.</p>
+ *
+ * <p>Because inserting a single edge in the middle of the arrays costs O(E), the layout is frozen after construction:
+ * {@link #addNode()}, {@link #addEdge(int, int, int)}, {@link #deleteEdge(int, int)}, their batch versions and
+ * {@link #clear()} all throw an {@link UnsupportedOperationException}. Instances are built either through
+ * {@link #fromGraph(Graph)}, through {@link #fromEdges(int, int[], int[], int[])}, or through the toCSRGraph() methods
+ * of the other representations.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see AdjacencyListGraph
+ * @see AdjacencyMatrixGraph
+ * @see SparseAdjacencyMatrixGraph
+ */
+public class CSRGraph extends Graph {
+
+    /* These arrays are read directly by the other classes of the package, so we keep them package-private. They
+     * are never written to after construction. */
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+
+    private static final int PARALLEL_CHUNK_EDGES = 1 << 16; // Smaller chunks are not worth a task of their own.
+    private static final int MIN_BLOCK_ROWS = 64, BLOCKS_PER_THREAD = 4; // For row-parallel conversions.
+
+    private volatile CSRGraph transpose; // Lazily computed, since instances are immutable.
+
+    /**
+     * Package-private constructor that adopts the provided arrays <b>without</b> copying them. The caller guarantees
+     * that the arrays are well-formed (monotone offsets, sorted and duplicate-free rows, positive weights) and that it
+     * will not modify them afterwards.
+     * @param offsets The row offsets, of length V + 1.
+     * @param targets The sink node of every edge.
+     * @param weights The weight of every edge.
+     */
+    CSRGraph(int[] offsets, int[] targets, int[] weights){
+        assert offsets.length >= 1 && offsets[0] == 0 : "CSRGraph(): offsets must start with zero.";
+        assert targets.length == weights.length : "CSRGraph(): targets and weights must be of the same length.";
+        assert offsets[offsets.length - 1] == targets.length : "CSRGraph(): last offset must equal the number of edges.";
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Creates an empty {@link CSRGraph} with the given number of nodes and no edges.
+     * @param numNodes The number of nodes of the graph.
+     * @throws RuntimeException if numNodes &lt; 0.
+     */
+    public CSRGraph(int numNodes){
+        this(checkedOffsets(numNodes), new int[0], new int[0]);
+    }
+
+    private static int[] checkedOffsets(int numNodes){
+        if(numNodes < 0)
+            throw new RuntimeException("CSRGraph(): Negative number of nodes provided: " + numNodes + ".");
+        return new int[numNodes + 1];
+    }
+
+    /**
+     * <p>Builds a {@link CSRGraph} out of any other {@link Graph} instance. If the argument is already a {@link CSRGraph},
+     * it is returned as is, since instances of this class are immutable.</p>
+     *
+     * <p>The conversion is a single call to the toCSRGraph() method of g. The implementations of this package override
+     * it to read their inner representation directly; all other graphs are converted through
+     * {@link Graph#forEachNeighbor(int, NeighborVisitor)}, by {@link #fromNeighborScans(Graph)}.</p>
+     *
+     * @param g The {@link Graph} to convert.
+     * @return A {@link CSRGraph} with the same nodes, edges and weights as g.
+     * @throws NullPointerException if g is null.
+     */
+    public static CSRGraph fromGraph(Graph g){
+        return g.toCSRGraph();
+    }
+
+    /**
+     * Builds a {@link CSRGraph} out of g by visiting the out-edges of every node through
+     * {@link Graph#forEachNeighbor(int, NeighborVisitor)}, and sorting every row. This is the default toCSRGraph() of
+     * {@link Graph}, for implementations that do not know anything better.
+     * @param g The {@link Graph} to convert.
+     * @return A {@link CSRGraph} with the same nodes, edges and weights as g.
+     */
+    static CSRGraph fromNeighborScans(Graph g){
+        int numNodes = g.getNumNodes();
+        int[] offsets = new int[numNodes + 1];
+        EdgeBuffer edges = new EdgeBuffer(Math.max(g.getNumEdges(), 0));
+        for(int node = 0; node < numNodes; node++){
+            int rowStart = edges.size;
+            g.forEachNeighbor(node, edges);
+            sortRow(edges.targets, edges.weights, rowStart, edges.size);
+            offsets[node + 1] = edges.size;
+        }
+        if(edges.size != edges.targets.length){
+            edges.targets = Arrays.copyOf(edges.targets, edges.size);
+            edges.weights = Arrays.copyOf(edges.weights, edges.size);
+        }
+        return new CSRGraph(offsets, edges.targets, edges.weights);
+    }
+
+    /**
+     * Returns this instance, since {@link CSRGraph}s are immutable.
+     * @return This {@link CSRGraph}.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return this;
+    }
+
+    /**
+     * A scan of the row of a node of some other representation. Scans of different rows must be able to run concurrently,
+     * so they may not modify the representation.
+     */
+    interface RowScan {
+        void scan(int node, NeighborVisitor visitor);
+    }
+
+    /**
+     * <p>Builds a {@link CSRGraph} with numNodes nodes by scanning every row of some other representation once. The rows
+     * are split into contiguous blocks that are scanned in parallel on pool, each into a buffer of its own, and the
+     * buffers are then copied into arrays of the exact final size, in row-major order. Used by the toCSRGraph() methods
+     * of the matrix representations, for which a scan costs O(V) per row no matter how few edges it finds.</p>
+     * @param numNodes The number of rows to scan.
+     * @param numEdges The number of edges that the scans will find, used to pre-size the buffers of the blocks.
+     * @param rows The scan of a single row.
+     * @param sorted Whether the scan visits the edges of every row in ascending order of target node already.
+     * @param pool The pool to scan on.
+     * @return A {@link CSRGraph} instance.
+     */
+    static CSRGraph fromRowScans(int numNodes, int numEdges, RowScan rows, boolean sorted, ForkJoinPool pool){
+        int rowsPerBlock = Math.max(MIN_BLOCK_ROWS, (numNodes + BLOCKS_PER_THREAD * pool.getParallelism() - 1) /
+                (BLOCKS_PER_THREAD * pool.getParallelism()));
+        int numBlocks = (numNodes + rowsPerBlock - 1) / rowsPerBlock;
+        int[] offsets = new int[numNodes + 1]; // Block-local at first: block b writes offsets (b * rowsPerBlock, ...].
+        EdgeBuffer[] buffers = new EdgeBuffer[numBlocks];
+        ParallelCountingSort.forEach(pool, numBlocks, b -> {
+            int first = b * rowsPerBlock, last = Math.min(numNodes, first + rowsPerBlock);
+            EdgeBuffer edges = new EdgeBuffer((int)((long)numEdges * (last - first) / numNodes) + 16);
+            for(int node = first; node < last; node++){
+                int rowStart = edges.size;
+                rows.scan(node, edges);
+                if(!sorted)
+                    sortRow(edges.targets, edges.weights, rowStart, edges.size);
+                offsets[node + 1] = edges.size;
+            }
+            buffers[b] = edges;
+        });
+        int[] blockStarts = new int[numBlocks + 1];
+        for(int b = 0; b < numBlocks; b++){
+            if((long)blockStarts[b] + buffers[b].size > Integer.MAX_VALUE - 8)
+                throw new RuntimeException("CSRGraph.fromRowScans(): More than " + (Integer.MAX_VALUE - 8) + " edges.");
+            blockStarts[b + 1] = blockStarts[b] + buffers[b].size;
+        }
+        if(numBlocks == 1 && buffers[0].size == buffers[0].targets.length)
+            return new CSRGraph(offsets, buffers[0].targets, buffers[0].weights);
+        int[] targets = new int[blockStarts[numBlocks]], weights = new int[blockStarts[numBlocks]];
+        ParallelCountingSort.forEach(pool, numBlocks, b -> {
+            EdgeBuffer edges = buffers[b];
+            System.arraycopy(edges.targets, 0, targets, blockStarts[b], edges.size);
+            System.arraycopy(edges.weights, 0, weights, blockStarts[b], edges.size);
+            int first = b * rowsPerBlock, last = Math.min(numNodes, first + rowsPerBlock);
+            for(int node = first; node < last; node++)
+                offsets[node + 1] += blockStarts[b];
+        });
+        return new CSRGraph(offsets, targets, weights);
+    }
+
+    /* Collects visited edges into growable parallel arrays. */
+    private static class EdgeBuffer implements NeighborVisitor {
+        int[] targets, weights;
+        int size;
+
+        EdgeBuffer(int capacity){
+            targets = new int[capacity];
+            weights = new int[capacity];
+        }
+
+        @Override
+        public void visit(int neighbor, int weight) {
+            if(size == targets.length){ // Only if getNumEdges() under-reported.
+                targets = Arrays.copyOf(targets, Math.max(2 * size, 16));
+                weights = Arrays.copyOf(weights, targets.length);
+            }
+            targets[size] = neighbor;
+            weights[size++] = weight;
+        }
+    }
+
+    /**
+     * <p>Builds a {@link CSRGraph} with numNodes nodes out of an edge list given as three parallel arrays, so that
+     * the i-th edge is sources[i] -&gt; dests[i] with weight weights[i]. The build is a counting sort on the source node
+     * followed by a per-row sort, and it runs in O(V + E log(deg)) time without allocating any per-edge objects.</p>
+     *
+     * <p>The semantics follow those of a sequence of {@link #addEdge(int, int, int)} calls in array order: if an edge
+     * appears multiple times, its <b>last</b> weight is kept, and a weight of zero deletes the edge.</p>
+     *
+     * @param numNodes The number of nodes of the graph.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @return A {@link CSRGraph} instance containing the provided edges.
+     * @throws RuntimeException if the arrays differ in length, a node is not in [0, numNodes) or a weight is negative.
+     */
+    public static CSRGraph fromEdges(int numNodes, int[] sources, int[] dests, int[] weights){
+        return fromEdges(numNodes, sources, dests, weights, sources.length);
+    }
+
+    /**
+     * Same as {@link #fromEdges(int, int[], int[], int[])}, but only considers the first numEdges entries of each array.
+     * Useful when the arrays are growable buffers.
+     * @param numNodes The number of nodes of the graph.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @param numEdges The number of array entries to consider.
+     * @return A {@link CSRGraph} instance containing the provided edges.
+     * @throws RuntimeException if the arrays are too short, a node is not in [0, numNodes) or a weight is negative.
+     */
+    public static CSRGraph fromEdges(int numNodes, int[] sources, int[] dests, int[] weights, int numEdges){
+        if(numEdges < 0 || sources.length < numEdges || dests.length < numEdges || weights.length < numEdges)
+            throw new RuntimeException("CSRGraph.fromEdges(): Edge arrays shorter than the number of edges " + numEdges + ".");
+        int[] offsets = checkedOffsets(numNodes);
+        for(int i = 0; i < numEdges; i++){
+            if(sources[i] < 0 || sources[i] >= numNodes || dests[i] < 0 || dests[i] >= numNodes)
+                throw new RuntimeException("CSRGraph.fromEdges(): Edge " + sources[i] + "->" + dests[i] + " is out of bounds.");
+            if(weights[i] < 0)
+                throw new RuntimeException("CSRGraph.fromEdges(): Negative weight " + weights[i] + " provided.");
+            offsets[sources[i] + 1]++;
+        }
+        for(int i = 0; i < numNodes; i++)
+            offsets[i + 1] += offsets[i];
+
+        // Stable scatter: within each row, edges keep the order in which they were provided.
+        int[] cursor = Arrays.copyOf(offsets, numNodes);
+        int[] rowTargets = new int[numEdges], rowWeights = new int[numEdges];
+        for(int i = 0; i < numEdges; i++){
+            int slot = cursor[sources[i]]++;
+            rowTargets[slot] = dests[i];
+            rowWeights[slot] = weights[i];
+        }
+        return new CSRGraph(offsets, rowTargets, rowWeights).compactRows();
+    }
+
+    /**
+     * <p>Same as {@link #fromEdges(int, int[], int[], int[], int)}, but runs on the provided {@link ForkJoinPool}: the
+     * edges are split into one chunk per worker thread and merged by a parallel counting sort on the source node. The
+     * result is identical to that of the sequential build.</p>
+     * @param numNodes The number of nodes of the graph.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @param numEdges The number of array entries to consider.
+     * @param pool The pool to run the sort on.
+     * @return A {@link CSRGraph} instance containing the provided edges.
+     * @throws RuntimeException if the arrays are too short, a node is not in [0, numNodes) or a weight is negative.
+     * @see ParallelCountingSort
+     */
+    public static CSRGraph fromEdges(int numNodes, int[] sources, int[] dests, int[] weights, int numEdges, ForkJoinPool pool){
+        if(numEdges < 0 || sources.length < numEdges || dests.length < numEdges || weights.length < numEdges)
+            throw new RuntimeException("CSRGraph.fromEdges(): Edge arrays shorter than the number of edges " + numEdges + ".");
+        int numChunks = Math.max(1, Math.min(pool.getParallelism(), numEdges / PARALLEL_CHUNK_EDGES));
+        ParallelCountingSort.EdgeChunk[] chunks = new ParallelCountingSort.EdgeChunk[numChunks];
+        for(int c = 0; c < numChunks; c++)
+            chunks[c] = new ParallelCountingSort.EdgeChunk(sources, dests, weights, (int)((long)c * numEdges / numChunks),
+                    (int)((long)(c + 1) * numEdges / numChunks));
+        return ParallelCountingSort.build(numNodes, chunks, pool);
+    }
+
+    /* Sorts every row, keeps the last occurrence of every duplicate target and drops zero weights. Only ever called
+     * on freshly built, not yet published instances. */
+    private CSRGraph compactRows(){
+        int numNodes = getNumNodes();
+        int end = compactRows(offsets, targets, weights, 0, numNodes, 0);
+        return new CSRGraph(offsets, Arrays.copyOf(targets, end), Arrays.copyOf(weights, end));
+    }
+
+    /**
+     * Compacts the rows of the nodes [fromNode, toNode) in place: every row is sorted by target, only the last occurrence
+     * of every duplicate target is kept and zero weights are dropped. The compacted rows are written contiguously from
+     * start onwards, and offsets[fromNode + 1, toNode] are updated accordingly. Since offsets[fromNode] is neither read
+     * nor written, disjoint node ranges can be compacted in parallel.
+     * @param offsets The row offsets.
+     * @param targets The target array, where the edges of every row are in insertion order.
+     * @param weights The weight array.
+     * @param fromNode The first node, inclusive.
+     * @param toNode The last node, exclusive.
+     * @param start The index of the first edge of fromNode, i.e the original offsets[fromNode].
+     * @return The index right after the last compacted edge.
+     */
+    static int compactRows(int[] offsets, int[] targets, int[] weights, int fromNode, int toNode, int start){
+        int write = start, from = start;
+        long[] scratch = new long[0];
+        int[] rowWeights = new int[0];
+        for(int node = fromNode; node < toNode; node++){
+            int to = offsets[node + 1], degree = to - from;
+            if(scratch.length < degree){
+                scratch = new long[Math.max(degree, 2 * scratch.length)];
+                rowWeights = new int[scratch.length];
+            }
+            // The row-local position is packed in the low bits, so that equal targets sort in insertion order.
+            for(int i = 0; i < degree; i++)
+                scratch[i] = ((long)targets[from + i] << 32) | i;
+            System.arraycopy(weights, from, rowWeights, 0, degree); // The writes below may overwrite the row.
+            Arrays.sort(scratch, 0, degree);
+            for(int i = 0; i < degree; i++){
+                int target = (int)(scratch[i] >>> 32);
+                if(i + 1 < degree && (int)(scratch[i + 1] >>> 32) == target)
+                    continue; // A later addition of the same edge overrides this one.
+                int weight = rowWeights[(int)scratch[i]];
+                if(weight == 0)
+                    continue; // Zero weight means deletion.
+                targets[write] = target;
+                weights[write++] = weight;
+            }
+            offsets[node + 1] = write;
+            from = to;
+        }
+        return write;
+    }
+
+    /**
+     * Sorts the range [from, to) of targets in ascending order, permuting the same range of weights accordingly.
+     * The range must not contain duplicate targets. Used by the toCSRGraph() methods of the other representations,
+     * which produce rows in arbitrary order.
+     * @param targets The target array.
+     * @param weights The weight array.
+     * @param from The first index of the row, inclusive.
+     * @param to The last index of the row, exclusive.
+     */
+    static void sortRow(int[] targets, int[] weights, int from, int to){
+        int degree = to - from;
+        if(degree < 2)
+            return;
+        long[] packed = new long[degree];
+        for(int i = 0; i < degree; i++) // Both values are non-negative, so the packed longs sort by target.
+            packed[i] = ((long)targets[from + i] << 32) | weights[from + i];
+        Arrays.sort(packed);
+        for(int i = 0; i < degree; i++){
+            targets[from + i] = (int)(packed[i] >>> 32);
+            weights[from + i] = (int)packed[i];
+        }
+    }
+
+    /* Binary search for dest in the row of source. Returns the index into targets, or a negative number. */
+    int indexOf(int source, int dest){
+        if(source < 0 || source >= getNumNodes())
+            return -1;
+        return Arrays.binarySearch(targets, offsets[source], offsets[source + 1], dest);
+    }
+
+    @Override
+    public void addNode() {
+        throw new UnsupportedOperationException("CSRGraph::addNode(): CSRGraph instances are immutable.");
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        throw new UnsupportedOperationException("CSRGraph::addEdge(): CSRGraph instances are immutable.");
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        throw new UnsupportedOperationException("CSRGraph::deleteEdge(): CSRGraph instances are immutable.");
+    }
+
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        throw new UnsupportedOperationException("CSRGraph::addEdges(): CSRGraph instances are immutable.");
+    }
+
+    @Override
+    public void deleteEdges(int[] sources, int[] dests) {
+        throw new UnsupportedOperationException("CSRGraph::deleteEdges(): CSRGraph instances are immutable.");
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return indexOf(source, dest) >= 0;
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        int index = indexOf(source, dest);
+        return index >= 0 ? weights[index] : 0;
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        for(int i = offsets[node]; i < offsets[node + 1]; i++)
+            neighbors.add(targets[i]);
+        return neighbors;
+    }
+
+    /**
+     * Visits the row of node, in ascending order of target node. This is an O(deg(node)) scan of two contiguous arrays,
+     * which allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        for(int i = offsets[node]; i < offsets[node + 1]; i++)
+            visitor.visit(targets[i], weights[i]);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("CSRGraph::clear(): CSRGraph instances are immutable.");
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the number of edges that leave the provided node. This is an O(1) operation.
+     * @param node The node to retrieve the out-degree of.
+     * @return The out-degree of node.
+     */
+    public int getOutDegree(int node){
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * Returns the transpose of this graph. Since {@link CSRGraph} instances are immutable, the transpose is computed
+     * once, through a counting sort on the target node in O(V + E) time, and cached. The transpose of the transpose
+     * is this instance.
+     * @return The transpose of this graph.
+     */
+    @Override
+    public CSRGraph transpose(){
+        CSRGraph result = transpose;
+        if(result == null){
+            int numNodes = getNumNodes();
+            int[] reverseOffsets = new int[numNodes + 1];
+            for(int target : targets)
+                reverseOffsets[target + 1]++;
+            for(int i = 0; i < numNodes; i++)
+                reverseOffsets[i + 1] += reverseOffsets[i];
+            int[] cursor = Arrays.copyOf(reverseOffsets, numNodes);
+            int[] reverseTargets = new int[targets.length], reverseWeights = new int[weights.length];
+            for(int node = 0; node < numNodes; node++) // Sources are visited in ascending order, so rows come out sorted.
+                for(int i = offsets[node]; i < offsets[node + 1]; i++){
+                    int slot = cursor[targets[i]]++;
+                    reverseTargets[slot] = node;
+                    reverseWeights[slot] = weights[i];
+                }
+            result = new CSRGraph(reverseOffsets, reverseTargets, reverseWeights);
+            result.transpose = this;
+            transpose = result;
+        }
+        return result;
+    }
+}
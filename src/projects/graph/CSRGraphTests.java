@@ -0,0 +1,388 @@
+package projects.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>{@link CSRGraphTests} tests the construction and the queries of {@link CSRGraph} and {@link DeltaCSRGraph}.</p>
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see CSRGraph
+ * @see DeltaCSRGraph
+ * @see MappedCSRGraph
+ * @see EdgeListImporter
+ * @see ConcurrentEdgeIngestor
+ */
+public class CSRGraphTests {
+
+    private static CSRGraph diamond(){
+        // 0 -> 1 (2), 0 -> 2 (5), 1 -> 3 (4), 2 -> 3 (1), 3 -> 0 (7)
+        return CSRGraph.fromEdges(4, new int[]{2, 0, 1, 0, 3}, new int[]{3, 2, 3, 1, 0}, new int[]{1, 5, 4, 2, 7});
+    }
+
+    @Test
+    public void testEmptyCSRGraph(){
+        CSRGraph graph = new CSRGraph(3);
+        assertEquals("An empty CSRGraph should have the requested number of nodes.", 3, graph.getNumNodes());
+        assertEquals("An empty CSRGraph should have no edges.", 0, graph.getNumEdges());
+        assertFalse("An empty CSRGraph should not report any edges.", graph.edgeBetween(0, 1));
+        assertEquals("Neighbors of a node without edges should be an empty set.", 0, graph.getNeighbors(2).size());
+    }
+
+    @Test
+    public void testFromEdges(){
+        CSRGraph graph = diamond();
+        assertEquals("The diamond graph should have 4 nodes.", 4, graph.getNumNodes());
+        assertEquals("The diamond graph should have 5 edges.", 5, graph.getNumEdges());
+        assertTrue("Edge 0->2 should exist.", graph.edgeBetween(0, 2));
+        assertFalse("Edge 2->0 should not exist.", graph.edgeBetween(2, 0));
+        assertEquals("Weight of 0->2 should be 5.", 5, graph.getEdgeWeight(0, 2));
+        assertEquals("Weight of a non-existent edge should be 0.", 0, graph.getEdgeWeight(1, 0));
+        assertEquals("Weight of an edge out of bounds should be 0.", 0, graph.getEdgeWeight(4, 0));
+        assertEquals("Neighbors of 0 should be {1, 2}.", new HashSet<>(Arrays.asList(1, 2)), graph.getNeighbors(0));
+        assertEquals("Out-degree of 3 should be 1.", 1, graph.getOutDegree(3));
+    }
+
+    @Test
+    public void testFromEdgesLastWeightWinsAndZeroDeletes(){
+        CSRGraph graph = CSRGraph.fromEdges(3, new int[]{0, 0, 1, 1}, new int[]{1, 1, 2, 2}, new int[]{3, 8, 4, 0});
+        assertEquals("The last weight of a repeated edge should be kept.", 8, graph.getEdgeWeight(0, 1));
+        assertFalse("A zero weight should delete the edge.", graph.edgeBetween(1, 2));
+        assertEquals("Only one edge should survive.", 1, graph.getNumEdges());
+    }
+
+    @Test
+    public void testFromGraphReturnsSameInstance(){
+        CSRGraph graph = diamond();
+        assertSame("Converting a CSRGraph to a CSRGraph should not copy it.", graph, CSRGraph.fromGraph(graph));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNegativeWeightRejected(){
+        CSRGraph.fromEdges(2, new int[]{0}, new int[]{1}, new int[]{-1});
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable(){
+        diamond().addEdge(0, 3, 1);
+    }
+
+    @Test
+    public void testTranspose(){
+        CSRGraph graph = diamond(), transpose = graph.transpose();
+        assertEquals("The transpose should have as many edges as the graph.", graph.getNumEdges(), transpose.getNumEdges());
+        for(int i = 0; i < graph.getNumNodes(); i++)
+            for(int j = 0; j < graph.getNumNodes(); j++)
+                assertEquals("Edge " + i + "->" + j + " should be reversed in the transpose.", graph.getEdgeWeight(i, j), transpose.getEdgeWeight(j, i));
+        assertSame("The transpose should be cached.", transpose, graph.transpose());
+        assertSame("The transpose of the transpose should be the graph itself.", graph, transpose.transpose());
+    }
+
+    @Test
+    public void testDeltaCSRGraphMutations(){
+        DeltaCSRGraph graph = new DeltaCSRGraph(diamond());
+        graph.addNode();
+        graph.addEdge(4, 0, 3);   // Insertion on the new node.
+        graph.addEdge(0, 2, 9);   // Weight update of a base edge.
+        graph.deleteEdge(1, 3);   // Deletion of a base edge.
+        assertEquals("Graph should have 5 nodes.", 5, graph.getNumNodes());
+        assertEquals("Graph should have 5 edges.", 5, graph.getNumEdges());
+        assertEquals("Updated weight should be visible before compaction.", 9, graph.getEdgeWeight(0, 2));
+        assertFalse("Deleted edge should be hidden before compaction.", graph.edgeBetween(1, 3));
+        assertEquals("Neighbors of 4 should be {0}.", new HashSet<>(Arrays.asList(0)), graph.getNeighbors(4));
+        assertTrue("Mutations should be pending before compaction.", graph.getPendingDeltas() > 0);
+
+        graph.compact();
+        assertEquals("No mutations should be pending after compaction.", 0, graph.getPendingDeltas());
+        assertEquals("Updated weight should survive compaction.", 9, graph.getEdgeWeight(0, 2));
+        assertFalse("Deleted edge should stay deleted after compaction.", graph.edgeBetween(1, 3));
+        assertTrue("Inserted edge should survive compaction.", graph.edgeBetween(4, 0));
+        assertEquals("Graph should still have 5 edges.", 5, graph.getNumEdges());
+    }
+
+    @Test
+    public void testDeltaCSRGraphToCSRGraph(){
+        DeltaCSRGraph graph = new DeltaCSRGraph();
+        for(int i = 0; i < 3; i++)
+            graph.addNode();
+        graph.addEdge(0, 1, 1);
+        graph.addEdge(1, 2, 1);
+        graph.addEdge(0, 1, 0); // Equivalent to a deletion.
+        CSRGraph csr = graph.toCSRGraph();
+        assertEquals("The compacted graph should have 3 nodes.", 3, csr.getNumNodes());
+        assertEquals("The compacted graph should have 1 edge.", 1, csr.getNumEdges());
+        assertTrue("Edge 1->2 should exist in the compacted graph.", csr.edgeBetween(1, 2));
+    }
+
+    @Test
+    public void testForEachNeighbor(){
+        DeltaCSRGraph graph = new DeltaCSRGraph(diamond());
+        graph.addNode();
+        graph.addEdge(0, 4, 6);  // New edge.
+        graph.addEdge(1, 3, 9);  // Updated edge.
+        graph.deleteEdge(2, 3);  // Deleted edge.
+        graph.addEdge(4, 0, 1);  // Edge out of a node that the base lacks.
+        for(Graph g : new Graph[]{diamond(), graph, graph.toCSRGraph()}){
+            for(int node = 0; node < g.getNumNodes(); node++){
+                HashSet<Integer> visited = new HashSet<>();
+                int current = node;
+                g.forEachNeighbor(node, (neighbor, weight) -> {
+                    assertTrue("Neighbor " + neighbor + " should only be visited once.", visited.add(neighbor));
+                    assertEquals("Visited weight should match getEdgeWeight().", g.getEdgeWeight(current, neighbor), weight);
+                });
+                assertEquals("Visited neighbors should match getNeighbors().", g.getNeighbors(node), visited);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedCSRGraph() throws IOException {
+        Path file = Files.createTempFile("graph", ".csr");
+        try {
+            MappedCSRGraph appended = MappedCSRGraph.create(file, 6); // 64-byte segments, to cross segment boundaries.
+            CSRGraph expected = diamond();
+            for(int node = 0; node < expected.getNumNodes(); node++){
+                appended.addNode();
+                int source = node;
+                expected.forEachNeighbor(node, (neighbor, weight) -> appended.addEdge(source, neighbor, weight));
+                appended.addEdge(node, 9, 1); // Forward reference, deleted right after.
+                appended.deleteEdge(node, 9);
+            }
+            assertEquals("The open row should be readable before it is sealed.", 7, appended.getEdgeWeight(3, 0));
+            appended.addEdge(3, 5, 2); // Forward reference to a node that will be added on close.
+            appended.close();
+
+            MappedCSRGraph graph = MappedCSRGraph.open(file, 6, true);
+            assertTrue("Opened graph should be read-only.", graph.isReadOnly());
+            assertEquals("Forward references should have been added as nodes.", 6, graph.getNumNodes());
+            assertEquals("Mapped graph should have all the edges.", 6, graph.getNumEdges());
+            for(int source = 0; source < 4; source++)
+                for(int dest = 0; dest < 4; dest++)
+                    assertEquals("Weight of " + source + "->" + dest + ".", expected.getEdgeWeight(source, dest),
+                            graph.getEdgeWeight(source, dest));
+            assertEquals("Neighbors of node 3.", new HashSet<>(Arrays.asList(0, 5)), graph.getNeighbors(3));
+            assertEquals("Shortest path over the mapped graph.", Arrays.asList(1, 3, 5), graph.shortestPath(1, 5));
+            try {
+                graph.addNode();
+                fail("A read-only graph should reject mutations.");
+            } catch(UnsupportedOperationException ignored){
+                // Expected.
+            }
+            graph.close();
+
+            MappedCSRGraph more = MappedCSRGraph.append(file, 6);
+            more.addNode();
+            more.addEdge(6, 0, 4);
+            more.close();
+            graph = MappedCSRGraph.open(file, 6, true);
+            assertEquals("Appended node should be stored.", 7, graph.getNumNodes());
+            assertEquals("Appended edge should be stored.", 4, graph.getEdgeWeight(6, 0));
+            assertEquals("Existing edges should survive an append.", 2, graph.getEdgeWeight(3, 5));
+            graph.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWriteAndVerify() throws IOException {
+        Path file = Files.createTempFile("graph", ".csr");
+        try {
+            DeltaCSRGraph expected = new DeltaCSRGraph(diamond());
+            expected.addNode();
+            expected.addEdge(4, 2, 3);
+            MappedCSRGraph.write(expected, file);
+            MappedCSRGraph graph = MappedCSRGraph.open(file, 6, true);
+            assertEquals("Written file should have the current format version.", MappedCSRGraph.VERSION, graph.getVersion());
+            assertEquals("Written graph should have all the nodes.", expected.getNumNodes(), graph.getNumNodes());
+            assertEquals("Written graph should have all the edges.", expected.getNumEdges(), graph.getNumEdges());
+            for(int source = 0; source < expected.getNumNodes(); source++)
+                for(int dest = 0; dest < expected.getNumNodes(); dest++)
+                    assertEquals("Weight of " + source + "->" + dest + ".", expected.getEdgeWeight(source, dest),
+                            graph.getEdgeWeight(source, dest));
+            graph.close();
+
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[MappedCSRGraph.HEADER_BYTES + 4] ^= 1; // The weight of the first edge.
+            Files.write(file, bytes);
+            try {
+                MappedCSRGraph.open(file, 6, true);
+                fail("A corrupted file should fail verification.");
+            } catch(IOException ignored){
+                // Expected.
+            }
+            graph = MappedCSRGraph.open(file, 6, false);
+            assertEquals("An unverified open should still read the corrupted weight.", 3, graph.getEdgeWeight(0, 1));
+            graph.close();
+
+            bytes[4] = (byte)(MappedCSRGraph.VERSION - 1); // The format version, in little-endian byte order.
+            Files.write(file, bytes);
+            try {
+                MappedCSRGraph.open(file, 6, false);
+                fail("A file of an older version should be rejected.");
+            } catch(IOException ignored){
+                // Expected.
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEdgeListImport() throws IOException {
+        Path file = Files.createTempFile("graph", ".gr");
+        try {
+            String dimacs = "c The diamond graph.\np sp 4 5\na 1 2 2\na 1 3 5\r\n\na 2 4 4\nc Mid-file comment.\na 3 4 1\na 4 1 7";
+            Files.write(file, dimacs.getBytes(StandardCharsets.US_ASCII));
+            CSRGraph graph = EdgeListImporter.readCSRGraph(file, EdgeListImporter.Format.DIMACS);
+            CSRGraph expected = diamond();
+            assertEquals("Imported graph should have all the nodes.", 4, graph.getNumNodes());
+            assertEquals("Imported graph should have all the edges.", 5, graph.getNumEdges());
+            for(int source = 0; source < 4; source++)
+                for(int dest = 0; dest < 4; dest++)
+                    assertEquals("Weight of " + source + "->" + dest + ".", expected.getEdgeWeight(source, dest),
+                            graph.getEdgeWeight(source, dest));
+
+            DeltaCSRGraph inPlace = new DeltaCSRGraph();
+            EdgeListImporter.read(file, EdgeListImporter.Format.DIMACS, EdgeSink.into(inPlace));
+            assertEquals("Edges added in place should match the bulk load.", 7, inPlace.getEdgeWeight(3, 0));
+
+            Files.write(file, "# u v w\n0\t1\n1 3 9 2019-02-01\n0 1 4\n3 1 0\n\n% Last line.\n".getBytes(StandardCharsets.US_ASCII));
+            graph = EdgeListImporter.readCSRGraph(file, EdgeListImporter.Format.TSV);
+            assertEquals("Number of nodes should follow the largest node.", 4, graph.getNumNodes());
+            assertEquals("A later line should override an earlier one.", 4, graph.getEdgeWeight(0, 1));
+            assertEquals("Extra fields should be ignored.", 9, graph.getEdgeWeight(1, 3));
+            assertEquals("A zero weight should not be an edge.", 2, graph.getNumEdges());
+
+            Files.write(file, "0 1\n1 x\n".getBytes(StandardCharsets.US_ASCII));
+            try {
+                EdgeListImporter.readCSRGraph(file, EdgeListImporter.Format.TSV);
+                fail("A malformed line should be rejected.");
+            } catch(IOException ignored){
+                // Expected.
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParallelImport() throws IOException {
+        Random random = new Random(47);
+        int numNodes = 500, numEdges = 20000;
+        int[] sources = new int[numEdges], dests = new int[numEdges], weights = new int[numEdges];
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < numEdges; i++){
+            sources[i] = random.nextInt(numNodes);
+            dests[i] = random.nextInt(20); // Many duplicates, to check that the last one wins.
+            weights[i] = random.nextInt(4); // Including deletions.
+            text.append(sources[i]).append('\t').append(dests[i]).append(' ').append(weights[i]).append('\n');
+        }
+        CSRGraph expected = CSRGraph.fromEdges(numNodes, sources, dests, weights);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Path file = Files.createTempFile("graph", ".tsv");
+        try {
+            Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+            CSRGraph[] graphs = {CSRGraph.fromEdges(numNodes, sources, dests, weights, numEdges, pool),
+                    EdgeListImporter.readCSRGraph(file, EdgeListImporter.Format.TSV, pool)};
+            for(CSRGraph graph : graphs){
+                assertArrayEquals("Parallel offsets should match the sequential build.", expected.offsets, graph.offsets);
+                assertArrayEquals("Parallel targets should match the sequential build.", expected.targets, graph.targets);
+                assertArrayEquals("Parallel weights should match the sequential build.", expected.weights, graph.weights);
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParallelImportRanges() throws IOException {
+        Random random = new Random(59);
+        int numNodes = 300, numEdges = 5000;
+        StringBuilder dimacs = new StringBuilder("c A header that declares more nodes than the edges use.\np sp ")
+                .append(numNodes + 10).append(' ').append(numEdges).append('\n');
+        StringBuilder tsv = new StringBuilder("# source target weight\n");
+        for(int i = 0; i < numEdges; i++){
+            int source = random.nextInt(numNodes), dest = random.nextInt(30), weight = random.nextInt(4);
+            dimacs.append("a ").append(source + 1).append(' ').append(dest + 1).append(' ').append(weight)
+                    .append(i % 7 == 0 ? "\r\n" : "\n");
+            tsv.append(source).append('\t').append(dest).append(' ').append(weight).append('\n');
+            if(i % 97 == 0){ // Comments and blank lines, anywhere in a range.
+                dimacs.append("c Comment ").append(i).append("\n\n");
+                tsv.append("% Comment ").append(i).append("\n\n");
+            }
+        }
+        String[] texts = {dimacs.toString(), tsv.toString()};
+        EdgeListImporter.Format[] formats = {EdgeListImporter.Format.DIMACS, EdgeListImporter.Format.TSV};
+        Path file = Files.createTempFile("graph", ".txt");
+        try {
+            for(int f = 0; f < formats.length; f++){
+                Files.write(file, texts[f].getBytes(StandardCharsets.US_ASCII));
+                CSRGraph expected = EdgeListImporter.readCSRGraph(file, formats[f]);
+                for(int threads : new int[]{1, 3, 8}){
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        for(long minRangeBytes : new long[]{1, 100, 4096}){ // Up to 32 ranges, many mid-line splits.
+                            CSRGraph graph = EdgeListImporter.readCSRGraph(file, formats[f], pool, minRangeBytes);
+                            String name = formats[f] + " on " + threads + " threads, ranges of " + minRangeBytes + " bytes: ";
+                            assertEquals(name + "the header should count for every range.", expected.getNumNodes(),
+                                    graph.getNumNodes());
+                            assertArrayEquals(name + "offsets.", expected.offsets, graph.offsets);
+                            assertArrayEquals(name + "targets.", expected.targets, graph.targets);
+                            assertArrayEquals(name + "weights.", expected.weights, graph.weights);
+                        }
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testConcurrentIngestion() throws InterruptedException {
+        int numNodes = 50, producers = 4, perProducer = 20000;
+        int[] sources = new int[producers * perProducer], dests = new int[sources.length], weights = new int[sources.length];
+        Random random = new Random(53);
+        for(int i = 0; i < sources.length; i++){
+            int producer = i / perProducer;
+            sources[i] = random.nextInt(numNodes); // Producers share the sources, so they race for the same chunks...
+            dests[i] = producer + producers * random.nextInt(3); // ...but own their edges, so the result is deterministic.
+            weights[i] = random.nextInt(4);
+        }
+        ConcurrentEdgeIngestor ingestor = new ConcurrentEdgeIngestor(numNodes);
+        Thread[] threads = new Thread[producers];
+        for(int t = 0; t < producers; t++){
+            int from = t * perProducer;
+            threads[t] = new Thread(() -> {
+                for(int i = from; i < from + perProducer; i++)
+                    ingestor.edge(sources[i], dests[i], weights[i]);
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads)
+            thread.join();
+        CSRGraph expected = CSRGraph.fromEdges(numNodes, sources, dests, weights), sealed = ingestor.seal();
+        assertArrayEquals("Sealed offsets should match the sequential build.", expected.offsets, sealed.offsets);
+        assertArrayEquals("Sealed targets should match the sequential build.", expected.targets, sealed.targets);
+        assertArrayEquals("Sealed weights should match the sequential build.", expected.weights, sealed.weights);
+        try {
+            ingestor.edge(0, 0, 1);
+            fail("A sealed ingestor should reject edges.");
+        } catch(RuntimeException ignored){
+            // Expected.
+        }
+    }
+}
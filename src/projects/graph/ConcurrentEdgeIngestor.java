@@ -0,0 +1,195 @@
+package projects.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>{@link ConcurrentEdgeIngestor} is a write-only, lock-free {@link EdgeSink}, meant to absorb the output of many
+ * producer threads at once, like the decoders of several edge streams, which a single-threaded
+ * {@link Graph#addEdge(int, int, int)} would funnel through one core. Once all producers are done, {@link #seal()} turns
+ * the ingested edges into a read-optimized {@link CSRGraph}.</p>
+ *
+ * <p>Every node owns a linked list of <b>chunks</b> of (target, weight) slots, newest chunk first, whose sizes double up to
+ * {@link #MAX_CHUNK_SIZE}. A producer claims a slot of the newest chunk of the source node with a single atomic
+ * increment, and then writes to the slot without any further synchronization. The producer that finds the newest chunk
+ * full allocates a bigger one, writes its edge into its first slot, and publishes it with a compare-and-set on the head
+ * of the list; if another producer published a chunk first, it simply retries. So producers never block each other,
+ * producers of different source nodes do not even touch the same memory, and nothing is allocated per edge.</p>
+ *
+ * <p>Slots are claimed in increasing order and chunks are published in order, so the edges of every producer thread keep
+ * their program order. {@link #seal()} therefore has the same semantics as {@link CSRGraph#fromEdges(int, int[], int[],
+ * int[])}, for the edges of every thread: the last weight of a duplicate edge is kept, and a weight of 0 deletes the
+ * edge. The order of the edges of different threads is whichever order they claimed their slots in.</p>
+ *
+ * <p>{@link #seal()} must only be called once every call to {@link #edge(int, int, int)} has returned, and the ends
+ * of the producers must happen-before it, for example through {@link Thread#join()} or the completion of their tasks.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see EdgeSink
+ * @see CSRGraph
+ * @see ParallelCountingSort
+ */
+public class ConcurrentEdgeIngestor implements EdgeSink {
+
+    /**
+     * The size of the first chunk of every node.
+     */
+    public static final int MIN_CHUNK_SIZE = 4;
+
+    /**
+     * The size of chunks past which they stop doubling.
+     */
+    public static final int MAX_CHUNK_SIZE = 1 << 12;
+
+    private static class Chunk {
+        final int[] targets, weights;
+        final Chunk next; // The previous, older chunk.
+        volatile int claimed; // May exceed the capacity, once the chunk is full.
+
+        Chunk(int capacity, Chunk next){
+            targets = new int[capacity];
+            weights = new int[capacity];
+            this.next = next;
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Chunk> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "claimed");
+
+    private final int numNodes;
+    private final AtomicReferenceArray<Chunk> heads;
+    private volatile boolean sealed;
+
+    /**
+     * Creates an empty {@link ConcurrentEdgeIngestor} for a graph with numNodes nodes.
+     * @param numNodes The number of nodes of the graph.
+     * @throws RuntimeException if numNodes is negative.
+     */
+    public ConcurrentEdgeIngestor(int numNodes){
+        if(numNodes < 0)
+            throw new RuntimeException("ConcurrentEdgeIngestor::ConcurrentEdgeIngestor(): Negative number of nodes provided: " +
+                    numNodes + ".");
+        this.numNodes = numNodes;
+        heads = new AtomicReferenceArray<>(numNodes);
+    }
+
+    /**
+     * Appends an edge, without taking any lock. Can be called by any number of threads at the same time.
+     * @param source The source node of the edge.
+     * @param dest The sink node of the edge.
+     * @param weight The weight of the edge, where 0 deletes the edge.
+     * @throws RuntimeException if a node is out of bounds, the weight is negative, or the ingestor has been sealed.
+     */
+    @Override
+    public void edge(int source, int dest, int weight) {
+        if(source < 0 || source >= numNodes || dest < 0 || dest >= numNodes)
+            throw new RuntimeException("ConcurrentEdgeIngestor::edge(): Edge " + source + "->" + dest + " is out of bounds.");
+        if(weight < 0)
+            throw new RuntimeException("ConcurrentEdgeIngestor::edge(): Negative weight " + weight + " provided.");
+        if(sealed)
+            throw new RuntimeException("ConcurrentEdgeIngestor::edge(): The ingestor has already been sealed.");
+        while(true){
+            Chunk head = heads.get(source);
+            if(head != null){
+                int slot = CLAIMED.getAndIncrement(head);
+                if(slot < head.targets.length){
+                    head.targets[slot] = dest;
+                    head.weights[slot] = weight;
+                    return;
+                }
+            }
+            Chunk grown = new Chunk(head == null ? MIN_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, 2 * head.targets.length), head);
+            grown.targets[0] = dest;
+            grown.weights[0] = weight;
+            grown.claimed = 1;
+            if(heads.compareAndSet(source, head, grown))
+                return;
+            // Another producer grew the list first; claim a slot of its chunk instead.
+        }
+    }
+
+    /**
+     * Returns the number of nodes of the graph.
+     * @return The number of nodes.
+     */
+    public int getNumNodes(){
+        return numNodes;
+    }
+
+    /**
+     * Builds a {@link CSRGraph} out of the ingested edges on the common {@link ForkJoinPool}.
+     * @return A {@link CSRGraph} instance containing the ingested edges.
+     * @see #seal(ForkJoinPool)
+     */
+    public CSRGraph seal(){
+        return seal(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a {@link CSRGraph} out of the ingested edges, and releases the chunks. Contiguous ranges of nodes are
+     * processed in parallel on pool: every range copies the chunks of its nodes into their rows, oldest chunk first, and
+     * then sorts, de-duplicates and compacts the rows in place, in O(V + E log(deg)) time overall. The ingestor cannot
+     * be used any more afterwards.
+     * @param pool The pool to build on.
+     * @return A {@link CSRGraph} instance containing the ingested edges.
+     * @throws RuntimeException if the ingestor has already been sealed, or if more edges were ingested than a
+     * {@link CSRGraph} can hold.
+     */
+    public CSRGraph seal(ForkJoinPool pool){
+        synchronized (this){
+            if(sealed)
+                throw new RuntimeException("ConcurrentEdgeIngestor::seal(): The ingestor has already been sealed.");
+            sealed = true;
+        }
+        int[] bounds = ParallelCountingSort.ranges(numNodes, pool);
+        int numRanges = bounds.length - 1;
+        int[] offsets = new int[numNodes + 1];
+        long[] rangeCounts = new long[numRanges];
+        ParallelCountingSort.forEach(pool, numRanges, r -> {
+            long count = 0;
+            for(int node = bounds[r]; node < bounds[r + 1]; node++){
+                offsets[node + 1] = degree(heads.get(node)); // The degree, until the ranges are laid out.
+                count += offsets[node + 1];
+            }
+            rangeCounts[r] = count;
+        });
+        int[] rangeStarts = new int[numRanges + 1];
+        long total = 0;
+        for(int r = 0; r < numRanges; r++){
+            rangeStarts[r] = (int)total;
+            total += rangeCounts[r];
+            if(total > Integer.MAX_VALUE - 8)
+                throw new RuntimeException("ConcurrentEdgeIngestor::seal(): More than " + (Integer.MAX_VALUE - 8) +
+                        " edges ingested.");
+        }
+        rangeStarts[numRanges] = (int)total;
+
+        int[] targets = new int[(int)total], weights = new int[(int)total], compactedEnds = new int[numRanges];
+        ParallelCountingSort.forEach(pool, numRanges, r -> {
+            int low = bounds[r], high = bounds[r + 1], end = rangeStarts[r];
+            for(int node = low; node < high; node++){
+                end += offsets[node + 1];
+                offsets[node + 1] = end;
+                int write = end; // The chunks are newest first, so the row is filled from its end backwards.
+                for(Chunk chunk = heads.get(node); chunk != null; chunk = chunk.next){
+                    int size = Math.min(chunk.claimed, chunk.targets.length);
+                    write -= size;
+                    System.arraycopy(chunk.targets, 0, targets, write, size);
+                    System.arraycopy(chunk.weights, 0, weights, write, size);
+                }
+                heads.set(node, null);
+            }
+            compactedEnds[r] = CSRGraph.compactRows(offsets, targets, weights, low, high, rangeStarts[r]);
+        });
+        return ParallelCountingSort.closeGaps(offsets, targets, weights, bounds, rangeStarts, compactedEnds, pool);
+    }
+
+    private static int degree(Chunk head){
+        int degree = 0;
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next)
+            degree += Math.min(chunk.claimed, chunk.targets.length);
+        return degree;
+    }
+}
@@ -0,0 +1,349 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>{@link ConcurrentGraph} is a thread-safe {@link Graph}, meant to be shared between many reader threads and a few
+ * writer threads. Every node owns a row of two primitive arrays, the targets of its out-edges in ascending order and
+ * their weights, and the rows are guarded by a fixed number of <b>stripes</b>: node i belongs to the {@link StampedLock}
+ * i mod {@link #getStripes()}. So:</p>
+ * <ul>
+ *     <li>{@link #addEdge(int, int, int)} and {@link #deleteEdge(int, int)} take the write lock of the stripe of the source
+ *     node only, so writers of different stripes never wait for each other, and readers of other stripes never wait for
+ *     them.</li>
+ *     <li>{@link #edgeBetween(int, int)}, {@link #getEdgeWeight(int, int)}, {@link #getNeighbors(int)} and
+ *     {@link #forEachNeighbor(int, NeighborVisitor)} first read the row <b>optimistically</b>, without taking any lock at
+ *     all, and validate the stamp of the stripe afterwards. Only if a writer of the same stripe interfered do they retry
+ *     under the read lock. Since reads never write to shared memory, readers do not even contend on a cache line.</li>
+ *     <li>{@link #forEachNeighbor(int, NeighborVisitor)} visits a snapshot of the row, which it copies under the
+ *     protocol above, so the visitor may freely call other methods of the graph, including mutators.</li>
+ * </ul>
+ * <p>{@link #addNode()} and {@link #clear()} change the set of rows itself, so they are serialized with each other, and
+ * {@link #clear()} also takes every stripe. {@link #addEdges(int[], int[], int[])} applies a batch one stripe at a
+ * time, taking every stripe at most once. Every query of a single row is linearizable; queries that span rows, like
+ * {@link #toCSRGraph()} and the shortest path methods of {@link Graph}, see every row at some point during the call.
+ * The shortest path methods that do not take a {@link ShortestPathWorkspace} use one workspace per thread, so any number
+ * of threads may run them at once.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see DeltaCSRGraph
+ */
+public class ConcurrentGraph extends Graph {
+
+    /**
+     * The default number of stripes.
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /* The out-edges of a node. Guarded by the stripe of the node; read optimistically. */
+    private static class Row {
+        int[] targets = new int[0], weights = new int[0];
+        int size;
+    }
+
+    private final StampedLock[] stripes;
+    private final int stripeMask;
+    private volatile Row[] rows = new Row[16]; // Only replaced by addNode() and clear(), when they hold the monitor.
+    private final AtomicInteger numNodes = new AtomicInteger(), numEdges = new AtomicInteger();
+    private final ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new),
+            reverseWorkspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new);
+
+    /**
+     * Creates an empty {@link ConcurrentGraph} with {@link #DEFAULT_STRIPES} stripes.
+     */
+    public ConcurrentGraph(){
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates an empty {@link ConcurrentGraph} with at least the provided number of stripes. More stripes mean fewer
+     * collisions between writers, at the cost of one {@link StampedLock} each.
+     * @param stripes The number of stripes, which is rounded up to a power of two.
+     * @throws RuntimeException if stripes is not in [1, 2^30].
+     */
+    public ConcurrentGraph(int stripes){
+        if(stripes < 1 || stripes > 1 << 30)
+            throw new RuntimeException("ConcurrentGraph::ConcurrentGraph(): Number of stripes " + stripes + " is not in [1, 2^30].");
+        int count = Integer.highestOneBit(stripes) == stripes ? stripes : Integer.highestOneBit(stripes) << 1;
+        this.stripes = new StampedLock[count];
+        for(int i = 0; i < count; i++)
+            this.stripes[i] = new StampedLock();
+        stripeMask = count - 1;
+    }
+
+    @Override
+    public synchronized void addNode() {
+        int node = numNodes.get();
+        if(node == rows.length)
+            rows = Arrays.copyOf(rows, 2 * node);
+        rows[node] = new Row();
+        numNodes.set(node + 1); // Publishes the row: readers check numNodes before they read rows.
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("ConcurrentGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("ConcurrentGraph::addEdge(): Edge " + source + "->" + dest + " is out of bounds.");
+        StampedLock stripe = stripeOf(source);
+        long stamp = stripe.writeLock();
+        try {
+            set(rowOf(source, dest, "addEdge"), dest, weight);
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            addEdge(source, dest, 0);
+    }
+
+    /**
+     * Adds a batch of edges after checking the whole batch, taking the write lock of every stripe at most once. The edges
+     * of every stripe are applied in array order, so the batch has the same effect as the corresponding single calls.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, a node is out of bounds or a weight is negative.
+     */
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("ConcurrentGraph::addEdges()", numNodes.get(), sources, dests, weights);
+        // A stable counting sort of the batch on the stripe of the source node.
+        int[] starts = new int[stripes.length + 1];
+        for(int source : sources)
+            starts[(source & stripeMask) + 1]++;
+        for(int i = 0; i < stripes.length; i++)
+            starts[i + 1] += starts[i];
+        int[] order = new int[sources.length], cursor = Arrays.copyOf(starts, stripes.length);
+        for(int i = 0; i < sources.length; i++)
+            order[cursor[sources[i] & stripeMask]++] = i;
+        for(int s = 0; s < stripes.length; s++){
+            if(starts[s] == starts[s + 1])
+                continue;
+            long stamp = stripes[s].writeLock();
+            try {
+                for(int k = starts[s]; k < starts[s + 1]; k++){
+                    int i = order[k];
+                    set(rowOf(sources[i], dests[i], "addEdges"), dests[i], weights[i]);
+                }
+            } finally {
+                stripes[s].unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return getEdgeWeight(source, dest) != 0;
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        if(!contains(source) || !contains(dest))
+            return 0;
+        StampedLock stripe = stripeOf(source);
+        long stamp = stripe.tryOptimisticRead();
+        if(stamp != 0){
+            // May read a row that is being modified, or one that clear() discards; only kept if the stamp validates.
+            Row row = rowOf(source);
+            int weight = row == null || !contains(dest) ? 0 : weightIn(row, dest);
+            if(stripe.validate(stamp))
+                return weight;
+        }
+        stamp = stripe.readLock();
+        try {
+            Row row = rowOf(source);
+            return row == null || !contains(dest) ? 0 : weightIn(row, dest);
+        } finally {
+            stripe.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits a snapshot of the row of node, in ascending order of target node. The snapshot is taken under an optimistic
+     * read, so the visitor never runs while any lock is held. This is an O(deg(node)) operation that allocates the
+     * snapshot.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        if(!contains(node))
+            return;
+        StampedLock stripe = stripeOf(node);
+        int[] targets = null, weights = null;
+        long stamp = stripe.tryOptimisticRead();
+        if(stamp != 0){
+            Row row = rowOf(node);
+            if(row != null){
+                int[] rowTargets = row.targets, rowWeights = row.weights;
+                int size = Math.max(0, Math.min(row.size, Math.min(rowTargets.length, rowWeights.length)));
+                targets = Arrays.copyOf(rowTargets, size);
+                weights = Arrays.copyOf(rowWeights, size);
+            }
+            if(!stripe.validate(stamp))
+                targets = null;
+        }
+        if(targets == null){
+            stamp = stripe.readLock();
+            try {
+                Row row = rowOf(node);
+                if(row == null)
+                    return; // Removed by a concurrent clear().
+                targets = Arrays.copyOf(row.targets, row.size);
+                weights = Arrays.copyOf(row.weights, row.size);
+            } finally {
+                stripe.unlockRead(stamp);
+            }
+        }
+        for(int i = 0; i < targets.length; i++)
+            visitor.visit(targets[i], weights[i]);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes.get();
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges.get();
+    }
+
+    @Override
+    public synchronized void clear() {
+        long[] stamps = new long[stripes.length];
+        for(int s = 0; s < stripes.length; s++)
+            stamps[s] = stripes[s].writeLock();
+        try {
+            numNodes.set(0);
+            numEdges.set(0);
+            rows = new Row[16];
+        } finally {
+            for(int s = 0; s < stripes.length; s++)
+                stripes[s].unlockWrite(stamps[s]);
+        }
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the number of stripes, i.e the number of writers that can modify the graph at the same time.
+     * @return The number of stripes of the graph.
+     */
+    public int getStripes(){
+        return stripes.length;
+    }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, built out of a snapshot of every row. Since the
+     * rows are already sorted, this is an O(V + E) operation.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return CSRGraph.fromRowScans(getNumNodes(), getNumEdges(), this::forEachNeighbor, true, ForkJoinPool.commonPool());
+    }
+
+    /* One workspace per thread, so that concurrent searches do not share a heap. */
+    @Override
+    ShortestPathWorkspace searchWorkspace(){
+        return workspaces.get();
+    }
+
+    @Override
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        return reverseWorkspaces.get();
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes.get();
+    }
+
+    /* The row of node, or null if the node does not exist (anymore). Reads numNodes before rows, the reverse of the order
+     * in which addNode() publishes a row. */
+    private Row rowOf(int node){
+        if(!contains(node))
+            return null;
+        Row[] current = rows;
+        return node < current.length ? current[node] : null;
+    }
+
+    /* The row of source, for a writer that holds the lock of its stripe, which keeps clear() out. The nodes were checked
+     * before the lock was taken, so they can only be missing if a clear() ran in between. */
+    private Row rowOf(int source, int dest, String caller){
+        Row row = rowOf(source);
+        if(row == null || !contains(dest))
+            throw new RuntimeException("ConcurrentGraph::" + caller + "(): Edge " + source + "->" + dest +
+                    " is out of bounds; the graph was cleared concurrently.");
+        return row;
+    }
+
+    private StampedLock stripeOf(int node){
+        return stripes[node & stripeMask];
+    }
+
+    /* Binary search for dest in row. Safe to call on a row that is being modified: it may then return a wrong weight,
+     * but it never throws. */
+    private static int weightIn(Row row, int dest){
+        int[] targets = row.targets, weights = row.weights;
+        int high = Math.min(row.size, Math.min(targets.length, weights.length)) - 1, low = 0;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            if(targets[middle] < dest)
+                low = middle + 1;
+            else if(targets[middle] > dest)
+                high = middle - 1;
+            else
+                return weights[middle];
+        }
+        return 0;
+    }
+
+    /* Sets the weight of an edge of row, keeping the row sorted. The caller holds the write lock of the stripe of row. */
+    private void set(Row row, int dest, int weight){
+        int index = Arrays.binarySearch(row.targets, 0, row.size, dest);
+        if(index >= 0){
+            if(weight != 0){
+                row.weights[index] = weight;
+                return;
+            }
+            System.arraycopy(row.targets, index + 1, row.targets, index, row.size - index - 1);
+            System.arraycopy(row.weights, index + 1, row.weights, index, row.size - index - 1);
+            row.size--;
+            numEdges.decrementAndGet();
+            return;
+        }
+        if(weight == 0)
+            return;
+        int insertion = -index - 1;
+        if(row.size == row.targets.length){
+            row.targets = Arrays.copyOf(row.targets, Math.max(4, 2 * row.size));
+            row.weights = Arrays.copyOf(row.weights, row.targets.length);
+        }
+        System.arraycopy(row.targets, insertion, row.targets, insertion + 1, row.size - insertion);
+        System.arraycopy(row.weights, insertion, row.weights, insertion + 1, row.size - insertion);
+        row.targets[insertion] = dest;
+        row.weights[insertion] = weight;
+        row.size++;
+        numEdges.incrementAndGet();
+    }
+}
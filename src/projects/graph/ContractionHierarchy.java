@@ -0,0 +1,503 @@
+package projects.graph;
+
+import projects.graph.utils.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>{@link ContractionHierarchy} is a preprocessed, read-only index over a {@link Graph} that answers point-to-point
+ * shortest path queries orders of magnitude faster than {@link Graph#shortestPath(int, int)}, in exchange for a one-off
+ * preprocessing step. It is well suited to mostly static graphs, such as road networks, that receive a large number of
+ * queries.</p>
+ *
+ * <p><b>Preprocessing</b> ({@link #build(Graph)}) &quot;contracts&quot; the nodes one by one, in increasing order of
+ * importance. Contracting a node v removes it from the graph and, for every pair of edges u-&gt;v and v-&gt;x such that
+ * u-&gt;v-&gt;x is the only shortest path from u to x, adds a <b>shortcut</b> edge u-&gt;x that remembers v as its middle node.
+ * Whether such a &quot;witness&quot; path that avoids v exists is decided by a bounded local Dijkstra search. The order in
+ * which nodes are contracted (their <b>rank</b>) is chosen greedily with a lazily updated priority queue, where the
+ * priority of a node is twice the difference between the number of shortcuts its contraction would add and the number
+ * of edges it would remove, plus the number of its neighbors that have already been contracted, plus its depth in the
+ * hierarchy built so far. The last two terms spread the contractions uniformly across the graph.</p>
+ *
+ * <p>The result is stored in two {@link CSRGraph}-like layouts: the <b>upward</b> graph, with every edge u-&gt;x of rank(u) &lt;
+ * rank(x), and the <b>downward</b> graph, which stores, for every node x, the edges u-&gt;x of rank(u) &gt; rank(x) in
+ * reverse. A <b>query</b> ({@link #shortestPath(int, int)}) is a bidirectional Dijkstra search that only ever climbs up
+ * the hierarchy: forward from the source over the upward graph, and backward from the destination over the downward
+ * graph. Both searches settle only a few hundred nodes even on graphs with millions of nodes. The shortcuts on the
+ * resulting path are then recursively unpacked through their middle nodes.</p>
+ *
+ * <p>A {@link ContractionHierarchy} is a snapshot: mutations of the original graph after {@link #build(Graph)} are not
+ * reflected by it. It is safe to query it from multiple threads, as long as every thread uses
+ * {@link #shortestPath(int, int, ShortestPathWorkspace, ShortestPathWorkspace)} and
+ * {@link #getDistance(int, int, ShortestPathWorkspace, ShortestPathWorkspace)} with its own workspaces.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph#shortestPath(int, int)
+ * @see Graph#bidirectionalShortestPath(int, int)
+ */
+public class ContractionHierarchy {
+
+    /**
+     * The maximum number of nodes that a single witness search settles before giving up. Giving up only means that a
+     * shortcut is added even though it might not have been necessary, so it never affects correctness.
+     */
+    public static final int WITNESS_SEARCH_LIMIT = 500;
+
+    /* The witness search limit used when we only simulate a contraction to compute a priority. Priorities are estimates
+     * anyway, and they are recomputed far more often than nodes are contracted. */
+    private static final int SIMULATION_SEARCH_LIMIT = 20;
+
+    private final CSRGraph original; // Only needed for the cycles that shortestPath(source, source) asks for.
+    private final int[] rank;
+    private final int[] upOffsets, upTargets, upWeights, upMiddles;
+    private final int[] downOffsets, downSources, downWeights, downMiddles;
+    private final int numShortcuts;
+    private ShortestPathWorkspace forwardWorkspace, backwardWorkspace;
+
+    private ContractionHierarchy(CSRGraph original, int[] rank, int[][] up, int[][] down, int numShortcuts){
+        this.original = original;
+        this.rank = rank;
+        upOffsets = up[0]; upTargets = up[1]; upWeights = up[2]; upMiddles = up[3];
+        downOffsets = down[0]; downSources = down[1]; downWeights = down[2]; downMiddles = down[3];
+        this.numShortcuts = numShortcuts;
+    }
+
+    /**
+     * Runs the preprocessing step over g. The graph is not modified.
+     * @param g The {@link Graph} to build the hierarchy for.
+     * @return A {@link ContractionHierarchy} for the current contents of g.
+     */
+    public static ContractionHierarchy build(Graph g){
+        return new Contractor(CSRGraph.fromGraph(g)).run();
+    }
+
+    /**
+     * Returns the shortest path between source and dest, with the same semantics as {@link Graph#shortestPath(int, int)}:
+     * the head of the list is source, the tail is dest, and the list is empty if no path exists. All shortcuts are
+     * unpacked, so consecutive nodes of the list are always connected by an edge of the original graph.
+     * This method is <b>not</b> thread-safe; see {@link #shortestPath(int, int, ShortestPathWorkspace, ShortestPathWorkspace)}.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @return An ordered {@link List} of the nodes on a shortest path from source to dest.
+     */
+    public List<Integer> shortestPath(int source, int dest){
+        ensureWorkspaces();
+        return shortestPath(source, dest, forwardWorkspace, backwardWorkspace);
+    }
+
+    private void ensureWorkspaces(){
+        if(forwardWorkspace == null){
+            forwardWorkspace = new ShortestPathWorkspace(rank.length);
+            backwardWorkspace = new ShortestPathWorkspace(rank.length);
+        }
+    }
+
+    /**
+     * Same as {@link #shortestPath(int, int)}, but with caller-provided workspaces, which makes it safe to call concurrently
+     * as long as no two threads share a workspace.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @param forward The workspace of the forward search.
+     * @param backward The workspace of the backward search.
+     * @return An ordered {@link List} of the nodes on a shortest path from source to dest.
+     */
+    public List<Integer> shortestPath(int source, int dest, ShortestPathWorkspace forward, ShortestPathWorkspace backward){
+        if(source == dest)
+            return original.shortestPath(source, dest, forward);
+        int meeting = search(source, dest, forward, backward);
+        List<Integer> path = new ArrayList<>();
+        if(meeting < 0)
+            return path;
+        List<Integer> upward = new ArrayList<>(); // The nodes from meeting down to source, in reverse.
+        for(int node = meeting; node != -1; node = forward.prev[node])
+            upward.add(node);
+        Collections.reverse(upward);
+        path.add(source);
+        for(int i = 0; i + 1 < upward.size(); i++)
+            unpack(upward.get(i), upward.get(i + 1), path);
+        for(int node = meeting; backward.prev[node] != -1; node = backward.prev[node])
+            unpack(node, backward.prev[node], path);
+        return path;
+    }
+
+    /**
+     * Returns the length of the shortest path between source and dest, or {@link Graph#INFINITY} if no such path exists.
+     * This is cheaper than {@link #shortestPath(int, int)}, since no shortcuts need to be unpacked.
+     * This method is <b>not</b> thread-safe; see {@link #getDistance(int, int, ShortestPathWorkspace, ShortestPathWorkspace)}.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @return The distance from source to dest.
+     */
+    public int getDistance(int source, int dest){
+        ensureWorkspaces();
+        return getDistance(source, dest, forwardWorkspace, backwardWorkspace);
+    }
+
+    /**
+     * Same as {@link #getDistance(int, int)}, but with caller-provided workspaces, which makes it safe to call concurrently
+     * as long as no two threads share a workspace.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @param forward The workspace of the forward search.
+     * @param backward The workspace of the backward search.
+     * @return The distance from source to dest.
+     */
+    public int getDistance(int source, int dest, ShortestPathWorkspace forward, ShortestPathWorkspace backward){
+        if(source == dest){
+            original.shortestPath(source, dest, forward);
+            return forward.getDistance(dest);
+        }
+        int meeting = search(source, dest, forward, backward);
+        return meeting < 0 ? Graph.INFINITY : forward.dist[meeting] + backward.dist[meeting];
+    }
+
+    /**
+     * Returns the rank of a node, i.e the position of the node in the contraction order.
+     * @param node The node whose rank we want.
+     * @return The rank of node, in [0, V).
+     */
+    public int getRank(int node){
+        return rank[node];
+    }
+
+    /**
+     * Returns the number of shortcut edges that the preprocessing step added.
+     * @return The number of shortcuts.
+     */
+    public int getNumShortcuts(){
+        return numShortcuts;
+    }
+
+    /* Runs the upward bidirectional search and returns the node where the best source-dest path meets, or -1. A search
+     * direction may stop once its minimum key is at least the best distance found, but not before, since the two
+     * directions do not settle nodes in a common order. */
+    private int search(int source, int dest, ShortestPathWorkspace forward, ShortestPathWorkspace backward){
+        forward.reset(rank.length);
+        backward.reset(rank.length);
+        forward.reach(source, 0, -1);
+        forward.heap.insert(source, 0);
+        backward.reach(dest, 0, -1);
+        backward.heap.insert(dest, 0);
+        long best = Graph.INFINITY;
+        int meeting = -1;
+        boolean forwardTurn = true;
+        while(true){
+            boolean forwardDone = forward.heap.isEmpty() || forward.heap.peekKey() >= best;
+            boolean backwardDone = backward.heap.isEmpty() || backward.heap.peekKey() >= best;
+            if(forwardDone && backwardDone)
+                break;
+            if(forwardDone)
+                forwardTurn = false;
+            else if(backwardDone)
+                forwardTurn = true;
+            ShortestPathWorkspace ws = forwardTurn ? forward : backward, opposite = forwardTurn ? backward : forward;
+            int[] offsets = forwardTurn ? upOffsets : downOffsets, targets = forwardTurn ? upTargets : downSources;
+            int[] weights = forwardTurn ? upWeights : downWeights;
+            int node = ws.heap.extractMin();
+            ws.settle(node);
+            if(opposite.isReached(node) && (long)ws.dist[node] + opposite.dist[node] < best){
+                best = (long)ws.dist[node] + opposite.dist[node];
+                meeting = node;
+            }
+            for(int i = offsets[node]; i < offsets[node + 1]; i++){
+                long candidate = (long)ws.dist[node] + weights[i];
+                int neighbor = targets[i];
+                if(candidate >= Graph.INFINITY || (ws.isReached(neighbor) && candidate >= ws.dist[neighbor]))
+                    continue;
+                ws.reach(neighbor, (int)candidate, node);
+                ws.heap.insertOrDecrease(neighbor, (int)candidate);
+            }
+            forwardTurn = !forwardTurn;
+        }
+        return meeting;
+    }
+
+    /* Appends the original nodes of the (possibly shortcut) edge from->to to path, excluding from itself. An explicit
+     * stack is used instead of recursion, since hierarchies can be deep. */
+    private void unpack(int from, int to, List<Integer> path){
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        while(top > 0){
+            int b = stack[--top], a = stack[--top];
+            int middle = middleOf(a, b);
+            if(middle < 0){
+                path.add(b);
+            } else {
+                if(top + 4 > stack.length)
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                stack[top++] = middle; // Pushed first, so that a->middle is unpacked before middle->b.
+                stack[top++] = b;
+                stack[top++] = a;
+                stack[top++] = middle;
+            }
+        }
+    }
+
+    /* The middle node of the hierarchy edge a->b, or -1 if it is an original edge. */
+    private int middleOf(int a, int b){
+        if(rank[a] < rank[b])
+            return upMiddles[Arrays.binarySearch(upTargets, upOffsets[a], upOffsets[a + 1], b)];
+        return downMiddles[Arrays.binarySearch(downSources, downOffsets[b], downOffsets[b + 1], a)];
+    }
+
+    /* The state of the preprocessing step. The graph under contraction is kept as per-node lists of out- and in-edges,
+     * each entry a (node, weight, middle) triple. Edges towards contracted nodes are never physically removed; they are
+     * skipped instead. */
+    private static class Contractor {
+
+        private final CSRGraph graph;
+        private final int numNodes;
+        private final int[][] outNodes, outWeights, outMiddles, inNodes, inWeights, inMiddles;
+        private final int[] outDegree, inDegree;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors, level, touchedBy;
+        private final ShortestPathWorkspace witness;
+        private int numShortcuts;
+
+        // The edges of the final hierarchy, as growable (node, neighbor, weight, middle) buffers.
+        private int[][] up = new int[4][16], down = new int[4][16];
+        private int upSize, downSize;
+
+        Contractor(CSRGraph graph){
+            this.graph = graph;
+            numNodes = graph.getNumNodes();
+            outNodes = new int[numNodes][]; outWeights = new int[numNodes][]; outMiddles = new int[numNodes][];
+            inNodes = new int[numNodes][]; inWeights = new int[numNodes][]; inMiddles = new int[numNodes][];
+            outDegree = new int[numNodes];
+            inDegree = new int[numNodes];
+            CSRGraph reverse = graph.transpose();
+            for(int node = 0; node < numNodes; node++){
+                int from = graph.offsets[node], to = graph.offsets[node + 1];
+                outNodes[node] = Arrays.copyOfRange(graph.targets, from, Math.max(to, from + 1));
+                outWeights[node] = Arrays.copyOfRange(graph.weights, from, Math.max(to, from + 1));
+                outMiddles[node] = new int[outNodes[node].length];
+                Arrays.fill(outMiddles[node], -1);
+                outDegree[node] = to - from;
+                from = reverse.offsets[node];
+                to = reverse.offsets[node + 1];
+                inNodes[node] = Arrays.copyOfRange(reverse.targets, from, Math.max(to, from + 1));
+                inWeights[node] = Arrays.copyOfRange(reverse.weights, from, Math.max(to, from + 1));
+                inMiddles[node] = new int[inNodes[node].length];
+                Arrays.fill(inMiddles[node], -1);
+                inDegree[node] = to - from;
+            }
+            contracted = new boolean[numNodes];
+            contractedNeighbors = new int[numNodes];
+            level = new int[numNodes];
+            touchedBy = new int[numNodes];
+            Arrays.fill(touchedBy, -1);
+            witness = new ShortestPathWorkspace(numNodes);
+        }
+
+        ContractionHierarchy run(){
+            IndexedMinHeap queue = new IndexedMinHeap(numNodes);
+            for(int node = 0; node < numNodes; node++)
+                queue.insert(node, priority(node));
+            int[] rank = new int[numNodes];
+            int nextRank = 0;
+            while(!queue.isEmpty()){
+                int node = queue.extractMin();
+                int updated = priority(node); // Lazy update: only contract if the node is still the minimum.
+                if(!queue.isEmpty() && updated > queue.peekKey()){
+                    queue.insert(node, updated);
+                    continue;
+                }
+                rank[node] = nextRank++;
+                contract(node, false);
+                for(int i = 0; i < outDegree[node]; i++)
+                    touch(node, outNodes[node][i], queue);
+                for(int i = 0; i < inDegree[node]; i++)
+                    touch(node, inNodes[node][i], queue);
+            }
+            return new ContractionHierarchy(graph, rank, toCSR(up, upSize), toCSR(down, downSize), numShortcuts);
+        }
+
+        /* Bookkeeping for an uncontracted neighbor of a node that was just contracted. */
+        private void touch(int node, int neighbor, IndexedMinHeap queue){
+            if(contracted[neighbor] || !queue.contains(neighbor) || touchedBy[neighbor] == node)
+                return; // Neighbors at both ends of node's edges are only touched once.
+            touchedBy[neighbor] = node;
+            contractedNeighbors[neighbor]++;
+            level[neighbor] = Math.max(level[neighbor], level[node] + 1);
+            outDegree[neighbor] = dropContracted(outNodes[neighbor], outWeights[neighbor], outMiddles[neighbor], outDegree[neighbor]);
+            inDegree[neighbor] = dropContracted(inNodes[neighbor], inWeights[neighbor], inMiddles[neighbor], inDegree[neighbor]);
+            // Priorities that went up are caught by the lazy check in run(), since IndexedMinHeap has no increase-key.
+            queue.insertOrDecrease(neighbor, priority(neighbor));
+        }
+
+        /* Removes the entries towards contracted nodes from an edge list, so that later scans don't pay for them. */
+        private int dropContracted(int[] nodes, int[] weights, int[] middles, int degree){
+            int kept = 0;
+            for(int i = 0; i < degree; i++)
+                if(!contracted[nodes[i]]){
+                    nodes[kept] = nodes[i];
+                    weights[kept] = weights[i];
+                    middles[kept++] = middles[i];
+                }
+            return kept;
+        }
+
+        private int priority(int node){
+            int removed = 0;
+            for(int i = 0; i < outDegree[node]; i++)
+                if(isLive(node, outNodes[node][i]))
+                    removed++;
+            for(int i = 0; i < inDegree[node]; i++)
+                if(isLive(node, inNodes[node][i]))
+                    removed++;
+            return 2 * (contract(node, true) - removed) + contractedNeighbors[node] + level[node];
+        }
+
+        /* Whether the edge between node and neighbor is still part of the graph under contraction. Self-loops never
+         * lie on a shortest path between two distinct nodes, so they are dropped altogether. */
+        private boolean isLive(int node, int neighbor){
+            return neighbor != node && !contracted[neighbor];
+        }
+
+        /* Contracts node, or only counts the shortcuts that contracting it would add if simulate is true. */
+        private int contract(int node, boolean simulate){
+            int shortcuts = 0;
+            for(int i = 0; i < inDegree[node]; i++){
+                int source = inNodes[node][i];
+                if(!isLive(node, source))
+                    continue;
+                int inWeight = inWeights[node][i];
+                long limit = 0;
+                for(int j = 0; j < outDegree[node]; j++)
+                    if(isLive(node, outNodes[node][j]) && outNodes[node][j] != source)
+                        limit = Math.max(limit, (long)inWeight + outWeights[node][j]);
+                if(limit == 0)
+                    continue;
+                witnessSearch(source, node, limit, simulate ? SIMULATION_SEARCH_LIMIT : WITNESS_SEARCH_LIMIT);
+                for(int j = 0; j < outDegree[node]; j++){
+                    int target = outNodes[node][j];
+                    if(!isLive(node, target) || target == source)
+                        continue;
+                    long viaNode = (long)inWeight + outWeights[node][j];
+                    if(viaNode >= Graph.INFINITY || witness.getDistance(target) <= viaNode)
+                        continue;
+                    shortcuts++;
+                    if(!simulate)
+                        addShortcut(source, target, (int)viaNode, node);
+                }
+            }
+            if(!simulate){
+                for(int i = 0; i < outDegree[node]; i++)
+                    if(isLive(node, outNodes[node][i]))
+                        append(true, node, outNodes[node][i], outWeights[node][i], outMiddles[node][i]);
+                for(int i = 0; i < inDegree[node]; i++)
+                    if(isLive(node, inNodes[node][i]))
+                        append(false, node, inNodes[node][i], inWeights[node][i], inMiddles[node][i]);
+                contracted[node] = true;
+            }
+            return shortcuts;
+        }
+
+        /* A Dijkstra search from source over the uncontracted nodes, ignoring excluded, that stops after settling
+         * maxSettled nodes or when the next distance exceeds limit. */
+        private void witnessSearch(int source, int excluded, long limit, int maxSettled){
+            witness.reset(numNodes);
+            witness.reach(source, 0, -1);
+            witness.heap.insert(source, 0);
+            int settled = 0;
+            while(!witness.heap.isEmpty() && witness.heap.peekKey() <= limit && settled++ < maxSettled){
+                int node = witness.heap.extractMin();
+                witness.settle(node);
+                for(int i = 0; i < outDegree[node]; i++){
+                    int neighbor = outNodes[node][i];
+                    if(neighbor == excluded || contracted[neighbor])
+                        continue;
+                    long candidate = (long)witness.dist[node] + outWeights[node][i];
+                    if(candidate > limit || (witness.isReached(neighbor) && candidate >= witness.dist[neighbor]))
+                        continue;
+                    witness.reach(neighbor, (int)candidate, node);
+                    witness.heap.insertOrDecrease(neighbor, (int)candidate);
+                }
+            }
+        }
+
+        private void addShortcut(int source, int target, int weight, int middle){
+            for(int i = 0; i < outDegree[source]; i++)
+                if(outNodes[source][i] == target){ // A parallel edge exists: improve it in place.
+                    if(weight < outWeights[source][i]){
+                        numShortcuts++;
+                        outWeights[source][i] = weight;
+                        outMiddles[source][i] = middle;
+                        for(int j = 0; j < inDegree[target]; j++)
+                            if(inNodes[target][j] == source){
+                                inWeights[target][j] = weight;
+                                inMiddles[target][j] = middle;
+                            }
+                    }
+                    return;
+                }
+            numShortcuts++;
+            outDegree[source] = push(outNodes, outWeights, outMiddles, outDegree[source], source, target, weight, middle);
+            inDegree[target] = push(inNodes, inWeights, inMiddles, inDegree[target], target, source, weight, middle);
+        }
+
+        private static int push(int[][] nodes, int[][] weights, int[][] middles, int degree, int owner, int node, int weight, int middle){
+            if(degree == nodes[owner].length){
+                nodes[owner] = Arrays.copyOf(nodes[owner], 2 * degree);
+                weights[owner] = Arrays.copyOf(weights[owner], 2 * degree);
+                middles[owner] = Arrays.copyOf(middles[owner], 2 * degree);
+            }
+            nodes[owner][degree] = node;
+            weights[owner][degree] = weight;
+            middles[owner][degree] = middle;
+            return degree + 1;
+        }
+
+        private void append(boolean upward, int node, int neighbor, int weight, int middle){
+            int[][] buffer = upward ? up : down;
+            int size = upward ? upSize : downSize;
+            if(size == buffer[0].length)
+                for(int k = 0; k < 4; k++)
+                    buffer[k] = Arrays.copyOf(buffer[k], 2 * size);
+            buffer[0][size] = node;
+            buffer[1][size] = neighbor;
+            buffer[2][size] = weight;
+            buffer[3][size] = middle;
+            if(upward)
+                upSize++;
+            else
+                downSize++;
+        }
+
+        /* Counting sort of the buffered edges on their owner node, followed by a sort of every row on the neighbor. */
+        private int[][] toCSR(int[][] buffer, int size){
+            int[] offsets = new int[numNodes + 1];
+            for(int i = 0; i < size; i++)
+                offsets[buffer[0][i] + 1]++;
+            for(int i = 0; i < numNodes; i++)
+                offsets[i + 1] += offsets[i];
+            int[] cursor = Arrays.copyOf(offsets, numNodes);
+            int[] order = new int[size];
+            for(int i = 0; i < size; i++)
+                order[cursor[buffer[0][i]]++] = i;
+            int[] neighbors = new int[size], weights = new int[size], middles = new int[size];
+            long[] scratch = new long[0];
+            for(int node = 0; node < numNodes; node++){
+                int from = offsets[node], degree = offsets[node + 1] - from;
+                if(scratch.length < degree)
+                    scratch = new long[Math.max(degree, 2 * scratch.length)];
+                for(int i = 0; i < degree; i++)
+                    scratch[i] = ((long)buffer[1][order[from + i]] << 32) | order[from + i];
+                Arrays.sort(scratch, 0, degree);
+                for(int i = 0; i < degree; i++){
+                    int edge = (int)scratch[i];
+                    neighbors[from + i] = buffer[1][edge];
+                    weights[from + i] = buffer[2][edge];
+                    middles[from + i] = buffer[3][edge];
+                }
+            }
+            return new int[][]{offsets, neighbors, weights, middles};
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package projects.graph;
+
+/**
+ * <p>{@link CoordinateHeuristic} is a {@link Heuristic} for graphs whose nodes are embedded in the plane, such as road
+ * networks. The estimate for a node is the Euclidean distance between the node and the destination, multiplied by a
+ * cost per unit of distance and rounded down.</p>
+ *
+ * <p>The heuristic is admissible (and, in fact, consistent) as long as the weight of every edge u-&gt;v is at least the
+ * cost per unit times the Euclidean distance between u and v. {@link #fit(Graph, double[], double[])} computes the largest
+ * cost per unit for which this holds for a given graph, so that the heuristic is always safe to use.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see Heuristic
+ */
+public class CoordinateHeuristic implements Heuristic {
+
+    private final double[] x, y;
+    private final double costPerUnit;
+
+    /**
+     * Creates a {@link CoordinateHeuristic} with the given coordinates and cost per unit of distance. The arrays are
+     * <b>not</b> copied.
+     * @param x The x coordinate of every node.
+     * @param y The y coordinate of every node.
+     * @param costPerUnit The minimum edge weight per unit of Euclidean distance.
+     * @throws RuntimeException if the arrays differ in length or costPerUnit is negative.
+     */
+    public CoordinateHeuristic(double[] x, double[] y, double costPerUnit){
+        if(x.length != y.length)
+            throw new RuntimeException("CoordinateHeuristic(): Coordinate arrays differ in length.");
+        if(costPerUnit < 0 || Double.isNaN(costPerUnit))
+            throw new RuntimeException("CoordinateHeuristic(): Invalid cost per unit: " + costPerUnit + ".");
+        this.x = x;
+        this.y = y;
+        this.costPerUnit = costPerUnit;
+    }
+
+    /**
+     * Creates a {@link CoordinateHeuristic} whose cost per unit is the minimum, over all edges of g, of the weight of
+     * the edge divided by the Euclidean length of the edge. This makes the heuristic consistent for g. Edges whose
+     * endpoints share coordinates are ignored, since they do not constrain the cost per unit. This is an O(V + E) operation.
+     * @param g The graph the heuristic will be used on.
+     * @param x The x coordinate of every node.
+     * @param y The y coordinate of every node.
+     * @return A consistent {@link CoordinateHeuristic} for g.
+     */
+    public static CoordinateHeuristic fit(Graph g, double[] x, double[] y){
+        CSRGraph csr = CSRGraph.fromGraph(g);
+        double costPerUnit = Double.POSITIVE_INFINITY;
+        for(int node = 0; node < csr.getNumNodes(); node++)
+            for(int i = csr.offsets[node]; i < csr.offsets[node + 1]; i++){
+                double length = Math.hypot(x[node] - x[csr.targets[i]], y[node] - y[csr.targets[i]]);
+                if(length > 0)
+                    costPerUnit = Math.min(costPerUnit, csr.weights[i] / length);
+            }
+        return new CoordinateHeuristic(x, y, costPerUnit == Double.POSITIVE_INFINITY ? 0 : costPerUnit);
+    }
+
+    @Override
+    public int estimate(int node, int dest) {
+        double estimate = Math.floor(costPerUnit * Math.hypot(x[node] - x[dest], y[node] - y[dest]));
+        return estimate >= Graph.INFINITY ? Graph.INFINITY - 1 : (int)estimate;
+    }
+
+    /**
+     * Simple getter for the cost per unit of distance.
+     * @return The cost per unit of distance.
+     */
+    public double getCostPerUnit(){
+        return costPerUnit;
+    }
+}
@@ -0,0 +1,479 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>{@link DeltaCSRGraph} is a <b>mutable</b> {@link Graph} that combines the read speed of a {@link CSRGraph} with cheap
+ * mutations. It consists of a frozen {@link CSRGraph} &quot;base&quot; and a small per-node <b>delta log</b>. Every call to
+ * {@link #addEdge(int, int, int)} or {@link #deleteEdge(int, int)} appends (or overwrites) a (target, weight) entry in the log of
+ * the source node, where a weight of zero is a <b>tombstone</b> that hides the edge of the base. Queries consult the log
+ * first and fall back to the base, so their cost is O(log(deg) + d), where d is the (small) number of pending log
+ * entries of the source node.</p>
+ *
+ * <p>Periodically, {@link #compact()} folds the log into a brand new {@link CSRGraph} in O(V + E + D log(D)) time, where
+ * D is the size of the log. Compaction can be called on demand, or it can be left to a background thread started
+ * through {@link #startBackgroundCompaction()}, which kicks in every time the log grows past the compaction threshold.
+ * The expensive merge itself runs <b>without</b> holding the lock of the graph: while it runs, the log being folded is
+ * frozen and a fresh log receives new mutations, so writers are never stalled for O(E) time.</p>
+ *
+ * <p>All public methods are thread-safe.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see CSRGraph
+ * @see Graph
+ */
+public class DeltaCSRGraph extends Graph {
+
+    /**
+     * The default number of pending log entries after which a background compaction is scheduled.
+     * @see #DeltaCSRGraph(CSRGraph, int)
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1 << 16;
+
+    /* A per-node log of (target, weight) entries, where a weight of 0 is a tombstone. Rows are allocated lazily and
+     * are expected to stay small, so they are scanned linearly. */
+    private static class DeltaLog {
+        int[][] targets, weights;
+        int[] sizes;
+        int entries;
+
+        DeltaLog(int numNodes){
+            targets = new int[numNodes][];
+            weights = new int[numNodes][];
+            sizes = new int[numNodes];
+        }
+
+        /* Returns the logged weight of source->dest, 0 for a tombstone, or -1 if the log says nothing about it. */
+        int lookup(int source, int dest){
+            if(source >= sizes.length)
+                return -1;
+            int[] row = targets[source];
+            for(int i = sizes[source] - 1; i >= 0; i--)
+                if(row[i] == dest)
+                    return weights[source][i];
+            return -1;
+        }
+
+        void put(int source, int dest, int weight){
+            ensureNodes(source + 1);
+            int size = sizes[source];
+            int[] row = targets[source];
+            for(int i = 0; i < size; i++)
+                if(row[i] == dest){
+                    weights[source][i] = weight;
+                    return;
+                }
+            if(row == null){
+                targets[source] = row = new int[4];
+                weights[source] = new int[4];
+            } else if(size == row.length){
+                targets[source] = row = Arrays.copyOf(row, 2 * size);
+                weights[source] = Arrays.copyOf(weights[source], 2 * size);
+            }
+            row[size] = dest;
+            weights[source][size] = weight;
+            sizes[source]++;
+            entries++;
+        }
+
+        void ensureNodes(int numNodes){
+            if(numNodes > sizes.length){
+                int newLength = Math.max(numNodes, 2 * sizes.length);
+                targets = Arrays.copyOf(targets, newLength);
+                weights = Arrays.copyOf(weights, newLength);
+                sizes = Arrays.copyOf(sizes, newLength);
+            }
+        }
+
+        /* Applies the entries of the row of node to the provided set of neighbors. */
+        void applyTo(int node, Set<Integer> neighbors){
+            if(node >= sizes.length)
+                return;
+            for(int i = 0; i < sizes[node]; i++){
+                if(weights[node][i] == 0)
+                    neighbors.remove(targets[node][i]);
+                else
+                    neighbors.add(targets[node][i]);
+            }
+        }
+    }
+
+    private CSRGraph base;
+    private DeltaLog log;
+    private DeltaLog frozen; // The log being folded by an ongoing compaction, if any.
+    private int numNodes, numEdges;
+    private long generation; // Bumped by clear(), so that a compaction that started before it doesn't install a stale base.
+    private final int compactionThreshold;
+    private ExecutorService compactor;
+    private boolean compactionScheduled;
+    private final ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new),
+            reverseWorkspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new);
+
+    /**
+     * Creates an empty {@link DeltaCSRGraph}.
+     */
+    public DeltaCSRGraph(){
+        this(new CSRGraph(0));
+    }
+
+    /**
+     * Creates a {@link DeltaCSRGraph} whose initial contents are those of the provided {@link CSRGraph}. Since
+     * {@link CSRGraph} instances are immutable, the base is shared, not copied.
+     * @param base The initial contents of the graph.
+     */
+    public DeltaCSRGraph(CSRGraph base){
+        this(base, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Creates a {@link DeltaCSRGraph} whose initial contents are those of the provided {@link CSRGraph}, with a custom
+     * compaction threshold.
+     * @param base The initial contents of the graph.
+     * @param compactionThreshold The number of pending log entries after which a background compaction is scheduled,
+     *                            if background compaction has been started.
+     * @throws RuntimeException if compactionThreshold &lt; 1.
+     */
+    public DeltaCSRGraph(CSRGraph base, int compactionThreshold){
+        if(compactionThreshold < 1)
+            throw new RuntimeException("DeltaCSRGraph(): Compaction threshold should be positive, was: " + compactionThreshold + ".");
+        this.base = base;
+        this.compactionThreshold = compactionThreshold;
+        numNodes = base.getNumNodes();
+        numEdges = base.getNumEdges();
+        log = new DeltaLog(numNodes);
+    }
+
+    /* Current weight of source->dest, consulting the log, the frozen log and the base, in that order. */
+    private int weightOf(int source, int dest){
+        int weight = log.lookup(source, dest);
+        if(weight < 0 && frozen != null)
+            weight = frozen.lookup(source, dest);
+        if(weight < 0)
+            weight = base.getEdgeWeight(source, dest);
+        return weight;
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    @Override
+    public synchronized void addNode() {
+        numNodes++;
+        log.ensureNodes(numNodes);
+    }
+
+    @Override
+    public synchronized void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("DeltaCSRGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("DeltaCSRGraph::addEdge(): Edge " + source + "->" + dest + " is out of bounds.");
+        put(source, dest, weight);
+        scheduleCompaction();
+    }
+
+    @Override
+    public synchronized void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            addEdge(source, dest, 0);
+    }
+
+    /**
+     * Logs a batch of edges while holding the lock of the graph once, after checking the whole batch. A background
+     * compaction, if enabled, is considered once, after the batch.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, a node is out of bounds or a weight is negative.
+     */
+    @Override
+    public synchronized void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("DeltaCSRGraph::addEdges()", numNodes, sources, dests, weights);
+        for(int i = 0; i < sources.length; i++)
+            put(sources[i], dests[i], weights[i]);
+        scheduleCompaction();
+    }
+
+    @Override
+    public synchronized void deleteEdges(int[] sources, int[] dests) {
+        if(sources.length != dests.length)
+            throw new RuntimeException("DeltaCSRGraph::deleteEdges(): The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++)
+            if(contains(sources[i]) && contains(dests[i]))
+                put(sources[i], dests[i], 0);
+        scheduleCompaction();
+    }
+
+    /* Logs a checked update, unless it changes nothing, and keeps the edge count up to date. */
+    private void put(int source, int dest, int weight){
+        int old = weightOf(source, dest);
+        if(old == weight)
+            return;
+        if(old == 0)
+            numEdges++;
+        else if(weight == 0)
+            numEdges--;
+        log.put(source, dest, weight);
+    }
+
+    private void scheduleCompaction(){
+        if(compactor != null && !compactionScheduled && log.entries >= compactionThreshold){
+            compactionScheduled = true;
+            compactor.execute(this::compact);
+        }
+    }
+
+    @Override
+    public synchronized boolean edgeBetween(int source, int dest) {
+        return contains(source) && contains(dest) && weightOf(source, dest) > 0;
+    }
+
+    @Override
+    public synchronized int getEdgeWeight(int source, int dest) {
+        return contains(source) && contains(dest) ? weightOf(source, dest) : 0;
+    }
+
+    @Override
+    public synchronized Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = node < base.getNumNodes() ? base.getNeighbors(node) : new HashSet<>();
+        if(frozen != null)
+            frozen.applyTo(node, neighbors);
+        log.applyTo(node, neighbors);
+        return neighbors;
+    }
+
+    /**
+     * Visits the base row of node with the logged weights applied, followed by the logged edges that the base row
+     * lacks. This is an O(deg(node) * d) operation, where d is the size of the log row of node, and it allocates nothing.
+     * The visitor is called while holding the lock of the graph, so it should not block.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public synchronized void forEachNeighbor(int node, NeighborVisitor visitor) {
+        boolean inBase = node < base.getNumNodes();
+        if(inBase){
+            for(int i = base.offsets[node]; i < base.offsets[node + 1]; i++){
+                int target = base.targets[i], weight = log.lookup(node, target);
+                if(weight < 0 && frozen != null)
+                    weight = frozen.lookup(node, target);
+                if(weight < 0)
+                    weight = base.weights[i];
+                if(weight > 0)
+                    visitor.visit(target, weight);
+            }
+        }
+        if(frozen != null && node < frozen.sizes.length){
+            for(int i = 0; i < frozen.sizes[node]; i++){
+                int target = frozen.targets[node][i], weight = frozen.weights[node][i];
+                if(weight > 0 && (!inBase || base.indexOf(node, target) < 0) && log.lookup(node, target) < 0)
+                    visitor.visit(target, weight);
+            }
+        }
+        if(node < log.sizes.length){
+            for(int i = 0; i < log.sizes[node]; i++){
+                int target = log.targets[node][i], weight = log.weights[node][i];
+                if(weight > 0 && (!inBase || base.indexOf(node, target) < 0))
+                    visitor.visit(target, weight);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public synchronized int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public synchronized void clear() {
+        base = new CSRGraph(0);
+        log = new DeltaLog(0);
+        frozen = null;
+        numNodes = numEdges = 0;
+        generation++;
+        notifyAll(); // Anybody waiting for an ongoing compaction can go ahead.
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * <p>Folds the delta log into a new {@link CSRGraph} base. If another compaction is in progress, the calling thread
+     * waits for it to finish first. The merge itself runs without holding the lock of the graph, so other threads can
+     * keep querying and mutating it in the meantime; their mutations will be folded by the next compaction. If the
+     * merge fails, its entries are returned to the delta log, and the threads that wait for it are released, before the
+     * exception propagates.</p>
+     * @throws RuntimeException if the edges and the log entries would not fit in a {@link CSRGraph}.
+     */
+    public void compact(){
+        DeltaLog folding;
+        CSRGraph oldBase;
+        int nodes;
+        long startGeneration;
+        synchronized (this){
+            compactionScheduled = false;
+            while(frozen != null){
+                try {
+                    wait();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if(log.entries == 0 && numNodes == base.getNumNodes())
+                return;
+            folding = frozen = log;
+            log = new DeltaLog(numNodes);
+            oldBase = base;
+            nodes = numNodes;
+            startGeneration = generation;
+        }
+        CSRGraph newBase = null;
+        try {
+            newBase = merge(oldBase, folding, nodes);
+        } finally {
+            synchronized (this){
+                if(generation == startGeneration){
+                    if(newBase != null){
+                        base = newBase;
+                    } else { // The merge failed: the frozen entries go back to the log, under the newer ones.
+                        for(int node = 0; node < log.sizes.length; node++)
+                            for(int i = 0; i < log.sizes[node]; i++)
+                                folding.put(node, log.targets[node][i], log.weights[node][i]);
+                        folding.ensureNodes(numNodes);
+                        log = folding;
+                    }
+                    frozen = null;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of log entries that have not yet been folded into the base.
+     * @return The number of pending log entries.
+     */
+    public synchronized int getPendingDeltas(){
+        return log.entries + (frozen == null ? 0 : frozen.entries);
+    }
+
+    /**
+     * Returns a {@link CSRGraph} with the current contents of the graph. If there are no pending log entries, this is
+     * the base itself and the call is O(1); otherwise, the graph is compacted first.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        compact();
+        synchronized (this){
+            if(log.entries == 0 && frozen == null && numNodes == base.getNumNodes())
+                return base;
+            CSRGraph merged = base;
+            if(frozen != null)
+                merged = merge(merged, frozen, numNodes);
+            return merge(merged, log, numNodes);
+        }
+    }
+
+    /**
+     * Returns the transpose of this graph. The graph is compacted first, so that, as long as no mutations happen between
+     * calls, the transpose of the compacted base is cached and returned in O(1).
+     * @return The transpose of this graph.
+     */
+    @Override
+    public CSRGraph transpose(){
+        return toCSRGraph().transpose();
+    }
+
+    /* One workspace per thread, so that the shortest path methods of Graph are thread-safe too. */
+    @Override
+    ShortestPathWorkspace searchWorkspace(){
+        return workspaces.get();
+    }
+
+    @Override
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        return reverseWorkspaces.get();
+    }
+
+    /**
+     * Starts a daemon thread that compacts the graph every time the delta log grows past the compaction threshold.
+     * Has no effect if background compaction is already running.
+     */
+    public synchronized void startBackgroundCompaction(){
+        if(compactor == null)
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "DeltaCSRGraph-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    /**
+     * Stops the background compaction thread, if any. A compaction that is already underway runs to completion.
+     */
+    public synchronized void stopBackgroundCompaction(){
+        if(compactor != null){
+            compactor.shutdown();
+            compactor = null;
+            compactionScheduled = false;
+        }
+    }
+
+    /* Merges the (sorted) rows of base with the (unsorted) rows of delta into a new CSRGraph with numNodes nodes. */
+    private static CSRGraph merge(CSRGraph base, DeltaLog delta, int numNodes){
+        int baseNodes = base.getNumNodes();
+        long capacity = (long)base.getNumEdges() + delta.entries;
+        if(capacity > Integer.MAX_VALUE - 8)
+            throw new RuntimeException("DeltaCSRGraph::merge(): " + capacity + " edges and log entries exceed the " +
+                    "capacity of a CSRGraph.");
+        int[] offsets = new int[numNodes + 1];
+        int[] targets = new int[(int)capacity], weights = new int[targets.length];
+        long[] scratch = new long[0];
+        int edge = 0;
+        for(int node = 0; node < numNodes; node++){
+            int from = node < baseNodes ? base.offsets[node] : 0, to = node < baseNodes ? base.offsets[node + 1] : 0;
+            int deltaSize = node < delta.sizes.length ? delta.sizes[node] : 0;
+            if(deltaSize == 0){
+                System.arraycopy(base.targets, from, targets, edge, to - from);
+                System.arraycopy(base.weights, from, weights, edge, to - from);
+                edge += to - from;
+            } else {
+                if(scratch.length < deltaSize)
+                    scratch = new long[Math.max(deltaSize, 2 * scratch.length)];
+                for(int i = 0; i < deltaSize; i++) // A log row never holds the same target twice.
+                    scratch[i] = ((long)delta.targets[node][i] << 32) | delta.weights[node][i];
+                Arrays.sort(scratch, 0, deltaSize);
+                int i = from, j = 0;
+                while(i < to || j < deltaSize){
+                    int deltaTarget = j < deltaSize ? (int)(scratch[j] >>> 32) : Integer.MAX_VALUE;
+                    if(i < to && base.targets[i] < deltaTarget){
+                        targets[edge] = base.targets[i];
+                        weights[edge++] = base.weights[i++];
+                    } else {
+                        if(i < to && base.targets[i] == deltaTarget)
+                            i++; // Overridden by the log.
+                        int weight = (int)scratch[j++];
+                        if(weight != 0){
+                            targets[edge] = deltaTarget;
+                            weights[edge++] = weight;
+                        }
+                    }
+                }
+            }
+            offsets[node + 1] = edge;
+        }
+        return new CSRGraph(offsets, Arrays.copyOf(targets, edge), Arrays.copyOf(weights, edge));
+    }
+}
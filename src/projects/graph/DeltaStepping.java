@@ -0,0 +1,247 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>{@link DeltaStepping} computes single-source shortest path distances to <b>all</b> nodes of a {@link Graph} in parallel,
+ * with the delta-stepping algorithm of Meyer and Sanders. Instead of settling one node at a time, like Dijkstra's
+ * algorithm does, it groups the nodes in <b>buckets</b> of width delta according to their tentative distance, and
+ * processes all the nodes of the smallest non-empty bucket at once:</p>
+ * <ol>
+ *     <li>The <b>light</b> edges (weight &lt;= delta) of the bucket's nodes are relaxed in parallel, repeatedly, since they
+ *     may re-insert nodes into the same bucket, until the bucket stays empty.</li>
+ *     <li>The <b>heavy</b> edges (weight &gt; delta) of all the nodes removed from the bucket are then relaxed in parallel,
+ *     once; they can only insert nodes into later buckets.</li>
+ * </ol>
+ * <p>Relaxations from different threads race on the same distances, so those live in an {@link AtomicIntegerArray} and
+ * are lowered with compare-and-set. A delta of 1 makes the algorithm behave like a (parallel) Dijkstra's, while a delta
+ * of {@link Graph#INFINITY} makes it behave like a (parallel) Bellman-Ford; values in between trade redundant relaxations
+ * for parallelism. {@link #defaultDelta(CSRGraph)} picks the maximum weight divided by the average degree, which is a
+ * common starting point.</p>
+ *
+ * <p>The algorithm runs over the arrays of a {@link CSRGraph}. {@link CSRGraph} instances are used directly, and all
+ * other graphs are converted through {@link CSRGraph#fromGraph(Graph)}, which reads the inner representation of
+ * {@link AdjacencyListGraph} and the other implementations of this package directly. Callers that run many searches
+ * over the same graph should convert it once themselves.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see DistanceTable
+ * @see projects.graph.clients.DeltaSteppingTimingClient
+ */
+public class DeltaStepping {
+
+    /* Frontiers smaller than this are relaxed by a single task. */
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    private DeltaStepping(){
+        // Only static methods.
+    }
+
+    /**
+     * Computes the distances from source to every node of g, with the default delta, on the common {@link ForkJoinPool}.
+     * @param g The {@link Graph} to compute distances over.
+     * @param source The source node.
+     * @return An array whose i-th element is the distance from source to node i, or {@link Graph#INFINITY} if i is
+     * unreachable. The distance of source itself is 0.
+     */
+    public static int[] distances(Graph g, int source){
+        CSRGraph csr = CSRGraph.fromGraph(g);
+        return distances(csr, source, defaultDelta(csr), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the distances from source to every node of g, with the provided delta, on the common {@link ForkJoinPool}.
+     * @param g The {@link Graph} to compute distances over.
+     * @param source The source node.
+     * @param delta The width of the buckets.
+     * @return An array whose i-th element is the distance from source to node i, or {@link Graph#INFINITY}.
+     * @throws RuntimeException if delta &lt; 1.
+     */
+    public static int[] distances(Graph g, int source, int delta){
+        return distances(g, source, delta, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the distances from source to every node of g, with the provided delta, on the provided {@link ForkJoinPool}.
+     * @param g The {@link Graph} to compute distances over.
+     * @param source The source node.
+     * @param delta The width of the buckets.
+     * @param pool The pool to run the relaxations on.
+     * @return An array whose i-th element is the distance from source to node i, or {@link Graph#INFINITY}.
+     * @throws RuntimeException if delta &lt; 1.
+     */
+    public static int[] distances(Graph g, int source, int delta, ForkJoinPool pool){
+        if(delta < 1)
+            throw new RuntimeException("DeltaStepping::distances(): Delta should be positive, was: " + delta + ".");
+        return new Run(CSRGraph.fromGraph(g), delta, pool).from(source);
+    }
+
+    /**
+     * Returns the delta that {@link #distances(Graph, int)} uses: the maximum edge weight divided by the average out-degree,
+     * and at least 1.
+     * @param g The graph the delta is meant for.
+     * @return A reasonable default delta for g.
+     */
+    public static int defaultDelta(CSRGraph g){
+        int maxWeight = 0;
+        for(int weight : g.weights)
+            maxWeight = Math.max(maxWeight, weight);
+        double averageDegree = g.getNumNodes() == 0 ? 1 : Math.max(1.0, (double)g.getNumEdges() / g.getNumNodes());
+        return Math.max(1, (int)(maxWeight / averageDegree));
+    }
+
+    /* A growable buffer of node ids. */
+    private static class NodeBuffer {
+        int[] nodes = new int[16];
+        int size;
+
+        void add(int node){
+            if(size == nodes.length)
+                nodes = Arrays.copyOf(nodes, 2 * size);
+            nodes[size++] = node;
+        }
+
+        void addAll(NodeBuffer other){
+            if(size + other.size > nodes.length)
+                nodes = Arrays.copyOf(nodes, Math.max(size + other.size, 2 * nodes.length));
+            System.arraycopy(other.nodes, 0, nodes, size, other.size);
+            size += other.size;
+        }
+    }
+
+    /* The state of a single source's computation. */
+    private static class Run {
+        private final CSRGraph g;
+        private final int delta;
+        private final ForkJoinPool pool;
+        private final AtomicIntegerArray dist;
+        private final TreeMap<Integer, NodeBuffer> buckets = new TreeMap<>();
+        private final int[] seenInFrontier, seenInBucket; // Phase stamps, used to de-duplicate node lists.
+        private int phase;
+
+        Run(CSRGraph g, int delta, ForkJoinPool pool){
+            this.g = g;
+            this.delta = delta;
+            this.pool = pool;
+            int numNodes = g.getNumNodes();
+            dist = new AtomicIntegerArray(numNodes);
+            for(int i = 0; i < numNodes; i++)
+                dist.set(i, Graph.INFINITY);
+            seenInFrontier = new int[numNodes];
+            seenInBucket = new int[numNodes];
+        }
+
+        int[] from(int source){
+            dist.set(source, 0);
+            bucket(0).add(source);
+            while(!buckets.isEmpty()){
+                Map.Entry<Integer, NodeBuffer> first = buckets.pollFirstEntry();
+                int current = first.getKey();
+                NodeBuffer removed = new NodeBuffer(); // All the nodes settled by this bucket, for the heavy phase.
+                int bucketPhase = ++phase;
+                NodeBuffer frontier = filter(first.getValue(), current);
+                while(frontier.size > 0){
+                    for(int i = 0; i < frontier.size; i++)
+                        if(seenInBucket[frontier.nodes[i]] != bucketPhase){
+                            seenInBucket[frontier.nodes[i]] = bucketPhase;
+                            removed.add(frontier.nodes[i]);
+                        }
+                    distribute(pool.invoke(new Relaxation(this, frontier, 0, frontier.size, true)));
+                    frontier = filter(buckets.remove(current), current); // Light edges may have re-filled the bucket.
+                }
+                distribute(pool.invoke(new Relaxation(this, removed, 0, removed.size, false)));
+            }
+            int[] result = new int[dist.length()];
+            for(int i = 0; i < result.length; i++)
+                result[i] = dist.get(i);
+            return result;
+        }
+
+        private NodeBuffer bucket(int index){
+            return buckets.computeIfAbsent(index, k -> new NodeBuffer());
+        }
+
+        /* Inserts every improved node into the bucket of its current distance. Nodes that fall into the current bucket
+         * form the next light frontier. */
+        private void distribute(NodeBuffer improved){
+            for(int i = 0; i < improved.size; i++){
+                int node = improved.nodes[i];
+                bucket(dist.get(node) / delta).add(node);
+            }
+        }
+
+        /* Keeps the nodes of a bucket that actually belong to it (a node that moved to an earlier bucket leaves a stale
+         * entry behind) and drops duplicates. */
+        private NodeBuffer filter(NodeBuffer bucket, int current){
+            NodeBuffer frontier = new NodeBuffer();
+            if(bucket == null)
+                return frontier;
+            int frontierPhase = ++phase;
+            for(int i = 0; i < bucket.size; i++){
+                int node = bucket.nodes[i];
+                if(dist.get(node) / delta == current && seenInFrontier[node] != frontierPhase){
+                    seenInFrontier[node] = frontierPhase;
+                    frontier.add(node);
+                }
+            }
+            return frontier;
+        }
+    }
+
+    /* Relaxes the light or heavy out-edges of nodes[from, to) and returns the nodes whose distance was lowered. */
+    private static class Relaxation extends RecursiveTask<NodeBuffer> {
+        private static final long serialVersionUID = 1L;
+        private final Run run;
+        private final NodeBuffer nodes;
+        private final int from, to;
+        private final boolean light;
+
+        Relaxation(Run run, NodeBuffer nodes, int from, int to, boolean light){
+            this.run = run;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected NodeBuffer compute() {
+            if(to - from > SEQUENTIAL_THRESHOLD){
+                int middle = (from + to) >>> 1;
+                Relaxation left = new Relaxation(run, nodes, from, middle, light);
+                left.fork();
+                NodeBuffer right = new Relaxation(run, nodes, middle, to, light).compute();
+                NodeBuffer improved = left.join();
+                improved.addAll(right);
+                return improved;
+            }
+            NodeBuffer improved = new NodeBuffer();
+            CSRGraph g = run.g;
+            AtomicIntegerArray dist = run.dist;
+            for(int i = from; i < to; i++){
+                int node = nodes.nodes[i], distance = dist.get(node);
+                for(int e = g.offsets[node]; e < g.offsets[node + 1]; e++){
+                    int weight = g.weights[e];
+                    if((weight <= run.delta) != light)
+                        continue;
+                    long candidate = (long)distance + weight;
+                    if(candidate >= Graph.INFINITY)
+                        continue;
+                    int target = g.targets[e], old;
+                    while(candidate < (old = dist.get(target)))
+                        if(dist.compareAndSet(target, old, (int)candidate)){
+                            improved.add(target);
+                            break;
+                        }
+                }
+            }
+            return improved;
+        }
+    }
+}
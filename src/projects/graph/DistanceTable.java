@@ -0,0 +1,152 @@
+package projects.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>{@link DistanceTable} computes tables of shortest path <b>distances</b> between sets of nodes of a {@link Graph}, such as
+ * the cost matrices that vehicle routing needs. Every row of a table is the result of a single Dijkstra search from the
+ * corresponding source, and the searches of different sources run in parallel on a {@link ForkJoinPool}. Every worker
+ * thread keeps a {@link ShortestPathWorkspace} of its own and reuses it for all the searches it runs, so the only O(V)
+ * allocations are one per thread, not one per source.</p>
+ *
+ * <p>In the tables returned, entry [i][j] is the length of the shortest path from the i-th source to the j-th target, or
+ * {@link Graph#INFINITY} if there is no such path. The distance of a node to itself is 0, i.e that of the empty path; this
+ * is different from {@link Graph#shortestPath(int, int)}, which looks for a cycle when source == dest.</p>
+ *
+ * <p>The graph must not be mutated while a table is being computed. Its read-only methods are called concurrently from
+ * multiple threads, which is safe for {@link CSRGraph} and for implementations that don't modify their state on reads.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph#shortestPath(int, int, ShortestPathWorkspace)
+ */
+public class DistanceTable {
+
+    /* The number of sources below which a task stops splitting and runs its searches sequentially. */
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+
+    private DistanceTable(){
+        // Only static methods.
+    }
+
+    /**
+     * Computes the V x V table of all-pairs shortest path distances, on the common {@link ForkJoinPool}. The layout of
+     * the result is the same as that of the inner representation of {@link AdjacencyMatrixGraph}: row i holds the
+     * distances from node i.
+     * @param g The {@link Graph} to compute distances over.
+     * @return The all-pairs distance table.
+     */
+    public static int[][] allPairs(Graph g){
+        return allPairs(g, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #allPairs(Graph)}, but runs the searches on the provided {@link ForkJoinPool}.
+     * @param g The {@link Graph} to compute distances over.
+     * @param pool The pool to run the searches on.
+     * @return The all-pairs distance table.
+     */
+    public static int[][] allPairs(Graph g, ForkJoinPool pool){
+        int numNodes = g.getNumNodes();
+        int[] nodes = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            nodes[i] = i;
+        return manyToMany(g, nodes, nodes, pool);
+    }
+
+    /**
+     * Computes the table of shortest path distances from every node of sources to every node of targets, on the common
+     * {@link ForkJoinPool}. Every search stops as soon as it has settled all of the targets, so a small set of targets
+     * that are close to the sources is much cheaper than a full all-pairs computation.
+     * @param g The {@link Graph} to compute distances over.
+     * @param sources The source nodes, one per row of the result.
+     * @param targets The target nodes, one per column of the result.
+     * @return A sources.length x targets.length distance table.
+     */
+    public static int[][] manyToMany(Graph g, int[] sources, int[] targets){
+        return manyToMany(g, sources, targets, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #manyToMany(Graph, int[], int[])}, but runs the searches on the provided {@link ForkJoinPool}.
+     * @param g The {@link Graph} to compute distances over.
+     * @param sources The source nodes, one per row of the result.
+     * @param targets The target nodes, one per column of the result.
+     * @param pool The pool to run the searches on.
+     * @return A sources.length x targets.length distance table.
+     */
+    public static int[][] manyToMany(Graph g, int[] sources, int[] targets, ForkJoinPool pool){
+        int numNodes = g.getNumNodes();
+        boolean[] isTarget = new boolean[numNodes];
+        int distinctTargets = 0;
+        for(int target : targets)
+            if(!isTarget[target]){
+                isTarget[target] = true;
+                distinctTargets++;
+            }
+        int[][] table = new int[sources.length][];
+        ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(() -> new ShortestPathWorkspace(numNodes));
+        pool.invoke(new Searches(g, sources, targets, isTarget, distinctTargets, table, workspaces, 0, sources.length));
+        return table;
+    }
+
+    /* Fills the rows [from, to) of the table, splitting the range in halves until it is small enough. */
+    private static class Searches extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Graph g;
+        private final int[] sources, targets;
+        private final boolean[] isTarget;
+        private final int distinctTargets;
+        private final int[][] table;
+        private final ThreadLocal<ShortestPathWorkspace> workspaces;
+        private final int from, to;
+
+        Searches(Graph g, int[] sources, int[] targets, boolean[] isTarget, int distinctTargets, int[][] table,
+                 ThreadLocal<ShortestPathWorkspace> workspaces, int from, int to){
+            this.g = g;
+            this.sources = sources;
+            this.targets = targets;
+            this.isTarget = isTarget;
+            this.distinctTargets = distinctTargets;
+            this.table = table;
+            this.workspaces = workspaces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= SEQUENTIAL_THRESHOLD){
+                ShortestPathWorkspace ws = workspaces.get();
+                for(int row = from; row < to; row++)
+                    table[row] = search(sources[row], ws);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Searches(g, sources, targets, isTarget, distinctTargets, table, workspaces, from, middle),
+                    new Searches(g, sources, targets, isTarget, distinctTargets, table, workspaces, middle, to));
+        }
+
+        /* A Dijkstra search from source that stops once every target has been settled. */
+        private int[] search(int source, ShortestPathWorkspace ws){
+            ws.reset(g.getNumNodes());
+            ws.reach(source, 0, -1);
+            ws.heap.insert(source, 0);
+            int remaining = distinctTargets;
+            while(remaining > 0 && !ws.heap.isEmpty()){
+                int node = ws.heap.extractMin();
+                ws.settle(node);
+                if(isTarget[node] && --remaining == 0)
+                    break;
+                g.relax(node, ws.dist[node], ws);
+            }
+            int[] row = new int[targets.length];
+            for(int i = 0; i < targets.length; i++)
+                row[i] = ws.getDistance(targets[i]);
+            return row;
+        }
+    }
+}
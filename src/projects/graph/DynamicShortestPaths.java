@@ -0,0 +1,335 @@
+package projects.graph;
+
+import projects.graph.utils.IndexedMinHeap;
+import projects.graph.utils.IntIntHashMap;
+import projects.graph.utils.IntNeighborList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>{@link DynamicShortestPaths} maintains the shortest path distances from a fixed source node to every node of an
+ * {@link ObservableGraph}, along with a shortest path tree, and repairs them incrementally after every mutation of the
+ * graph, instead of recomputing them from scratch. It follows the approach of Ramalingam and Reps: an update only
+ * processes the nodes whose distance it actually changes, and it runs Dijkstra's algorithm over them alone.</p>
+ * <ul>
+ *     <li>When an edge u-&gt;v is added or gets lighter, and it gives v a shorter distance, v is lowered and a Dijkstra
+ *     search that starts from v alone relaxes its way through the nodes whose distance improves, and stops where
+ *     distances stay the same.</li>
+ *     <li>When an edge u-&gt;v is deleted or gets heavier, nothing changes unless it is the edge of v in the shortest
+ *     path tree. If it is, the distances of the subtree of v are invalidated, every node of the subtree gets the best
+ *     distance that its in-edges from <b>outside</b> the subtree offer, and a Dijkstra search over the subtree settles
+ *     the rest.</li>
+ * </ul>
+ * <p>So the cost of an update is O((A + E(A)) log(A)), where A is the number of nodes whose distance changes (or, for an
+ * increase, the size of the subtree of v) and E(A) the number of edges incident to them, regardless of the size of the
+ * graph. To find the in-edges of a node, the instance keeps a reverse adjacency index of the graph, which it builds in
+ * O(V + E) time on construction and keeps up to date on every mutation. Like {@link IntNeighborList}, the reverse row of
+ * a node is scanned linearly while it is short, and gets an {@link IntIntHashMap} from source to position once its
+ * in-degree reaches {@link IntNeighborList#DEFAULT_INDEX_THRESHOLD}, so that a mutation costs O(1) expected time even on
+ * the in-edges of hubs.</p>
+ *
+ * <p>Unlike {@link Graph#shortestPath(int, int)}, which looks for a cycle when source == dest, the distance of the source
+ * to itself is 0. {@link DynamicShortestPaths} is not thread-safe; it is updated from within the mutators of the graph.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see ObservableGraph
+ * @see EdgeListener
+ * @see Graph#shortestPath(int, int)
+ */
+public class DynamicShortestPaths implements EdgeListener {
+
+    private static final int[] NO_EDGES = new int[0];
+    private static final int INDEX_THRESHOLD = IntNeighborList.DEFAULT_INDEX_THRESHOLD;
+
+    private final ObservableGraph graph;
+    private final int source;
+    private int numNodes;
+
+    /* The shortest path tree: parent[v] is the predecessor of v, and the children of every node form a doubly linked
+     * list, so that a subtree can be collected, and a node moved to another parent, without any search. */
+    private int[] dist, parent, firstChild, nextSibling, prevSibling;
+
+    /* The reverse adjacency index: the sources and weights of the in-edges of every node, in no particular order. */
+    private int[][] inSources, inWeights;
+    private int[] inDegree;
+    private IntIntHashMap[] inIndex; // Source to position in the reverse row, or null while the row is short.
+
+    private final IndexedMinHeap heap;
+    private int[] marks, subtree; // marks[v] == epoch iff v is in the subtree that is being repaired.
+    private int epoch;
+    private int current; // The node whose out-edges relaxer relaxes.
+    private final NeighborVisitor relaxer = this::relax;
+    private int lastRepairSize;
+
+    /**
+     * Computes the shortest paths from source over graph, and subscribes to the mutations of graph to keep them up to
+     * date. This costs O(V + E) time for the reverse index, plus a Dijkstra search.
+     * @param graph The {@link ObservableGraph} to follow.
+     * @param source The source node of all paths.
+     * @throws RuntimeException if source is not a node of graph.
+     */
+    public DynamicShortestPaths(ObservableGraph graph, int source){
+        if(source < 0 || source >= graph.getNumNodes())
+            throw new RuntimeException("DynamicShortestPaths::DynamicShortestPaths(): Source " + source +
+                    " is not a node of the graph.");
+        this.graph = graph;
+        this.source = source;
+        int capacity = Math.max(16, graph.getNumNodes());
+        dist = new int[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        prevSibling = new int[capacity];
+        inSources = new int[capacity][];
+        inWeights = new int[capacity][];
+        inDegree = new int[capacity];
+        inIndex = new IntIntHashMap[capacity];
+        marks = new int[capacity];
+        subtree = new int[capacity];
+        heap = new IndexedMinHeap(capacity);
+        for(int node = 0; node < graph.getNumNodes(); node++)
+            nodeAdded(node);
+        for(int node = 0; node < numNodes; node++){
+            int from = node;
+            graph.forEachNeighbor(node, (neighbor, weight) -> setInEdge(neighbor, from, weight));
+        }
+        heap.insert(source, 0);
+        propagate();
+        graph.addListener(this);
+    }
+
+    /**
+     * Returns the source node of all paths.
+     * @return The source node.
+     */
+    public int getSource(){
+        return source;
+    }
+
+    /**
+     * Returns the length of the shortest path from the source to node, in O(1) time.
+     * @param node The node whose distance we want.
+     * @return The distance of node from the source, 0 for the source itself, or {@link Graph#INFINITY} if node is
+     * unreachable or not a node of the graph.
+     */
+    public int distance(int node){
+        return node >= 0 && node < numNodes ? dist[node] : Graph.INFINITY;
+    }
+
+    /**
+     * Returns a shortest path from the source to node, in O(length) time.
+     * @param node The last node of the path.
+     * @return A {@link List} of the nodes of the path, whose head is the source and whose tail is node; just the source if
+     * node is the source, and an empty list if node is unreachable.
+     */
+    public List<Integer> pathTo(int node){
+        if(distance(node) == Graph.INFINITY)
+            return Collections.emptyList();
+        List<Integer> path = new ArrayList<>();
+        for(int v = node; v != -1; v = parent[v])
+            path.add(v);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the number of nodes that the last update processed, which measures its cost: the size of the invalidated
+     * subtree, if any, plus the number of nodes that its Dijkstra search settled.
+     * @return The number of nodes that the last update processed.
+     */
+    public int getLastRepairSize(){
+        return lastRepairSize;
+    }
+
+    /**
+     * Unsubscribes from the mutations of the graph. The distances stop being updated.
+     */
+    public void detach(){
+        graph.removeListener(this);
+    }
+
+    @Override
+    public void edgeChanged(int u, int v, int oldWeight, int newWeight) {
+        setInEdge(v, u, newWeight);
+        lastRepairSize = 0;
+        if(oldWeight == 0 || (newWeight != 0 && newWeight < oldWeight)){
+            long candidate = dist[u] == Graph.INFINITY ? Graph.INFINITY : (long)dist[u] + newWeight;
+            if(candidate < dist[v]){
+                dist[v] = (int)candidate;
+                setParent(v, u);
+                heap.insert(v, dist[v]);
+                propagate();
+            }
+        } else if(parent[v] == u){
+            repairSubtree(v);
+        }
+    }
+
+    @Override
+    public void nodeAdded(int node) {
+        if(node >= dist.length)
+            grow(Math.max(node + 1, 2 * dist.length));
+        dist[node] = node == source ? 0 : Graph.INFINITY;
+        parent[node] = firstChild[node] = nextSibling[node] = prevSibling[node] = -1;
+        inSources[node] = inWeights[node] = NO_EDGES;
+        inDegree[node] = 0;
+        inIndex[node] = null;
+        numNodes = node + 1;
+    }
+
+    @Override
+    public void cleared() {
+        numNodes = 0; // nodeAdded() resets the state of every node that is added again.
+    }
+
+    /* Invalidates the subtree of v, whose tree edge got heavier or was deleted, and recomputes its distances. */
+    private void repairSubtree(int v){
+        if(++epoch == 0){
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+        int count = 0;
+        subtree[count++] = v;
+        marks[v] = epoch;
+        for(int i = 0; i < count; i++)
+            for(int child = firstChild[subtree[i]]; child != -1; child = nextSibling[child]){
+                marks[child] = epoch;
+                subtree[count++] = child;
+            }
+        for(int i = 0; i < count; i++){
+            dist[subtree[i]] = Graph.INFINITY;
+            setParent(subtree[i], -1);
+        }
+        // The distances outside of the subtree cannot have changed, so its in-edges from outside are final candidates.
+        for(int i = 0; i < count; i++){
+            int node = subtree[i], best = Graph.INFINITY, bestParent = -1;
+            int[] sources = inSources[node], weights = inWeights[node];
+            for(int j = 0; j < inDegree[node]; j++){
+                int from = sources[j];
+                if(marks[from] == epoch || dist[from] == Graph.INFINITY)
+                    continue;
+                long candidate = (long)dist[from] + weights[j];
+                if(candidate < best){
+                    best = (int)candidate;
+                    bestParent = from;
+                }
+            }
+            if(bestParent != -1){
+                dist[node] = best;
+                setParent(node, bestParent);
+                heap.insert(node, best);
+            }
+        }
+        lastRepairSize = count;
+        propagate();
+    }
+
+    /* Dijkstra's algorithm from the nodes currently in the heap. */
+    private void propagate(){
+        while(!heap.isEmpty()){
+            current = heap.extractMin();
+            lastRepairSize++;
+            graph.forEachNeighbor(current, relaxer);
+        }
+    }
+
+    private void relax(int neighbor, int weight){
+        long candidate = (long)dist[current] + weight;
+        if(candidate < dist[neighbor]){
+            dist[neighbor] = (int)candidate;
+            setParent(neighbor, current);
+            heap.insertOrDecrease(neighbor, (int)candidate);
+        }
+    }
+
+    /* Moves node to the children of newParent, or out of the tree if newParent is -1. */
+    private void setParent(int node, int newParent){
+        int oldParent = parent[node];
+        if(oldParent == newParent)
+            return;
+        if(oldParent != -1){
+            if(prevSibling[node] != -1)
+                nextSibling[prevSibling[node]] = nextSibling[node];
+            else
+                firstChild[oldParent] = nextSibling[node];
+            if(nextSibling[node] != -1)
+                prevSibling[nextSibling[node]] = prevSibling[node];
+        }
+        parent[node] = newParent;
+        prevSibling[node] = -1;
+        nextSibling[node] = newParent == -1 ? -1 : firstChild[newParent];
+        if(newParent != -1){
+            if(firstChild[newParent] != -1)
+                prevSibling[firstChild[newParent]] = node;
+            firstChild[newParent] = node;
+        }
+    }
+
+    /* Records the weight of the in-edge from->node of the reverse index, where a weight of 0 removes it. */
+    private void setInEdge(int node, int from, int weight){
+        int[] sources = inSources[node];
+        int degree = inDegree[node];
+        IntIntHashMap index = inIndex[node];
+        int position = index != null ? index.get(from, -1) : -1;
+        if(index == null)
+            for(int i = 0; i < degree; i++)
+                if(sources[i] == from){
+                    position = i;
+                    break;
+                }
+        if(position >= 0){
+            if(weight != 0){
+                inWeights[node][position] = weight;
+            } else { // Moves the last in-edge into the hole.
+                sources[position] = sources[degree - 1];
+                inWeights[node][position] = inWeights[node][degree - 1];
+                inDegree[node]--;
+                if(index != null){
+                    if(inDegree[node] < INDEX_THRESHOLD / 2){
+                        inIndex[node] = null;
+                    } else {
+                        index.remove(from);
+                        if(position < degree - 1)
+                            index.put(sources[position], position);
+                    }
+                }
+            }
+            return;
+        }
+        if(weight == 0)
+            return;
+        if(degree == sources.length){
+            inSources[node] = sources = Arrays.copyOf(sources, Math.max(4, 2 * degree));
+            inWeights[node] = Arrays.copyOf(inWeights[node], sources.length);
+        }
+        sources[degree] = from;
+        inWeights[node][degree] = weight;
+        inDegree[node]++;
+        if(index != null){
+            index.put(from, degree);
+        } else if(inDegree[node] >= INDEX_THRESHOLD){
+            inIndex[node] = index = new IntIntHashMap(inDegree[node]);
+            for(int i = 0; i < inDegree[node]; i++)
+                index.put(sources[i], i);
+        }
+    }
+
+    private void grow(int capacity){
+        dist = Arrays.copyOf(dist, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        prevSibling = Arrays.copyOf(prevSibling, capacity);
+        inSources = Arrays.copyOf(inSources, capacity);
+        inWeights = Arrays.copyOf(inWeights, capacity);
+        inDegree = Arrays.copyOf(inDegree, capacity);
+        inIndex = Arrays.copyOf(inIndex, capacity);
+        marks = Arrays.copyOf(marks, capacity);
+        subtree = Arrays.copyOf(subtree, capacity);
+        heap.ensureCapacity(capacity);
+    }
+}
@@ -0,0 +1,345 @@
+package projects.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>{@link EdgeListImporter} reads graphs out of text edge lists. Files are streamed through a single NIO
+ * {@link ByteBuffer} and parsed byte by byte, so no {@link String} or other object is allocated per line, and files of
+ * any size can be read in O(1) memory besides that of the {@link EdgeSink} that receives the edges. Two formats are
+ * supported:</p>
+ * <ul>
+ *     <li>{@link Format#DIMACS}, the format of the 9th DIMACS Implementation Challenge (<tt>.gr</tt> files). Lines that
+ *     start with <tt>c</tt> are comments, the line <tt>p sp V E</tt> declares the number of nodes and edges, and every
+ *     line <tt>a u v w</tt> is an edge from u to v with weight w. Nodes are numbered from 1, and are shifted to start
+ *     from 0.</li>
+ *     <li>{@link Format#TSV}, the format of most other edge lists: every line is <tt>u v</tt> or <tt>u v w</tt>, with the
+ *     fields separated by tabs or spaces, and nodes numbered from 0. A missing weight is 1, and any further fields are
+ *     ignored. Lines that start with <tt>#</tt> or <tt>%</tt> are comments.</li>
+ * </ul>
+ *
+ * <p>{@link #readCSRGraph(Path, Format)} is the bulk-load path: it collects the edges in three primitive arrays, sized
+ * from the header of the file if it has one, and builds a {@link CSRGraph} out of them with a single counting sort
+ * through {@link CSRGraph#fromEdges(int, int[], int[], int[], int)}. This is orders of magnitude faster than
+ * calling {@link Graph#addNode()} and {@link Graph#addEdge(int, int, int)} once per node and edge, which is what
+ * {@link EdgeSink#into(Graph)} does for graphs that have to be built in place.</p>
+ *
+ * <p>{@link #readCSRGraph(Path, Format, ForkJoinPool)} does the same on several cores. The file is split into byte
+ * ranges whose boundaries are moved forward to the next line start, every range is parsed by its own task into its own
+ * edge buffer, and the buffers are merged by the parallel counting sort of {@link ParallelCountingSort}, so that
+ * neither the parser nor the sort is bound to a single thread.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see EdgeSink
+ * @see CSRGraph
+ */
+public class EdgeListImporter {
+
+    /**
+     * The text formats that {@link EdgeListImporter} can parse.
+     */
+    public enum Format {
+        /**
+         * DIMACS shortest path format: <tt>c</tt> comments, a <tt>p sp V E</tt> header and <tt>a u v w</tt> edges, with
+         * nodes numbered from 1.
+         */
+        DIMACS,
+
+        /**
+         * Whitespace-separated <tt>u v [w]</tt> lines, with nodes numbered from 0, and <tt>#</tt> or <tt>%</tt> comments.
+         */
+        TSV
+    }
+
+    private static final int BUFFER_BYTES = 1 << 20; // Also the maximum length of a line.
+    private static final int RANGES_PER_THREAD = 4;
+    private static final long MIN_RANGE_BYTES = 1 << 22; // Smaller ranges are not worth a task of their own.
+
+    private EdgeListImporter(){
+        // Only static methods.
+    }
+
+    /**
+     * Parses file and passes every edge to sink, in file order.
+     * @param file The file to read.
+     * @param format The format of file.
+     * @param sink The {@link EdgeSink} to pass the edges to.
+     * @throws IOException if file cannot be read, or if it contains a malformed line.
+     */
+    public static void read(Path file, Format format, EdgeSink sink) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            parseRange(channel, 0, channel.size(), new LineParser(file, format, sink));
+        }
+    }
+
+    /**
+     * Parses file into a {@link CSRGraph}. The number of nodes is the larger of the one declared in the header, if any,
+     * and the largest node that appears in an edge plus one.
+     * @param file The file to read.
+     * @param format The format of file.
+     * @return A {@link CSRGraph} with the edges of file.
+     * @throws IOException if file cannot be read, or if it contains a malformed line.
+     * @throws RuntimeException if file contains more edges than a {@link CSRGraph} can hold.
+     */
+    public static CSRGraph readCSRGraph(Path file, Format format) throws IOException {
+        EdgeBuffer edges = new EdgeBuffer(true);
+        read(file, format, edges);
+        return CSRGraph.fromEdges(edges.numNodes, edges.sources, edges.dests, edges.weights, edges.size);
+    }
+
+    /**
+     * Parses file into a {@link CSRGraph} on the provided {@link ForkJoinPool}. The result is identical to that of
+     * {@link #readCSRGraph(Path, Format)}, including the order in which duplicate edges override each other.
+     * @param file The file to read.
+     * @param format The format of file.
+     * @param pool The pool to parse and sort on.
+     * @return A {@link CSRGraph} with the edges of file.
+     * @throws IOException if file cannot be read, or if it contains a malformed line.
+     * @throws RuntimeException if file contains more edges than a {@link CSRGraph} can hold.
+     */
+    public static CSRGraph readCSRGraph(Path file, Format format, ForkJoinPool pool) throws IOException {
+        return readCSRGraph(file, format, pool, MIN_RANGE_BYTES);
+    }
+
+    /* As above, but the file is split into ranges of at least minRangeBytes bytes, so that tests can split small files. */
+    static CSRGraph readCSRGraph(Path file, Format format, ForkJoinPool pool, long minRangeBytes) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            int numRanges = (int)Math.max(1, Math.min(RANGES_PER_THREAD * pool.getParallelism(), size / minRangeBytes));
+            long[] starts = new long[numRanges + 1];
+            for(int r = 1; r < numRanges; r++)
+                starts[r] = Math.max(starts[r - 1], lineStartAtOrAfter(channel, size * r / numRanges, size));
+            starts[numRanges] = size;
+            EdgeBuffer[] buffers = new EdgeBuffer[numRanges];
+            RangeTask[] tasks = new RangeTask[numRanges];
+            for(int r = 0; r < numRanges; r++){
+                buffers[r] = new EdgeBuffer(false); // The header, if any, describes the whole file, not a range.
+                tasks[r] = new RangeTask(channel, starts[r], starts[r + 1], new LineParser(file, format, buffers[r]));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            for(RangeTask task : tasks)
+                if(task.failure != null)
+                    throw task.failure;
+            int numNodes = 0;
+            ParallelCountingSort.EdgeChunk[] chunks = new ParallelCountingSort.EdgeChunk[numRanges];
+            for(int r = 0; r < numRanges; r++){
+                numNodes = Math.max(numNodes, buffers[r].numNodes);
+                chunks[r] = new ParallelCountingSort.EdgeChunk(buffers[r].sources, buffers[r].dests, buffers[r].weights,
+                        0, buffers[r].size);
+            }
+            return ParallelCountingSort.build(numNodes, chunks, pool);
+        }
+    }
+
+    /* Returns the position of the first line that starts at or after position, or size if there is none. */
+    private static long lineStartAtOrAfter(FileChannel channel, long position, long size) throws IOException {
+        if(position == 0)
+            return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for(long scanned = position - 1; scanned < size; ){ // A line starts at position if the byte before it is a '\n'.
+            buffer.clear();
+            int read = channel.read(buffer, scanned);
+            if(read < 0)
+                break;
+            for(int i = 0; i < read; i++)
+                if(buffer.get(i) == '\n')
+                    return scanned + i + 1;
+            scanned += read;
+        }
+        return size;
+    }
+
+    /* Parses one byte range of the file. IOExceptions are kept, so that the caller can rethrow them as they are. */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final FileChannel channel;
+        private final long from, to;
+        private final LineParser parser;
+        private IOException failure;
+
+        RangeTask(FileChannel channel, long from, long to, LineParser parser){
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.parser = parser;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                parseRange(channel, from, to, parser);
+            } catch(IOException e){
+                failure = e;
+            }
+        }
+    }
+
+    /* Parses the lines of [from, to) of the channel. The range must start at the beginning of a line. */
+    private static void parseRange(FileChannel channel, long from, long to, LineParser parser) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(BUFFER_BYTES, Math.max(to - from, 1)));
+        byte[] bytes = buffer.array();
+        long position = from; // The file position of bytes[0].
+        int carried = 0; // The bytes of an incomplete line, kept at the start of the buffer.
+        while(true){
+            buffer.limit((int)Math.min(bytes.length, to - position));
+            buffer.position(carried);
+            boolean last = false;
+            while(buffer.hasRemaining() && !last)
+                last = channel.read(buffer, position + buffer.position()) < 0; // Only if the file shrank.
+            int end = buffer.position();
+            last |= position + end >= to;
+            int lineStart = 0;
+            for(int i = carried; i < end; i++)
+                if(bytes[i] == '\n'){
+                    parser.parse(bytes, lineStart, i, position + lineStart);
+                    lineStart = i + 1;
+                }
+            if(last){
+                if(lineStart < end)
+                    parser.parse(bytes, lineStart, end, position + lineStart);
+                return;
+            }
+            if(lineStart == 0)
+                throw new IOException("EdgeListImporter::read(): The line at byte " + position + " of " + parser.file +
+                        " is longer than " + bytes.length + " bytes.");
+            carried = end - lineStart;
+            System.arraycopy(bytes, lineStart, bytes, 0, carried);
+            position += lineStart;
+        }
+    }
+
+    /* Turns single lines into calls to an EdgeSink. */
+    private static class LineParser {
+        private final Path file;
+        private final Format format;
+        private final EdgeSink sink;
+        private byte[] bytes;
+        private int cursor, end;
+        private long lineOffset;
+
+        LineParser(Path file, Format format, EdgeSink sink){
+            this.file = file;
+            this.format = format;
+            this.sink = sink;
+        }
+
+        /* Parses the line bytes[from, to), which starts at the provided byte offset of the file. */
+        void parse(byte[] bytes, int from, int to, long offset) throws IOException {
+            this.bytes = bytes;
+            cursor = from;
+            end = to;
+            lineOffset = offset;
+            skipBlanks();
+            if(cursor == end)
+                return;
+            byte first = bytes[cursor];
+            if(format == Format.DIMACS){
+                if(first == 'c')
+                    return;
+                cursor++;
+                if(first == 'p'){
+                    skipBlanks();
+                    while(cursor < end && !isBlank(bytes[cursor])) // The problem type, e.g "sp".
+                        cursor++;
+                    int numNodes = (int)number(Integer.MAX_VALUE);
+                    sink.expect(numNodes, number(Long.MAX_VALUE));
+                } else if(first == 'a'){
+                    int source = node(1), dest = node(1);
+                    sink.edge(source, dest, (int)number(Integer.MAX_VALUE));
+                } else {
+                    throw malformed();
+                }
+            } else {
+                if(first == '#' || first == '%')
+                    return;
+                int source = node(0), dest = node(0);
+                skipBlanks();
+                sink.edge(source, dest, cursor == end ? 1 : (int)number(Integer.MAX_VALUE));
+            }
+        }
+
+        /* Parses a node numbered from base, and returns it numbered from 0. */
+        private int node(int base) throws IOException {
+            long node = number(Integer.MAX_VALUE);
+            if(node < base)
+                throw malformed();
+            return (int)(node - base);
+        }
+
+        /* Parses a non-negative decimal number that is at most max, after any blanks. */
+        private long number(long max) throws IOException {
+            skipBlanks();
+            if(cursor == end || bytes[cursor] < '0' || bytes[cursor] > '9')
+                throw malformed();
+            long value = 0;
+            while(cursor < end && bytes[cursor] >= '0' && bytes[cursor] <= '9'){
+                int digit = bytes[cursor++] - '0';
+                if(value > (max - digit) / 10)
+                    throw malformed();
+                value = 10 * value + digit;
+            }
+            if(cursor < end && !isBlank(bytes[cursor]))
+                throw malformed();
+            return value;
+        }
+
+        private void skipBlanks(){
+            while(cursor < end && isBlank(bytes[cursor]))
+                cursor++;
+        }
+
+        private static boolean isBlank(byte b){
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        private IOException malformed(){
+            return new IOException("EdgeListImporter::read(): The line at byte " + lineOffset + " of " + file +
+                    " is malformed.");
+        }
+    }
+
+    /* Collects edges in growable primitive arrays, optionally pre-sized by the header of the file. */
+    private static class EdgeBuffer implements EdgeSink {
+        private final boolean presize;
+        private int[] sources = new int[16], dests = new int[16], weights = new int[16];
+        private int size, numNodes;
+
+        EdgeBuffer(boolean presize){
+            this.presize = presize;
+        }
+
+        @Override
+        public void expect(int numNodes, long numEdges){
+            this.numNodes = Math.max(this.numNodes, numNodes);
+            if(presize && numEdges > sources.length && numEdges < Integer.MAX_VALUE){
+                sources = Arrays.copyOf(sources, (int)numEdges);
+                dests = Arrays.copyOf(dests, (int)numEdges);
+                weights = Arrays.copyOf(weights, (int)numEdges);
+            }
+        }
+
+        @Override
+        public void edge(int source, int dest, int weight){
+            if(size == sources.length){
+                if(size == Integer.MAX_VALUE - 8)
+                    throw new RuntimeException("EdgeListImporter::readCSRGraph(): More than " + size + " edges.");
+                int capacity = (int)Math.min(2L * size, Integer.MAX_VALUE - 8);
+                sources = Arrays.copyOf(sources, capacity);
+                dests = Arrays.copyOf(dests, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            sources[size] = source;
+            dests[size] = dest;
+            weights[size++] = weight;
+            numNodes = Math.max(numNodes, Math.max(source, dest) + 1);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package projects.graph;
+
+/**
+ * <p>An {@link EdgeListener} is notified of every change to the edges of an {@link ObservableGraph}, right after the change
+ * has been applied, so that derived structures, like {@link DynamicShortestPaths}, can be repaired incrementally instead
+ * of being recomputed from scratch. Weights follow the conventions of {@link Graph#getEdgeWeight(int, int)}: a weight of 0
+ * means that the edge does not exist.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see ObservableGraph
+ */
+@FunctionalInterface
+public interface EdgeListener {
+
+    /**
+     * Called after the weight of the edge source-&gt;dest changed. Insertions have an old weight of 0, and deletions a new
+     * weight of 0. Calls that did not change the weight, like the deletion of a missing edge, are not reported.
+     * @param source The source node of the edge.
+     * @param dest The sink node of the edge.
+     * @param oldWeight The weight of the edge before the change.
+     * @param newWeight The weight of the edge after the change.
+     */
+    void edgeChanged(int source, int dest, int oldWeight, int newWeight);
+
+    /**
+     * Called after a node was added to the graph. The default implementation does nothing.
+     * @param node The id of the new node.
+     */
+    default void nodeAdded(int node){
+        // Nothing to do by default.
+    }
+
+    /**
+     * Called after the graph was cleared. The default implementation does nothing.
+     */
+    default void cleared(){
+        // Nothing to do by default.
+    }
+}
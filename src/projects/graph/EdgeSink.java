@@ -0,0 +1,59 @@
+package projects.graph;
+
+/**
+ * <p>{@link EdgeSink} receives the edges that {@link EdgeListImporter} parses out of a file, one at a time and in file
+ * order, as primitive <tt>int</tt>s. Implementations decide how the edges are stored, so that an importer can feed an
+ * edge buffer, an existing {@link Graph} or a statistics pass alike, without allocating anything per edge.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see EdgeListImporter
+ */
+@FunctionalInterface
+public interface EdgeSink {
+
+    /**
+     * Receives an edge. Like {@link Graph#addEdge(int, int, int)}, a weight of 0 is a deletion, and a later edge between
+     * the same nodes overrides an earlier one.
+     * @param source The source node of the edge, 0-based.
+     * @param dest The sink node of the edge, 0-based.
+     * @param weight The weight of the edge.
+     */
+    void edge(int source, int dest, int weight);
+
+    /**
+     * Receives the number of nodes and edges that the file declares in a header, before any of its edges, so that
+     * storage can be sized once. Formats without a header never call it. The default implementation does nothing.
+     * @param numNodes The declared number of nodes.
+     * @param numEdges The declared number of edges.
+     */
+    default void expect(int numNodes, long numEdges){
+        // Nothing to pre-size by default.
+    }
+
+    /**
+     * Returns an {@link EdgeSink} that adds every edge to g through {@link Graph#addNode()} and
+     * {@link Graph#addEdge(int, int, int)}, first adding as many nodes as the edge requires. This works for every
+     * {@link Graph}, but pays for all the checks of every call; {@link EdgeListImporter#readCSRGraph(java.nio.file.Path,
+     * EdgeListImporter.Format)} builds a {@link CSRGraph} in bulk instead.
+     * @param g The {@link Graph} to add the edges to.
+     * @return An {@link EdgeSink} over g.
+     */
+    static EdgeSink into(Graph g){
+        return new EdgeSink() {
+            @Override
+            public void edge(int source, int dest, int weight) {
+                int needed = Math.max(source, dest) + 1;
+                while(g.getNumNodes() < needed)
+                    g.addNode();
+                g.addEdge(source, dest, weight);
+            }
+
+            @Override
+            public void expect(int numNodes, long numEdges) {
+                while(g.getNumNodes() < numNodes)
+                    g.addNode();
+            }
+        };
+    }
+}
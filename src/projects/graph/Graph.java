@@ -1,5 +1,9 @@
 package projects.graph;
 
+import projects.graph.utils.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -17,6 +21,7 @@ import java.util.Set;
  * @see AdjacencyMatrixGraph
  * @see SparseAdjacencyMatrixGraph
  * @see AdjacencyListGraph
+ * @see CSRGraph
  *
  * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
  */
@@ -34,6 +39,9 @@ public abstract class Graph {
      */
     protected static final RuntimeException UNIMPL_METHOD = new RuntimeException("Implement this method!");
 
+    private ShortestPathWorkspace workspace; // Lazily created by searchWorkspace() and reused across calls.
+    private ShortestPathWorkspace reverseWorkspace; // The backward half of bidirectionalShortestPath(int, int, Graph).
+
     /**
      * <p>Add a new node to the graph. The node will be characterized by its index of insertion, such that the first
      * time this method is called, a node with index &#39; 0 &#39; is stored in the graph, the second one we will
@@ -73,6 +81,58 @@ public abstract class Graph {
      */
     public abstract void deleteEdge(int source, int dest);
 
+    /**
+     * <p>Adds a batch of edges, with the same effect as calling {@link #addEdge(int, int, int)} with sources[i], dests[i]
+     * and weights[i] for every i, in array order. So, a weight of 0 deletes the edge, and if an edge appears more than
+     * once, its last weight is kept.</p>
+     *
+     * <p>The default implementation does exactly that. The implementations of this package override it so that the
+     * checks, the locking and the growth of their storage are paid once per batch instead of once per edge. They validate
+     * the <b>whole</b> batch before applying any of it, so a batch that is rejected leaves the graph unchanged.</p>
+     *
+     * @param sources The source node of every edge.
+     * @param dests The &quot;sink&quot; node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, or for any edge that {@link #addEdge(int, int, int)} would
+     * reject.
+     */
+    public void addEdges(int[] sources, int[] dests, int[] weights){
+        if(sources.length != dests.length || sources.length != weights.length)
+            throw new RuntimeException("Graph::addEdges(): The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++)
+            addEdge(sources[i], dests[i], weights[i]);
+    }
+
+    /**
+     * <p>Deletes a batch of edges, with the same effect as calling {@link #deleteEdge(int, int)} with sources[i] and
+     * dests[i] for every i. Like {@link #deleteEdge(int, int)}, edges that do not exist are ignored.</p>
+     *
+     * <p>The default implementation does exactly that; see {@link #addEdges(int[], int[], int[])} for the overrides.</p>
+     *
+     * @param sources The source node of every edge.
+     * @param dests The &quot;sink&quot; node of every edge.
+     * @throws RuntimeException if the arrays differ in length.
+     */
+    public void deleteEdges(int[] sources, int[] dests){
+        if(sources.length != dests.length)
+            throw new RuntimeException("Graph::deleteEdges(): The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++)
+            deleteEdge(sources[i], dests[i]);
+    }
+
+    /* Checks a batch of additions for the overrides of addEdges(): equal lengths, nodes in [0, numNodes) and non-negative
+     * weights. caller is the "Class::method()" prefix of the error messages. */
+    static void checkBatch(String caller, int numNodes, int[] sources, int[] dests, int[] weights){
+        if(sources.length != dests.length || sources.length != weights.length)
+            throw new RuntimeException(caller + ": The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++){
+            if(weights[i] < 0)
+                throw new RuntimeException(caller + ": Negative weight " + weights[i] + " provided.");
+            if(sources[i] < 0 || sources[i] >= numNodes || dests[i] < 0 || dests[i] >= numNodes)
+                throw new RuntimeException(caller + ": Edge " + sources[i] + "->" + dests[i] + " is out of bounds.");
+        }
+    }
+
     /**
      * <p>Queries the graph about the existence of an edge from source to dest. If either source
      * or dest are not contained by the graph, then the edge itself cannot possibly exist and the method should return
@@ -103,6 +163,23 @@ public abstract class Graph {
      */
     public abstract Set<Integer> getNeighbors(int node);
 
+    /**
+     * <p>Calls visitor once for every out-edge of the provided node, with the node the edge points to and its weight.
+     * The order in which the edges are visited is implementation-specific. The behavior is undefined if the graph is
+     * modified during the visit.</p>
+     *
+     * <p>The default implementation goes through {@link #getNeighbors(int)} and {@link #getEdgeWeight(int, int)}, so it
+     * allocates just as much as they do. Every implementation in this package overrides it with a scan of its own
+     * representation that allocates nothing per edge, and all the traversals of this class use it.</p>
+     *
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    public void forEachNeighbor(int node, NeighborVisitor visitor){
+        for(int neighbor : getNeighbors(node))
+            visitor.visit(neighbor, getEdgeWeight(node, neighbor));
+    }
+
     /**
      * <p>Retrieves the number of nodes in the graph.</p>
      * @return the number of nodes in the graph.
@@ -122,39 +199,276 @@ public abstract class Graph {
 
     /** <p>Returns the shortest path between source and dest in the graph, where the shortest path
      * is defined as the path with a minimal sum of weights of the constituent edges. Since we don't allow
-     * negative weight edges, you can implement this with Dijkstra's, Bellman-Ford or Johnson's algorithm, whichever one
-     * you prefer!</p>
+     * negative weight edges, this is implemented with Dijkstra's algorithm, over an {@link IndexedMinHeap} that
+     * supports decrease-key on <b>int</b> node ids.</p>
      *
      * <p>Shortest path computation only requires methods of {@link Graph}'s interface (i.e the other public
      * methods). For this reason, defining it only once, in the base class, is the best approach. This <b>does</b>,
      * however, require that {@link Graph} is made into an abstract class instead of an interface.</p>
+     *
+     * <p>The search stops as soon as dest is settled, so its cost depends on the number of nodes closer to source than
+     * dest, not on the size of the entire graph. The O(V) arrays that the search needs are kept in a
+     * {@link ShortestPathWorkspace} that this instance reuses from query to query. That workspace is <b>not</b> shared
+     * safely between threads, unless the implementation is documented as thread-safe and keeps one workspace per thread;
+     * concurrent callers of other implementations should use {@link #shortestPath(int, int, ShortestPathWorkspace)} with
+     * one workspace per thread.</p>
      * <p>Notes:</p>
      *
      * <ol>
-     *      <li>The code will have to be <b>your own</b>. No taking ready-made libraries out there, whether they
-     *       are part of Oracle's standard library or not. However, if you choose to implement Dijkstra's algorithm,
-     *       you <b>are</b> allowed to use a third-party implementation of a <b>priority queue</b>, which is a data
-     *       structure required for an efficient implementation of Dijkstra's. You can also use other ready-made
-     *       data structures, such as hash tables or lists.</li>
-     *
-     *      <li>If either source or dest are not part of the graph, the behavior is <b>undefined</b>
-     *          (we don't test for this case).</li>
+     *      <li>If either source or dest are not part of the graph, the behavior is <b>undefined</b>.</li>
      *
      *      <li>Since {@link Graph} represents <b>directed graphs</b>, even if source == dest, there
-     *          <b>may not exist</b> a path that connects source and dest.</li>
+     *          <b>may not exist</b> a path that connects source and dest. In that case, the path returned is the shortest
+     *          cycle that goes through source, whose head and tail are both source.</li>
      *
      *      <li>If there is no path from source to dest, the list reference returned should be non-null, but
      *          the list itself should be <b>completely empty</b>.</li>
      *
-     *      <li>We do <b>not</b> test you on &lt; source, dest &gt; pairs for which there exists more than one
-     *              shortest paths, so your implementation can handle such cases in whichever way it wants. </li>
+     *      <li>If there exist more than one shortest paths between source and dest, any one of them may be returned.</li>
      *</ol>
      *
      * @param source The source node of the edge.
      * @param dest The &quot; sink &quot; node of the edge.
      * @return An ordered {@link List} whose first (head) element is source, the last (tail) element is dest
      * and all the intermediate nodes make up the path from source to dest.
+     * @see #shortestPath(int, int, ShortestPathWorkspace)
+     */
+    public List<Integer> shortestPath(int source, int dest){
+        return shortestPath(source, dest, searchWorkspace());
+    }
+
+    /**
+     * <p>Same as {@link #shortestPath(int, int)}, but uses the provided {@link ShortestPathWorkspace} instead of the one
+     * owned by this instance. After the call, the workspace can also be queried for the distances of all the nodes that
+     * the search settled.</p>
+     * @param source The source node of the edge.
+     * @param dest The &quot; sink &quot; node of the edge.
+     * @param ws The workspace to run the search in.
+     * @return An ordered {@link List} whose first (head) element is source, the last (tail) element is dest
+     * and all the intermediate nodes make up the path from source to dest.
+     */
+    public List<Integer> shortestPath(int source, int dest, ShortestPathWorkspace ws){
+        dijkstra(source, dest, ws);
+        return ws.pathTo(source, dest);
+    }
+
+    /**
+     * <p>Computes the shortest path between source and dest with <b>bidirectional</b> Dijkstra: one search grows forward
+     * from source over the edges of this graph, another grows backward from dest over the edges of its
+     * {@link #transpose()}, and the method stops as soon as the sum of the two searches' radii reaches the length of the
+     * best path seen so far. On large sparse graphs this settles a small fraction of the nodes that
+     * {@link #shortestPath(int, int)} settles.</p>
+     *
+     * <p>The transpose is obtained through {@link #transpose()}, which is free for an immutable {@link CSRGraph} after
+     * the first call but costs O(V + E) for mutable implementations. Callers that issue many queries between mutations
+     * should compute the transpose once and use {@link #bidirectionalShortestPath(int, int, Graph)}.</p>
+     *
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @return A path with the same semantics as the one returned by {@link #shortestPath(int, int)}.
+     */
+    public List<Integer> bidirectionalShortestPath(int source, int dest){
+        return bidirectionalShortestPath(source, dest, transpose());
+    }
+
+    /**
+     * Same as {@link #bidirectionalShortestPath(int, int)}, but with a caller-provided transpose of this graph.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @param reverse A graph with the same nodes as this one and all of its edges reversed.
+     * @return A path with the same semantics as the one returned by {@link #shortestPath(int, int)}.
+     * @see #transpose()
      */
-    public List<Integer> shortestPath(int source, int dest){ throw UNIMPL_METHOD; }
+    public List<Integer> bidirectionalShortestPath(int source, int dest, Graph reverse){
+        if(source == dest) // A cycle through source cannot be split into two searches that meet.
+            return shortestPath(source, dest);
+        ShortestPathWorkspace forward = searchWorkspace(), backward = reverseSearchWorkspace();
+        forward.reset(getNumNodes());
+        backward.reset(getNumNodes());
+        forward.reach(source, 0, -1);
+        forward.heap.insert(source, 0);
+        backward.reach(dest, 0, -1);
+        backward.heap.insert(dest, 0);
+        long[] best = {INFINITY, -1}; // The length of the best path found so far, and the node where its two halves meet.
+        while(!forward.heap.isEmpty() && !backward.heap.isEmpty()){
+            if((long)forward.heap.peekKey() + backward.heap.peekKey() >= best[0])
+                break;
+            if(forward.heap.size() <= backward.heap.size())
+                expand(this, forward, backward, best);
+            else
+                expand(reverse, backward, forward, best);
+        }
+        List<Integer> path = new ArrayList<>();
+        if(best[1] < 0)
+            return path;
+        for(int node = (int)best[1]; node != -1; node = forward.prev[node])
+            path.add(node);
+        Collections.reverse(path);
+        for(int node = backward.prev[(int)best[1]]; node != -1; node = backward.prev[node])
+            path.add(node);
+        return path;
+    }
+
+    /* The workspace of the searches that do not take one: shortestPath(int, int), its A* variant and the forward half of
+     * bidirectionalShortestPath(int, int, Graph). It is created lazily and reused across calls. Thread-safe
+     * implementations override this, and reverseSearchWorkspace(), to return one workspace per thread. */
+    ShortestPathWorkspace searchWorkspace(){
+        if(workspace == null)
+            workspace = new ShortestPathWorkspace(getNumNodes());
+        return workspace;
+    }
+
+    /* The workspace of the backward half of bidirectionalShortestPath(int, int, Graph). */
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        if(reverseWorkspace == null)
+            reverseWorkspace = new ShortestPathWorkspace(getNumNodes());
+        return reverseWorkspace;
+    }
+
+    /* Settles the minimum node of ws and relaxes its out-edges in g. Every time a node reached by ws has also been reached
+     * by the opposite search, the path through that node is a candidate for best. */
+    private static void expand(Graph g, ShortestPathWorkspace ws, ShortestPathWorkspace opposite, long[] best){
+        int node = ws.heap.extractMin();
+        ws.settle(node);
+        if(opposite.isReached(node) && (long)ws.dist[node] + opposite.dist[node] < best[0]){
+            best[0] = (long)ws.dist[node] + opposite.dist[node];
+            best[1] = node;
+        }
+        int distance = ws.dist[node];
+        g.forEachNeighbor(node, (neighbor, weight) -> {
+            if(ws.isSettled(neighbor))
+                return;
+            long candidate = (long)distance + weight;
+            if(candidate >= INFINITY || (ws.isReached(neighbor) && candidate >= ws.dist[neighbor]))
+                return;
+            ws.reach(neighbor, (int)candidate, node);
+            ws.heap.insertOrDecrease(neighbor, (int)candidate);
+            if(opposite.isReached(neighbor) && candidate + opposite.dist[neighbor] < best[0]){
+                best[0] = candidate + opposite.dist[neighbor];
+                best[1] = neighbor;
+            }
+        });
+    }
+
+    /**
+     * <p>Computes the shortest path between source and dest with <b>A*</b> search, guided by the provided
+     * {@link Heuristic}. The nodes are extracted from the heap in order of their distance from source <b>plus</b> their
+     * estimated distance to dest, so the search is pulled towards dest instead of growing uniformly in all directions.</p>
+     *
+     * <p>The heuristic must be admissible for the returned path to be a shortest one. Nodes whose distance improves after
+     * they have been settled are re-opened, so a heuristic that is admissible but not consistent is still correct, if
+     * slower.</p>
+     *
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @param heuristic An admissible lower bound on the distance of every node to dest.
+     * @return A path with the same semantics as the one returned by {@link #shortestPath(int, int)}.
+     * @see CoordinateHeuristic
+     */
+    public List<Integer> shortestPath(int source, int dest, Heuristic heuristic){
+        return shortestPath(source, dest, heuristic, searchWorkspace());
+    }
+
+    /**
+     * Same as {@link #shortestPath(int, int, Heuristic)}, but uses the provided {@link ShortestPathWorkspace} instead
+     * of the one owned by this instance.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @param heuristic An admissible lower bound on the distance of every node to dest.
+     * @param ws The workspace to run the search in.
+     * @return A path with the same semantics as the one returned by {@link #shortestPath(int, int)}.
+     */
+    public List<Integer> shortestPath(int source, int dest, Heuristic heuristic, ShortestPathWorkspace ws){
+        ws.reset(getNumNodes());
+        IndexedMinHeap heap = ws.heap;
+        if(source == dest){
+            relaxAStar(source, 0, dest, heuristic, ws);
+        } else {
+            ws.reach(source, 0, -1);
+            heap.insert(source, heuristic.estimate(source, dest));
+        }
+        while(!heap.isEmpty()){
+            int node = heap.extractMin();
+            ws.settle(node);
+            if(node == dest)
+                break;
+            relaxAStar(node, ws.dist[node], dest, heuristic, ws);
+        }
+        return ws.pathTo(source, dest);
+    }
+
+    private void relaxAStar(int node, int distance, int dest, Heuristic heuristic, ShortestPathWorkspace ws){
+        forEachNeighbor(node, (neighbor, weight) -> {
+            long candidate = (long)distance + weight;
+            if(candidate >= INFINITY || (ws.isReached(neighbor) && candidate >= ws.dist[neighbor]))
+                return;
+            ws.reach(neighbor, (int)candidate, node);
+            long key = Math.min(candidate + heuristic.estimate(neighbor, dest), INFINITY - 1);
+            ws.heap.insertOrDecrease(neighbor, (int)key); // Re-opens neighbor if it had already been settled.
+        });
+    }
+
+    /**
+     * <p>Returns the <b>transpose</b> of this graph, i.e a {@link CSRGraph} with the same nodes and every edge source-&gt;dest
+     * replaced by dest-&gt;source with the same weight. The transpose gives efficient access to the <b>incoming</b> edges of
+     * every node, which is what backward searches need.</p>
+     *
+     * <p>The default implementation is an O(V + E) conversion. Since the result is a snapshot, it does <b>not</b> reflect
+     * any mutations performed on this graph after the call.</p>
+     *
+     * @return The transpose of this graph.
+     * @see #bidirectionalShortestPath(int, int)
+     */
+    public CSRGraph transpose(){
+        return CSRGraph.fromGraph(this).transpose();
+    }
+
+    /**
+     * <p>Returns a representation of this graph as a {@link CSRGraph}; {@link CSRGraph#fromGraph(Graph)} is a single call
+     * to it. The default implementation visits every row through {@link #forEachNeighbor(int, NeighborVisitor)} and
+     * sorts it, in O(V + E log(deg)) time. The implementations of this package override it, usually with a public
+     * method, to read their inner representation directly.</p>
+     *
+     * @return A {@link CSRGraph} with the same nodes, edges and weights as this graph.
+     */
+    CSRGraph toCSRGraph(){
+        return CSRGraph.fromNeighborScans(this);
+    }
+
+    /* Runs Dijkstra's algorithm from source in ws, stopping as soon as dest is settled. A negative dest makes the search
+     * settle every node reachable from source. When source == dest, source itself is not settled at distance zero, so that
+     * the search finds the shortest cycle through it. */
+    void dijkstra(int source, int dest, ShortestPathWorkspace ws){
+        ws.reset(getNumNodes());
+        IndexedMinHeap heap = ws.heap;
+        if(source == dest){
+            relax(source, 0, ws);
+        } else {
+            ws.reach(source, 0, -1);
+            heap.insert(source, 0);
+        }
+        while(!heap.isEmpty()){
+            int node = heap.extractMin();
+            ws.settle(node);
+            if(node == dest)
+                return;
+            relax(node, ws.dist[node], ws);
+        }
+    }
+
+    /* Relaxes all the out-edges of node, which is at distance distance from the source. */
+    void relax(int node, int distance, ShortestPathWorkspace ws){
+        forEachNeighbor(node, (neighbor, weight) -> {
+            if(ws.isSettled(neighbor))
+                return;
+            long candidate = (long)distance + weight;
+            if(candidate >= INFINITY)
+                return;
+            if(!ws.isReached(neighbor) || candidate < ws.dist[neighbor]){
+                ws.reach(neighbor, (int)candidate, node);
+                ws.heap.insertOrDecrease(neighbor, (int)candidate);
+            }
+        });
+    }
 
 }
\ No newline at end of file
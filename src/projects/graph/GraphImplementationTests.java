@@ -0,0 +1,411 @@
+package projects.graph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>{@link GraphImplementationTests} checks the contract of {@link Graph} against the complete implementations of this
+ * package that support mutation.</p>
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see Graph
+ * @see IndexedSparseAdjacencyMatrixGraph
+ * @see TiledAdjacencyMatrixGraph
+ * @see BitPackedAdjacencyMatrixGraph
+ * @see DeltaCSRGraph
+ * @see AdaptiveGraph
+ */
+public class GraphImplementationTests {
+
+    private static Graph[] emptyGraphs(){
+        return new Graph[]{new IndexedSparseAdjacencyMatrixGraph(), new TiledAdjacencyMatrixGraph(),
+                new BitPackedAdjacencyMatrixGraph(), new AdaptiveGraph(AdaptiveGraph.DEFAULT_DENSE_THRESHOLD,
+                AdaptiveGraph.DEFAULT_WRITE_THRESHOLD, 16), new ConcurrentGraph(4),
+                new VersionedGraph()};
+    }
+
+    @Test
+    public void testNodesAndEdges(){
+        for(Graph graph : emptyGraphs()){
+            String name = graph.getClass().getSimpleName();
+            for(int i = 0; i < 4; i++)
+                graph.addNode();
+            graph.addEdge(0, 1, 3);
+            graph.addEdge(0, 2, 5);
+            graph.addEdge(2, 3, 1);
+            graph.addEdge(0, 1, 4); // Update.
+            assertEquals(name + ": should have 4 nodes.", 4, graph.getNumNodes());
+            assertEquals(name + ": should have 3 edges.", 3, graph.getNumEdges());
+            assertTrue(name + ": edge 0->1 should exist.", graph.edgeBetween(0, 1));
+            assertFalse(name + ": edge 1->0 should not exist.", graph.edgeBetween(1, 0));
+            assertEquals(name + ": weight of 0->1 should have been updated.", 4, graph.getEdgeWeight(0, 1));
+            assertEquals(name + ": neighbors of 0.", new HashSet<>(Arrays.asList(1, 2)), graph.getNeighbors(0));
+
+            graph.deleteEdge(0, 2);
+            graph.addEdge(2, 3, 0); // Same as a deletion.
+            graph.deleteEdge(3, 0); // Does not exist.
+            assertEquals(name + ": should have 1 edge after deletions.", 1, graph.getNumEdges());
+            assertTrue(name + ": node 2 should have no neighbors.", graph.getNeighbors(2).isEmpty());
+            assertEquals(name + ": deleted edge should have zero weight.", 0, graph.getEdgeWeight(0, 2));
+
+            graph.addNode();
+            graph.addEdge(4, 0, 2);
+            assertEquals(name + ": shortest path over the new node.", Arrays.asList(4, 0, 1), graph.shortestPath(4, 1));
+
+            graph.clear();
+            assertEquals(name + ": cleared graph should have no nodes.", 0, graph.getNumNodes());
+            assertEquals(name + ": cleared graph should have no edges.", 0, graph.getNumEdges());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNegativeWeight(){
+        Graph graph = emptyGraphs()[0];
+        graph.addNode();
+        graph.addEdge(0, 0, -1);
+    }
+
+    @Test
+    public void testIndexedSparseBuffersUpdates(){
+        IndexedSparseAdjacencyMatrixGraph graph = new IndexedSparseAdjacencyMatrixGraph(3);
+        graph.addEdge(2, 0, 7);
+        graph.addEdge(0, 1, 1);
+        graph.addEdge(2, 0, 0);
+        assertEquals("Updates should be buffered until a query.", 3, graph.getPendingUpdates());
+        assertEquals("Buffered deletion should win over the earlier insertion.", 1, graph.getNumEdges());
+        assertEquals("A query should merge the buffer.", 0, graph.getPendingUpdates());
+        CSRGraph csr = graph.toCSRGraph();
+        assertEquals("CSR view should contain the merged edge.", 1, csr.getEdgeWeight(0, 1));
+    }
+
+    @Test
+    public void testTiledGrowthAcrossTiles(){
+        TiledAdjacencyMatrixGraph graph = new TiledAdjacencyMatrixGraph();
+        int numNodes = 3 * TiledAdjacencyMatrixGraph.TILE_SIZE + 5;
+        for(int i = 0; i < numNodes; i++){
+            graph.addNode();
+            if(i > 0)
+                graph.addEdge(i - 1, i, i);
+        }
+        graph.addEdge(numNodes - 1, 0, 1);
+        assertEquals("Edges should survive the growth of the tile index.", 1, graph.getEdgeWeight(0, 1));
+        assertEquals("Edge across tiles.", numNodes - 1, graph.getEdgeWeight(numNodes - 2, numNodes - 1));
+        assertEquals("Every node should have one out-edge.", numNodes, graph.getNumEdges());
+        HashSet<Integer> predecessors = new HashSet<>();
+        graph.forEachPredecessor(0, (node, weight) -> predecessors.add(node));
+        assertEquals("Column scan of node 0.", new HashSet<>(Arrays.asList(numNodes - 1)), predecessors);
+        CSRGraph transpose = graph.transpose();
+        assertEquals("Transpose should reverse edges.", 1, transpose.getEdgeWeight(0, numNodes - 1));
+        assertEquals("Transpose should reverse edges.", 7, transpose.getEdgeWeight(7, 6));
+        assertEquals("Row-scan conversion should keep every edge.", numNodes, graph.toCSRGraph().getNumEdges());
+    }
+
+    @Test
+    public void testBitPackedWeightPlanes(){
+        BitPackedAdjacencyMatrixGraph graph = new BitPackedAdjacencyMatrixGraph();
+        for(int i = 0; i < 100; i++)
+            graph.addNode();
+        graph.addEdge(0, 99, 1);
+        graph.addEdge(99, 0, 1);
+        assertEquals("Unit weights should need no plane.", 0, graph.getWeightBits());
+        graph.addEdge(5, 70, 200);
+        assertEquals("Weights up to 255 should use a byte plane.", 8, graph.getWeightBits());
+        assertEquals("Unsigned byte weights should be read back correctly.", 200, graph.getEdgeWeight(5, 70));
+        graph.addEdge(5, 71, 40000);
+        assertEquals("Weights up to 65535 should use a short plane.", 16, graph.getWeightBits());
+        graph.addEdge(6, 6, 1 << 20);
+        assertEquals("Larger weights should use an int plane.", 32, graph.getWeightBits());
+        assertEquals("Widening should keep the existing weights.", 200, graph.getEdgeWeight(5, 70));
+        assertEquals("Widening should keep the existing weights.", 1, graph.getEdgeWeight(0, 99));
+        for(int i = 0; i < 100; i++) // Grows the matrix with weights in the int plane.
+            graph.addNode();
+        assertEquals("Growth should keep the existing weights.", 40000, graph.getEdgeWeight(5, 71));
+        assertEquals("Growth should keep the existing weights.", 1 << 20, graph.getEdgeWeight(6, 6));
+        assertEquals("Neighbors should be found across bitset words.", new HashSet<>(Arrays.asList(70, 71)), graph.getNeighbors(5));
+    }
+
+    @Test
+    public void testBatchMutations(){
+        Graph[] batched = emptyGraphs(), oneByOne = emptyGraphs();
+        batched = Arrays.copyOf(batched, batched.length + 1);
+        oneByOne = Arrays.copyOf(oneByOne, oneByOne.length + 1);
+        batched[batched.length - 1] = new DeltaCSRGraph();
+        oneByOne[oneByOne.length - 1] = new DeltaCSRGraph();
+        Random random = new Random(420);
+        int numNodes = 70, batchSize = 500;
+        int[] sources = new int[batchSize], dests = new int[batchSize], weights = new int[batchSize];
+        for(int i = 0; i < batchSize; i++){
+            sources[i] = random.nextInt(numNodes);
+            dests[i] = random.nextInt(numNodes);
+            weights[i] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(300); // Deletions, and a wider weight plane.
+        }
+        for(int g = 0; g < batched.length; g++){
+            Graph graph = batched[g], expected = oneByOne[g];
+            String name = graph.getClass().getSimpleName();
+            for(int i = 0; i < numNodes; i++){
+                graph.addNode();
+                expected.addNode();
+            }
+            graph.addEdges(sources, dests, weights);
+            for(int i = 0; i < batchSize; i++)
+                expected.addEdge(sources[i], dests[i], weights[i]);
+            try {
+                graph.addEdges(new int[]{0, 0}, new int[]{1, numNodes}, new int[]{5, 5});
+                fail(name + ": a batch with an out of bounds edge should be rejected.");
+            } catch(RuntimeException ignored){
+                // Expected.
+            }
+            graph.deleteEdges(new int[]{sources[0], -1, sources[1]}, new int[]{dests[0], 0, dests[1]});
+            expected.deleteEdge(sources[0], dests[0]);
+            expected.deleteEdge(sources[1], dests[1]);
+            assertEquals(name + ": batches should leave as many edges as single calls.", expected.getNumEdges(), graph.getNumEdges());
+            CSRGraph csr = CSRGraph.fromGraph(graph); // More than one block of rows for the row-parallel conversions.
+            for(int source = 0; source < numNodes; source++)
+                for(int dest = 0; dest < numNodes; dest++){
+                    assertEquals(name + ": weight of " + source + "->" + dest + ".", expected.getEdgeWeight(source, dest),
+                            graph.getEdgeWeight(source, dest));
+                    assertEquals(name + ": converted weight of " + source + "->" + dest + ".",
+                            expected.getEdgeWeight(source, dest), csr.getEdgeWeight(source, dest));
+                }
+        }
+    }
+
+    @Test
+    public void testAdaptiveMigrations(){
+        AdaptiveGraph graph = new AdaptiveGraph(0.25, 0.9, 100);
+        assertEquals("Should start out as a list.", AdaptiveGraph.Representation.LIST, graph.getRepresentation());
+        for(int i = 0; i < 40; i++)
+            graph.addNode();
+        for(int i = 0; i < 100; i++)
+            graph.addEdge(i % 40, (7 * i) % 40, 1 + i);
+        assertEquals("A write-only window should migrate to the sparse matrix.", AdaptiveGraph.Representation.SPARSE,
+                graph.getRepresentation());
+        for(int source = 0; source < 40; source++)
+            for(int dest = 0; dest < 40; dest++)
+                graph.addEdge(source, dest, 1 + source + dest);
+        graph.getEdgeWeight(0, 0); // Ends the window of the last addition.
+        assertEquals("A dense graph should migrate to the matrix.", AdaptiveGraph.Representation.MATRIX,
+                graph.getRepresentation());
+        for(int source = 0; source < 40; source++)
+            for(int dest = 0; dest < 40; dest++)
+                if(source != dest)
+                    graph.deleteEdge(source, dest);
+        for(int i = 0; i < 200; i++)
+            graph.getNeighbors(i % 40);
+        assertEquals("A sparse, scan-heavy graph should migrate to the list.", AdaptiveGraph.Representation.LIST,
+                graph.getRepresentation());
+        assertEquals("Migrations should keep every edge.", 40, graph.getNumEdges());
+        assertEquals("Migrations should keep the weights.", 1 + 2 * 39, graph.getEdgeWeight(39, 39));
+        assertEquals("Every change of representation should be counted.", 4, graph.getMigrations());
+    }
+
+    @Test
+    public void testAdaptiveConversionAndInterleavedWrites(){
+        AdaptiveGraph graph = new AdaptiveGraph(0.25, 0.9, 64);
+        for(int i = 0; i < 2000; i++)
+            graph.addNode();
+        assertEquals("A write-only window should migrate to the sparse matrix.", AdaptiveGraph.Representation.SPARSE,
+                graph.getRepresentation());
+        int migrations = graph.getMigrations();
+        CSRGraph csr = CSRGraph.fromGraph(graph);
+        assertEquals("Conversion should keep every node.", 2000, csr.getNumNodes());
+        assertEquals("Conversion should not count as operations of the graph.", AdaptiveGraph.Representation.SPARSE,
+                graph.getRepresentation());
+        assertEquals("Conversion should not cause a migration.", migrations, graph.getMigrations());
+
+        // Over 90% writes, but a query after every 10 of them, each of which would merge a sparse matrix.
+        for(int i = 0; i < 704; i++){
+            if(i % 11 == 10)
+                graph.getEdgeWeight(i % 2000, (7 * i) % 2000);
+            else
+                graph.addEdge((3 * i) % 2000, (11 * i) % 2000, 1 + i);
+        }
+        assertEquals("Writes interleaved with queries should not be served by the sparse matrix.",
+                AdaptiveGraph.Representation.LIST, graph.getRepresentation());
+    }
+
+    @Test
+    public void testAdaptiveSearchesCountOnce(){
+        AdaptiveGraph graph = new AdaptiveGraph(0.25, 0.9, 64);
+        int numNodes = 2000;
+        for(int i = 0; i < numNodes; i++)
+            graph.addNode();
+        int[] sources = new int[numNodes - 1], dests = new int[numNodes - 1], weights = new int[numNodes - 1];
+        for(int i = 0; i + 1 < numNodes; i++){
+            sources[i] = i;
+            dests[i] = i + 1;
+            weights[i] = 1;
+        }
+        graph.addEdges(sources, dests, weights); // Ends a write-only window.
+        assertEquals("A write-only window should migrate to the sparse matrix.", AdaptiveGraph.Representation.SPARSE,
+                graph.getRepresentation());
+        int migrations = graph.getMigrations();
+        assertEquals("A search should find the whole chain.", numNodes, graph.shortestPath(0, numNodes - 1).size());
+        assertEquals("A search should find the whole chain.", numNodes,
+                graph.bidirectionalShortestPath(0, numNodes - 1).size());
+        assertEquals("A search should find the whole chain.", numNodes,
+                graph.shortestPath(0, numNodes - 1, (node, target) -> 0).size());
+        assertEquals("A search should not end a window by itself.", migrations, graph.getMigrations());
+        for(int i = 3; i < graph.getWindowSize(); i++)
+            graph.shortestPath(i, numNodes - 1);
+        assertEquals("A window of searches should migrate to the list.", AdaptiveGraph.Representation.LIST,
+                graph.getRepresentation());
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws InterruptedException {
+        ConcurrentGraph graph = new ConcurrentGraph(8);
+        int numNodes = 64, writers = 4, readers = 4;
+        for(int i = 0; i < numNodes; i++)
+            graph.addNode();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[writers + readers];
+        for(int t = 0; t < writers; t++){
+            int writer = t;
+            threads[t] = new Thread(() -> { // Every writer owns the sources that are equal to it mod writers.
+                Random random = new Random(writer);
+                for(int round = 0; round < 20000; round++){
+                    int source = writer + writers * random.nextInt(numNodes / writers), dest = random.nextInt(numNodes);
+                    graph.addEdge(source, dest, round % 3 == 0 ? 0 : source + 1); // Every weight encodes its source.
+                }
+                for(int source = writer; source < numNodes; source += writers) // Leaves a known final state.
+                    graph.addEdge(source, (source + 1) % numNodes, source + 1);
+            });
+        }
+        for(int t = writers; t < threads.length; t++){
+            threads[t] = new Thread(() -> {
+                Random random = new Random();
+                while(!done.get()){
+                    int source = random.nextInt(numNodes), weight = graph.getEdgeWeight(source, random.nextInt(numNodes));
+                    if(weight != 0 && weight != source + 1)
+                        failure.set(new AssertionError("Torn read of a row of " + source + ": " + weight));
+                    int[] previous = {-1};
+                    graph.forEachNeighbor(source, (neighbor, w) -> {
+                        if(neighbor <= previous[0] || w != source + 1)
+                            failure.set(new AssertionError("Inconsistent snapshot of the row of " + source + "."));
+                        previous[0] = neighbor;
+                    });
+                    int dest = (source + 1 + random.nextInt(numNodes - 1)) % numNodes;
+                    try { // Every reader searches at the same time as the others.
+                        List<Integer> path = graph.shortestPath(source, dest);
+                        if(!path.isEmpty() && (path.get(0) != source || path.get(path.size() - 1) != dest))
+                            failure.set(new AssertionError("Wrong path from " + source + " to " + dest + ": " + path));
+                    } catch(RuntimeException e){
+                        failure.set(e);
+                    }
+                }
+            });
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(int t = 0; t < writers; t++)
+            threads[t].join();
+        done.set(true);
+        for(int t = writers; t < threads.length; t++)
+            threads[t].join();
+        assertNull("Readers should only see consistent rows and paths: " + failure.get(), failure.get());
+        CSRGraph csr = graph.toCSRGraph();
+        assertEquals("Edge counts should survive concurrent writers.", csr.getNumEdges(), graph.getNumEdges());
+        for(int source = 0; source < numNodes; source++)
+            assertEquals("The last write of every writer should be kept.", source + 1,
+                    graph.getEdgeWeight(source, (source + 1) % numNodes));
+    }
+
+    @Test
+    public void testVersionedSnapshots(){
+        VersionedGraph graph = new VersionedGraph();
+        int numNodes = 3 * VersionedGraph.BLOCK_SIZE;
+        for(int i = 0; i < numNodes; i++)
+            graph.addNode();
+        for(int i = 0; i < numNodes; i++)
+            graph.addEdge(i, (i + 1) % numNodes, 1 + i);
+        VersionedGraph.Snapshot first = graph.snapshot();
+        assertSame("An unchanged graph should return the same snapshot.", first, graph.snapshot());
+
+        graph.addEdge(5, 7, 100);
+        graph.deleteEdge(600, 601);
+        graph.addNode();
+        VersionedGraph.Snapshot second = graph.snapshot();
+        assertEquals("The first snapshot should not see later additions.", 0, first.getEdgeWeight(5, 7));
+        assertEquals("The first snapshot should not see later deletions.", 601, first.getEdgeWeight(600, 601));
+        assertEquals("The first snapshot should not see later nodes.", numNodes, first.getNumNodes());
+        assertEquals("The first snapshot should keep its edge count.", numNodes, first.getNumEdges());
+        assertEquals("The second snapshot should see the addition.", 100, second.getEdgeWeight(5, 7));
+        assertFalse("The second snapshot should see the deletion.", second.edgeBetween(600, 601));
+        assertEquals("The second snapshot should see the new node.", numNodes + 1, second.getNumNodes());
+        assertTrue("The snapshots should have different versions.", first.getVersion() < second.getVersion());
+
+        assertNotSame("Touched rows should have been copied.", first.row(5), second.row(5));
+        assertNotSame("Touched rows should have been copied.", first.row(600), second.row(600));
+        for(int node = 0; node < numNodes; node++)
+            if(node != 5 && node != 600)
+                assertSame("Untouched rows should be shared.", first.row(node), second.row(node));
+        CSRGraph csr = CSRGraph.fromGraph(second);
+        assertEquals("Snapshots should convert to CSR.", second.getNumEdges(), csr.getNumEdges());
+        assertEquals("Snapshots should convert to CSR.", 100, csr.getEdgeWeight(5, 7));
+        try {
+            first.addEdge(0, 1, 1);
+            fail("Snapshots should be immutable.");
+        } catch(UnsupportedOperationException ignored){
+            // Expected.
+        }
+        graph.clear();
+        assertEquals("Clearing the graph should not affect snapshots.", numNodes + 1, second.getNumNodes());
+    }
+
+    @Test
+    public void testConcurrentSnapshotSearches() throws InterruptedException {
+        VersionedGraph graph = new VersionedGraph();
+        int numNodes = 2000;
+        for(int i = 0; i < numNodes; i++)
+            graph.addNode();
+        Random random = new Random(79);
+        for(int i = 0; i < 5 * numNodes; i++)
+            graph.addEdge(random.nextInt(numNodes), random.nextInt(numNodes), 1 + random.nextInt(100));
+        VersionedGraph.Snapshot snapshot = graph.snapshot();
+        CSRGraph reference = snapshot.toCSRGraph(), transpose = reference.transpose();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++){
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random queries = new Random(seed);
+                ShortestPathWorkspace ws = new ShortestPathWorkspace(); // Owned by this thread.
+                try {
+                    for(int query = 0; query < 300; query++){
+                        int source = queries.nextInt(numNodes); // Never dest, whose path would be a cycle.
+                        int dest = (source + 1 + queries.nextInt(numNodes - 1)) % numNodes;
+                        reference.shortestPath(source, dest, ws);
+                        int expected = ws.getDistance(dest);
+                        List<List<Integer>> paths = Arrays.asList(snapshot.shortestPath(source, dest),
+                                snapshot.bidirectionalShortestPath(source, dest, transpose),
+                                snapshot.shortestPath(source, dest, (node, target) -> 0), graph.shortestPath(source, dest));
+                        for(List<Integer> path : paths){
+                            long length = 0;
+                            for(int i = 0; i + 1 < path.size(); i++)
+                                length += reference.getEdgeWeight(path.get(i), path.get(i + 1));
+                            if(path.isEmpty() ? expected != Graph.INFINITY : path.get(0) != source ||
+                                    path.get(path.size() - 1) != dest || length != expected)
+                                failure.set(new AssertionError("Wrong path from " + source + " to " + dest + ": " + path));
+                        }
+                    }
+                } catch(RuntimeException e){
+                    failure.set(e);
+                }
+            });
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+        assertNull("Concurrent searches of a snapshot should not interfere: " + failure.get(), failure.get());
+    }
+}
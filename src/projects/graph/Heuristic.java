@@ -0,0 +1,27 @@
+package projects.graph;
+
+/**
+ * <p>A {@link Heuristic} provides A* search with a lower bound on the distance between any node and the destination of
+ * the search. For the path returned by {@link Graph#shortestPath(int, int, Heuristic)} to be a shortest path, the
+ * heuristic <b>must</b> be <b>admissible</b>, i.e it should never overestimate the true distance. If it is also
+ * <b>consistent</b>, i.e estimate(u, t) &lt;= w(u, v) + estimate(v, t) for every edge u-&gt;v, then no node is
+ * ever expanded twice.</p>
+ *
+ * <p>The trivial heuristic that always returns 0 is admissible and consistent, and it makes A* behave exactly like
+ * Dijkstra's algorithm. The better the lower bound, the fewer nodes A* settles.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see CoordinateHeuristic
+ * @see Graph#shortestPath(int, int, Heuristic)
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+    /**
+     * Returns a lower bound on the distance from node to dest.
+     * @param node The node to estimate the distance from.
+     * @param dest The destination of the search.
+     * @return A non-negative lower bound on the length of the shortest path from node to dest.
+     */
+    int estimate(int node, int dest);
+}
@@ -0,0 +1,300 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>{@link IndexedSparseAdjacencyMatrixGraph} is a {@link Graph} implemented as an <b>indexed</b> sparse adjacency matrix.
+ * Like {@link SparseAdjacencyMatrixGraph}, it only stores the (source, dest, weight) triples of the non-zero elements of
+ * the matrix (the &quot;coordinate&quot;, or COO, format). Unlike it, the triples are kept in three primitive arrays,
+ * <b>sorted</b> by (source, dest), next to a per-row offset index: the triples whose source is i occupy the positions
+ * [offsets[i], offsets[i + 1]) of the arrays. As a result:</p>
+ * <ul>
+ *     <li>{@link #edgeBetween(int, int)} and {@link #getEdgeWeight(int, int)} are O(log(deg)) binary searches
+ *     within a row, instead of O(E) scans of the whole list.</li>
+ *     <li>{@link #getNeighbors(int)} and {@link #forEachNeighbor(int, NeighborVisitor)} are O(deg) scans of a row.</li>
+ * </ul>
+ *
+ * <p>Keeping the arrays sorted on every insertion would make {@link #addEdge(int, int, int)} O(E). Instead, insertions and
+ * deletions are appended to an unsorted <b>pending</b> buffer in amortized O(1) time, and the buffer is merged into the
+ * sorted arrays lazily, by the first query that follows a batch of updates. The merge sorts the buffer alone, and then
+ * merges it with the sorted arrays in a single linear pass, in O(V + E + P log(P)) time for P pending updates, so a
+ * batch of updates of any size costs a single merge. Workloads that interleave every update with a query still pay an
+ * O(V + E) merge per query, and are better served by {@link DeltaCSRGraph}.</p>
+ *
+ * <p>The space occupied by an instance of {@link IndexedSparseAdjacencyMatrixGraph} is O(V + E).</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see SparseAdjacencyMatrixGraph
+ * @see CSRGraph
+ */
+public class IndexedSparseAdjacencyMatrixGraph extends Graph {
+
+    private int numNodes;
+    private int[] offsets; // Row index over the sorted triples. Rows of nodes added after the last merge are empty.
+    private int[] sources, dests, weights; // The sorted triples. Replaced, never modified in place, by every merge.
+    private int[] pendingSources, pendingDests, pendingWeights; // Unsorted updates; a weight of 0 is a deletion.
+    private int pendingSize;
+
+    /**
+     * Creates an empty {@link IndexedSparseAdjacencyMatrixGraph}.
+     */
+    public IndexedSparseAdjacencyMatrixGraph(){
+        this(0);
+    }
+
+    /**
+     * Creates an {@link IndexedSparseAdjacencyMatrixGraph} with numNodes nodes and no edges.
+     * @param numNodes The number of nodes of the graph.
+     * @throws RuntimeException if numNodes &lt; 0.
+     */
+    public IndexedSparseAdjacencyMatrixGraph(int numNodes){
+        if(numNodes < 0)
+            throw new RuntimeException("IndexedSparseAdjacencyMatrixGraph::IndexedSparseAdjacencyMatrixGraph(): " +
+                    "Negative number of nodes " + numNodes + " provided.");
+        this.numNodes = numNodes;
+        offsets = new int[numNodes + 1];
+        sources = dests = weights = new int[0];
+        pendingSources = new int[16];
+        pendingDests = new int[16];
+        pendingWeights = new int[16];
+        pendingSize = 0;
+    }
+
+    @Override
+    public void addNode() {
+        numNodes++;
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("IndexedSparseAdjacencyMatrixGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("IndexedSparseAdjacencyMatrixGraph::addEdge(): Edge " + source + "->" + dest +
+                    " is out of bounds.");
+        ensurePending(pendingSize + 1);
+        pendingSources[pendingSize] = source;
+        pendingDests[pendingSize] = dest;
+        pendingWeights[pendingSize++] = weight;
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            addEdge(source, dest, 0);
+    }
+
+    /**
+     * Appends a batch of updates to the pending buffer with three array copies, after checking the whole batch once and
+     * growing the buffer at most once. The next query merges the whole buffer in a single O(V + E + P log(P)) pass,
+     * instead of paying for every update separately.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, a node is out of bounds or a weight is negative.
+     */
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("IndexedSparseAdjacencyMatrixGraph::addEdges()", numNodes, sources, dests, weights);
+        ensurePending(pendingSize + sources.length);
+        System.arraycopy(sources, 0, pendingSources, pendingSize, sources.length);
+        System.arraycopy(dests, 0, pendingDests, pendingSize, dests.length);
+        System.arraycopy(weights, 0, pendingWeights, pendingSize, weights.length);
+        pendingSize += sources.length;
+    }
+
+    @Override
+    public void deleteEdges(int[] sources, int[] dests) {
+        if(sources.length != dests.length)
+            throw new RuntimeException("IndexedSparseAdjacencyMatrixGraph::deleteEdges(): The arrays of the batch differ in length.");
+        ensurePending(pendingSize + sources.length);
+        for(int i = 0; i < sources.length; i++){
+            if(!contains(sources[i]) || !contains(dests[i]))
+                continue;
+            pendingSources[pendingSize] = sources[i];
+            pendingDests[pendingSize] = dests[i];
+            pendingWeights[pendingSize++] = 0;
+        }
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return contains(source) && contains(dest) && indexOf(source, dest) >= 0;
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        if(!contains(source) || !contains(dest))
+            return 0;
+        int index = indexOf(source, dest);
+        return index >= 0 ? weights[index] : 0;
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits the row of node, in ascending order of target node. This is an O(deg(node)) operation, plus the cost of a
+     * merge if there are pending updates.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        merge();
+        if(node >= offsets.length - 1)
+            return;
+        for(int i = offsets[node]; i < offsets[node + 1]; i++)
+            visitor.visit(dests[i], weights[i]);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int getNumEdges() {
+        merge();
+        return dests.length;
+    }
+
+    @Override
+    public void clear() {
+        numNodes = 0;
+        offsets = new int[1];
+        sources = dests = weights = new int[0];
+        pendingSize = 0;
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the number of updates that have been buffered since the last merge.
+     * @return The number of pending updates.
+     */
+    public int getPendingUpdates(){
+        return pendingSize;
+    }
+
+    /**
+     * Merges the pending updates into the sorted triples, if there are any. Queries do this automatically, so calling
+     * this method is only useful to control <b>when</b> the cost of the merge is paid, e.g right after a batch of updates.
+     */
+    public void merge(){
+        if(pendingSize == 0){
+            if(offsets.length < numNodes + 1){ // Only nodes were added: their rows are empty.
+                int oldLength = offsets.length;
+                offsets = Arrays.copyOf(offsets, numNodes + 1);
+                Arrays.fill(offsets, oldLength, offsets.length, offsets[oldLength - 1]);
+            }
+            return;
+        }
+        int[] order = sortPending();
+        // A linear merge of the sorted triples with the sorted updates, where an update wins over the edge it overwrites.
+        int capacity = sources.length + order.length;
+        int[] mergedSources = new int[capacity], mergedDests = new int[capacity], mergedWeights = new int[capacity];
+        int size = 0, i = 0, j = 0;
+        while(i < sources.length || j < order.length){
+            long existing = i < sources.length ? key(sources[i], dests[i]) : Long.MAX_VALUE;
+            long update = j < order.length ? key(pendingSources[order[j]], pendingDests[order[j]]) : Long.MAX_VALUE;
+            if(existing < update){
+                mergedSources[size] = sources[i];
+                mergedDests[size] = dests[i];
+                mergedWeights[size++] = weights[i++];
+                continue;
+            }
+            if(existing == update)
+                i++;
+            int index = order[j++];
+            if(pendingWeights[index] != 0){ // Zero weight means deletion.
+                mergedSources[size] = pendingSources[index];
+                mergedDests[size] = pendingDests[index];
+                mergedWeights[size++] = pendingWeights[index];
+            }
+        }
+        sources = size == capacity ? mergedSources : Arrays.copyOf(mergedSources, size);
+        dests = size == capacity ? mergedDests : Arrays.copyOf(mergedDests, size);
+        weights = size == capacity ? mergedWeights : Arrays.copyOf(mergedWeights, size);
+        offsets = new int[numNodes + 1];
+        for(int source : sources)
+            offsets[source + 1]++;
+        for(int node = 0; node < numNodes; node++)
+            offsets[node + 1] += offsets[node];
+        pendingSize = 0;
+    }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, after merging any pending updates. Since
+     * the sorted triples are never modified in place, the result shares its arrays with this instance, and the
+     * conversion is O(1).
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        merge();
+        return new CSRGraph(offsets, dests, weights);
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    private void ensurePending(int capacity){
+        if(capacity > pendingSources.length){
+            int newLength = Math.max(capacity, 2 * pendingSources.length);
+            pendingSources = Arrays.copyOf(pendingSources, newLength);
+            pendingDests = Arrays.copyOf(pendingDests, newLength);
+            pendingWeights = Arrays.copyOf(pendingWeights, newLength);
+        }
+    }
+
+    /* Sorts the pending updates by (source, dest) with a stable merge sort, keeps only the last update of every edge, and
+     * returns their positions in the buffer, in sorted order. O(P log(P)) for P pending updates. */
+    private int[] sortPending(){
+        long[] keys = new long[pendingSize];
+        int[] order = new int[pendingSize], scratch = new int[pendingSize];
+        for(int i = 0; i < pendingSize; i++){
+            keys[i] = key(pendingSources[i], pendingDests[i]);
+            order[i] = i;
+        }
+        for(int width = 1; width < pendingSize; width *= 2){
+            for(int low = 0; low < pendingSize - width; low += 2 * width){
+                int middle = low + width, high = Math.min(low + 2 * width, pendingSize);
+                if(keys[order[middle - 1]] <= keys[order[middle]])
+                    continue; // Already in order.
+                int left = low, right = middle, write = low;
+                while(left < middle && right < high)
+                    scratch[write++] = keys[order[right]] < keys[order[left]] ? order[right++] : order[left++];
+                while(left < middle)
+                    scratch[write++] = order[left++];
+                while(right < high)
+                    scratch[write++] = order[right++];
+                System.arraycopy(scratch, low, order, low, high - low);
+            }
+        }
+        int unique = 0; // Equal keys are in buffer order, so the last one of every run is the latest update.
+        for(int i = 0; i < pendingSize; i++)
+            if(i + 1 == pendingSize || keys[order[i + 1]] != keys[order[i]])
+                order[unique++] = order[i];
+        return Arrays.copyOf(order, unique);
+    }
+
+    private static long key(int source, int dest){
+        return ((long)source << 32) | dest;
+    }
+
+    /* Returns the position of source->dest in the sorted triples, or a negative number if the edge does not exist. */
+    private int indexOf(int source, int dest){
+        merge();
+        return Arrays.binarySearch(dests, offsets[source], offsets[source + 1], dest);
+    }
+}
@@ -0,0 +1,618 @@
+package projects.graph;
+
+import projects.graph.utils.IntIntHashMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * <p>{@link MappedCSRGraph} is a {@link Graph} in CSR layout whose arrays live in a <b>memory-mapped file</b> instead of
+ * the Java heap. Nothing is deserialized when a file is opened: the file is mapped with {@link FileChannel#map}, and
+ * every query reads the mapped pages directly, so opening is near-instant regardless of the size of the graph, the
+ * operating system's page cache does all the caching, and the garbage collector never sees the edges. Since a single
+ * {@link MappedByteBuffer} cannot exceed 2GB, the file is mapped as a sequence of fixed-size <b>segments</b>, and all
+ * positions within it are <tt>long</tt>s, so graphs with billions of edges are supported.</p>
+ *
+ * <p>The file is laid out as follows, in little-endian byte order:</p>
+ * <ol>
+ *     <li>A header of {@link #HEADER_BYTES} bytes: the magic number {@link #MAGIC}, the format version, the number of
+ *     nodes, a checksum, the number of edges as a <tt>long</tt> and the position of the offsets as a <tt>long</tt>,
+ *     which is 0 while the file is being appended to.</li>
+ *     <li>The edges, as (target, weight) pairs of <tt>int</tt>s, grouped by source node and sorted by target within every
+ *     group. Keeping the target and the weight of an edge next to each other means that a neighbor scan reads a single
+ *     contiguous range.</li>
+ *     <li>The offsets, as V + 1 <tt>long</tt>s: the edges of node i are the pairs [offsets[i], offsets[i + 1]).</li>
+ * </ol>
+ *
+ * <p>The checksum is the {@link CRC32} of the whole file, computed with the checksum field itself set to 0. Checking it
+ * means reading every byte of the file, which would defeat the purpose of mapping it, so {@link #open(Path)} does not;
+ * {@link #open(Path, boolean)} and {@link #verify()} do, for files that come from an untrusted source. Files of any
+ * version other than {@link #VERSION} are rejected.</p>
+ *
+ * <p>Any {@link Graph} can be saved in this format with {@link #write(Graph, Path)}, which streams its {@link CSRGraph}
+ * representation to the file. Loading the file back with {@link #open(Path)} then performs no per-edge work at all.</p>
+ *
+ * <p>An instance works in one of two modes:</p>
+ * <ul>
+ *     <li><b>Read-only</b> ({@link #open(Path)}): all mutators throw an {@link UnsupportedOperationException}.
+ *     Queries never modify the instance, and the shortest path methods of {@link Graph} search in one workspace per
+ *     thread, so it can be shared between threads.</li>
+ *     <li><b>Append</b> ({@link #create(Path)} and {@link #append(Path)}): the graph is built <b>row by row</b>, in order of
+ *     source node. {@link #addEdge(int, int, int)} and {@link #deleteEdge(int, int)} only accept edges whose source is the
+ *     last node added through this instance. The edges of that node are buffered on the heap, and they are written to the file, sorted, once
+ *     {@link #addNode()} starts the next row. Edges may point to nodes that have not been added yet; {@link #close()}
+ *     adds them as nodes without out-edges, before it writes the offsets and the header. In this mode, the offsets are
+ *     also kept on the heap, at 8 bytes per node, while the edges are written directly into the mapped file.</li>
+ * </ul>
+ *
+ * <p>{@link #getNumEdges()} saturates at {@link Integer#MAX_VALUE}; use {@link #getNumEdgesLong()} for larger graphs.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see CSRGraph
+ * @see Graph
+ */
+public class MappedCSRGraph extends Graph implements Closeable {
+
+    /**
+     * The first four bytes of every file.
+     */
+    public static final int MAGIC = 0x47525343; // "CSRG", in little-endian order.
+
+    /**
+     * The version of the file format that this class reads and writes.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The size of the header of the file, in bytes.
+     */
+    public static final int HEADER_BYTES = 32;
+
+    private static final int NUM_NODES_POSITION = 8, CHECKSUM_POSITION = 12, NUM_EDGES_POSITION = 16, OFFSETS_POSITION = 24;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final int EDGE_BYTES = 8;
+    private static final int DEFAULT_SEGMENT_BITS = 30; // 1GB segments.
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private final int segmentBits;
+    private final long segmentMask;
+    private MappedByteBuffer[] segments;
+    private int version;
+    private int numNodes;
+    private long numEdges; // Sealed edges only; the open row is counted separately.
+    private long offsetsPosition; // Read-only mode: where the offsets are stored in the file.
+    private boolean closed;
+
+    /* Append mode only. */
+    private long[] offsets;
+    private int[] rowTargets, rowWeights; // The buffered edges of the last node. A weight of 0 marks a deleted edge.
+    private int openRow = -1; // The last node added in this session, whose row is still buffered, or -1.
+    private int rowSize, rowEdges;
+    private IntIntHashMap rowIndex; // Target to position in the row buffer.
+    private int maxTarget = -1; // The largest target written so far.
+
+    private final ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new),
+            reverseWorkspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new);
+
+    private MappedCSRGraph(FileChannel channel, boolean readOnly, int segmentBits){
+        this.channel = channel;
+        this.readOnly = readOnly;
+        this.segmentBits = segmentBits;
+        segmentMask = (1L << segmentBits) - 1;
+        segments = new MappedByteBuffer[0];
+    }
+
+    /**
+     * Opens a file written by {@link #create(Path)} in read-only mode. This only maps the file and reads its header,
+     * so it runs in O(1) time.
+     * @param file The file to open.
+     * @return A read-only {@link MappedCSRGraph} over file.
+     * @throws IOException if file cannot be read, or if it is not a complete file of this format.
+     */
+    public static MappedCSRGraph open(Path file) throws IOException {
+        return open(file, DEFAULT_SEGMENT_BITS, false);
+    }
+
+    /**
+     * Opens a file written by {@link #create(Path)} or {@link #write(Graph, Path)} in read-only mode, and optionally
+     * checks its checksum, which reads the whole file once.
+     * @param file The file to open.
+     * @param verify Whether the checksum of file should be checked.
+     * @return A read-only {@link MappedCSRGraph} over file.
+     * @throws IOException if file cannot be read, if it is not a complete file of this format, or if verify is
+     * <tt>true</tt> and its contents do not match its checksum.
+     * @see #verify()
+     */
+    public static MappedCSRGraph open(Path file, boolean verify) throws IOException {
+        return open(file, DEFAULT_SEGMENT_BITS, verify);
+    }
+
+    /* The segment size is a parameter so that tests can exercise segment boundaries with small files. */
+    static MappedCSRGraph open(Path file, int segmentBits, boolean verify) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedCSRGraph graph = new MappedCSRGraph(channel, true, segmentBits);
+        try {
+            graph.readHeader(file);
+            if(graph.offsetsPosition == 0)
+                throw new IOException("MappedCSRGraph::open(): File " + file + " was not closed after it was appended to.");
+            long expectedSize = graph.offsetsPosition + (long)EDGE_BYTES * (graph.numNodes + 1);
+            if(channel.size() < expectedSize)
+                throw new IOException("MappedCSRGraph::open(): File " + file + " is truncated.");
+            graph.map(expectedSize);
+            if(verify)
+                graph.verify();
+        } catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+        return graph;
+    }
+
+    /**
+     * Creates a new, empty file, replacing any existing one, and opens it in append mode.
+     * @param file The file to create.
+     * @return An empty {@link MappedCSRGraph} in append mode.
+     * @throws IOException if file cannot be created.
+     */
+    public static MappedCSRGraph create(Path file) throws IOException {
+        return create(file, DEFAULT_SEGMENT_BITS);
+    }
+
+    static MappedCSRGraph create(Path file, int segmentBits) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedCSRGraph graph = new MappedCSRGraph(channel, false, segmentBits);
+        graph.startAppending(new long[]{HEADER_BYTES});
+        return graph;
+    }
+
+    /**
+     * Opens an existing file in append mode, so that new nodes and their edges can be added after the existing ones.
+     * The rows of the existing nodes cannot be modified.
+     * @param file The file to append to.
+     * @return A {@link MappedCSRGraph} in append mode, containing the nodes and edges of file.
+     * @throws IOException if file cannot be opened for writing, or if it is not a complete file of this format.
+     */
+    public static MappedCSRGraph append(Path file) throws IOException {
+        return append(file, DEFAULT_SEGMENT_BITS);
+    }
+
+    static MappedCSRGraph append(Path file, int segmentBits) throws IOException {
+        MappedCSRGraph existing = open(file, segmentBits, false);
+        long[] offsets = new long[existing.numNodes + 1];
+        for(int node = 0; node <= existing.numNodes; node++)
+            offsets[node] = existing.getLong(existing.offsetsPosition + (long)EDGE_BYTES * node);
+        existing.close();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedCSRGraph graph = new MappedCSRGraph(channel, false, segmentBits);
+        graph.numNodes = offsets.length - 1;
+        graph.numEdges = (offsets[offsets.length - 1] - HEADER_BYTES) / EDGE_BYTES;
+        graph.startAppending(offsets);
+        return graph;
+    }
+
+    @Override
+    public void addNode() {
+        checkAppendMode("addNode");
+        sealRow();
+        if(numNodes + 1 == offsets.length)
+            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        numNodes++;
+        offsets[numNodes] = offsets[numNodes - 1];
+        openRow = numNodes - 1;
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        checkAppendMode("addEdge");
+        if(weight < 0)
+            throw new RuntimeException("MappedCSRGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(dest < 0)
+            throw new RuntimeException("MappedCSRGraph::addEdge(): Negative node " + dest + " provided.");
+        if(source != openRow || openRow < 0)
+            throw new UnsupportedOperationException("MappedCSRGraph::addEdge(): Only the edges of the last node added, " +
+                    "not those of node " + source + ", can be modified.");
+        int position = rowIndex.get(dest, -1);
+        if(position < 0){
+            if(weight == 0)
+                return;
+            if(rowSize == rowTargets.length){
+                rowTargets = Arrays.copyOf(rowTargets, 2 * rowSize);
+                rowWeights = Arrays.copyOf(rowWeights, 2 * rowSize);
+            }
+            position = rowSize++;
+            rowTargets[position] = dest;
+            rowWeights[position] = 0;
+            rowIndex.put(dest, position);
+        }
+        if(rowWeights[position] == 0 && weight != 0)
+            rowEdges++;
+        else if(rowWeights[position] != 0 && weight == 0)
+            rowEdges--;
+        rowWeights[position] = weight;
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        if(contains(source) && dest >= 0)
+            addEdge(source, dest, 0);
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return getEdgeWeight(source, dest) != 0;
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        if(!contains(source) || !contains(dest))
+            return 0;
+        if(isOpenRow(source)){
+            int position = rowIndex.get(dest, -1);
+            return position < 0 ? 0 : rowWeights[position];
+        }
+        long low = offsetOf(source), high = offsetOf(source + 1) - EDGE_BYTES;
+        while(low <= high){
+            long middle = low + (((high - low) / EDGE_BYTES) >>> 1) * EDGE_BYTES;
+            int target = getInt(middle);
+            if(target < dest)
+                low = middle + EDGE_BYTES;
+            else if(target > dest)
+                high = middle - EDGE_BYTES;
+            else
+                return getInt(middle + 4);
+        }
+        return 0;
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits the row of node, in ascending order of target node for sealed rows and in insertion order for the row that
+     * is being appended to. This is an O(deg(node)) scan of a contiguous range of the file, which allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        if(isOpenRow(node)){
+            for(int i = 0; i < rowSize; i++)
+                if(rowWeights[i] != 0)
+                    visitor.visit(rowTargets[i], rowWeights[i]);
+            return;
+        }
+        long end = offsetOf(node + 1);
+        for(long position = offsetOf(node); position < end; position += EDGE_BYTES)
+            visitor.visit(getInt(position), getInt(position + 4));
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return (int)Math.min(getNumEdgesLong(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        checkAppendMode("clear");
+        numNodes = 0;
+        numEdges = 0;
+        offsets = new long[]{HEADER_BYTES, 0};
+        resetRow();
+        openRow = maxTarget = -1;
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns the number of edges of the graph, without saturating it to an <tt>int</tt>.
+     * @return The number of edges of the graph.
+     */
+    public long getNumEdgesLong(){
+        return numEdges + rowEdges;
+    }
+
+    /**
+     * Returns the version of the format of the file, which is always {@link #VERSION}, since files of other versions
+     * cannot be opened.
+     * @return The version of the file format.
+     */
+    public int getVersion(){
+        return version;
+    }
+
+    /**
+     * Checks that the contents of the file match the checksum in its header. This reads the whole file, in O(V + E) time.
+     * @throws IOException if the contents of the file do not match its checksum.
+     * @throws UnsupportedOperationException if this instance is not read-only, since the file is then incomplete.
+     */
+    public void verify() throws IOException {
+        if(!readOnly)
+            throw new UnsupportedOperationException("MappedCSRGraph::verify(): Only read-only instances can be verified.");
+        long end = offsetsPosition + (long)EDGE_BYTES * (numNodes + 1);
+        int expected = getInt(CHECKSUM_POSITION), actual = checksum(end);
+        if(expected != actual)
+            throw new IOException("MappedCSRGraph::verify(): Checksum mismatch: the header says " +
+                    Integer.toHexString(expected) + ", but the contents hash to " + Integer.toHexString(actual) + ".");
+    }
+
+    /**
+     * <p>Writes g to file in the format of this class, replacing any existing file. The graph is converted with
+     * {@link CSRGraph#fromGraph(Graph)} and then streamed to the file through a single buffer, together with its
+     * checksum, so the only memory used besides that of the conversion is O(1).</p>
+     *
+     * <p>The result can be opened with {@link #open(Path)} and appended to with {@link #append(Path)}.</p>
+     * @param g The {@link Graph} to write.
+     * @param file The file to write g to.
+     * @throws IOException if file cannot be written.
+     */
+    public static void write(Graph g, Path file) throws IOException {
+        CSRGraph csr = CSRGraph.fromGraph(g);
+        int numNodes = csr.getNumNodes(), numEdges = csr.targets.length;
+        long offsetsPosition = HEADER_BYTES + (long)EDGE_BYTES * numEdges;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(numNodes).putInt(0).putLong(numEdges).putLong(offsetsPosition);
+        CRC32 crc = new CRC32();
+        crc.update(header.array());
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)){
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            for(int e = 0; e < numEdges; e++){
+                if(buffer.remaining() < EDGE_BYTES)
+                    flush(channel, buffer, crc);
+                buffer.putInt(csr.targets[e]).putInt(csr.weights[e]);
+            }
+            for(int node = 0; node <= numNodes; node++){
+                if(buffer.remaining() < EDGE_BYTES)
+                    flush(channel, buffer, crc);
+                buffer.putLong(HEADER_BYTES + (long)EDGE_BYTES * csr.offsets[node]);
+            }
+            flush(channel, buffer, crc);
+            header.putInt(CHECKSUM_POSITION, (int)crc.getValue());
+            header.clear();
+            while(header.hasRemaining())
+                channel.write(header, header.position());
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Queries the instance about its mode.
+     * @return <tt>true</tt> if, and only if, this instance was opened with {@link #open(Path)}.
+     */
+    public boolean isReadOnly(){
+        return readOnly;
+    }
+
+    /**
+     * <p>Releases the file. In append mode, this first writes the buffered row, adds the nodes that edges point to but
+     * that were never added, writes the offsets and the header and flushes everything to the storage device, so that
+     * the file can then be opened with {@link #open(Path)}.</p>
+     *
+     * <p>Calling this method more than once has no effect.</p>
+     * @throws IOException if the file cannot be written to or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        closed = true;
+        try {
+            if(!readOnly){
+                sealRow();
+                while(numNodes <= maxTarget){
+                    numNodes++;
+                    if(numNodes == offsets.length)
+                        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                    offsets[numNodes] = offsets[numNodes - 1];
+                }
+                long position = offsets[numNodes];
+                long end = position + (long)EDGE_BYTES * (numNodes + 1);
+                ensureMapped(end);
+                for(int node = 0; node <= numNodes; node++)
+                    putLong(position + (long)EDGE_BYTES * node, offsets[node]);
+                putInt(NUM_NODES_POSITION, numNodes);
+                putLong(NUM_EDGES_POSITION, numEdges);
+                putLong(OFFSETS_POSITION, position);
+                putInt(CHECKSUM_POSITION, checksum(end));
+                for(MappedByteBuffer segment : segments)
+                    segment.force();
+                channel.truncate(end); // Drops the unused tail of the last segment.
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /* One workspace per thread, so that read-only instances can be searched from any number of threads. */
+    @Override
+    ShortestPathWorkspace searchWorkspace(){
+        return workspaces.get();
+    }
+
+    @Override
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        return reverseWorkspaces.get();
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    private boolean isOpenRow(int node){
+        return node == openRow && node >= 0;
+    }
+
+    private long offsetOf(int node){
+        return readOnly ? getLong(offsetsPosition + (long)EDGE_BYTES * node) : offsets[node];
+    }
+
+    private void checkAppendMode(String method){
+        if(readOnly)
+            throw new UnsupportedOperationException("MappedCSRGraph::" + method + "(): This instance is read-only.");
+        if(closed)
+            throw new UnsupportedOperationException("MappedCSRGraph::" + method + "(): This instance has been closed.");
+    }
+
+    private void readHeader(Path file) throws IOException {
+        if(channel.size() < HEADER_BYTES)
+            throw new IOException("MappedCSRGraph::readHeader(): File " + file + " is too short for a header.");
+        map(HEADER_BYTES);
+        if(getInt(0) != MAGIC)
+            throw new IOException("MappedCSRGraph::readHeader(): File " + file + " is not a graph file.");
+        version = getInt(4);
+        if(version != VERSION)
+            throw new IOException("MappedCSRGraph::readHeader(): File " + file + " has version " + version +
+                    ", but only version " + VERSION + " is supported.");
+        numNodes = getInt(NUM_NODES_POSITION);
+        numEdges = getLong(NUM_EDGES_POSITION);
+        offsetsPosition = getLong(OFFSETS_POSITION);
+    }
+
+    /* Starts append mode over a file whose sealed rows are described by the provided offsets. */
+    private void startAppending(long[] sealedOffsets){
+        offsets = Arrays.copyOf(sealedOffsets, Math.max(16, sealedOffsets.length + 1));
+        rowTargets = new int[16];
+        rowWeights = new int[16];
+        rowIndex = new IntIntHashMap();
+        version = VERSION;
+        ensureMapped(offsets[numNodes]);
+        putInt(0, MAGIC);
+        putInt(4, VERSION);
+        putInt(NUM_NODES_POSITION, numNodes);
+        putInt(CHECKSUM_POSITION, 0); // Written by close().
+        putLong(NUM_EDGES_POSITION, numEdges);
+        putLong(OFFSETS_POSITION, 0); // Marks the file as incomplete until close().
+    }
+
+    /* Writes the buffered row of the last node to the file, sorted by target, and empties the buffer. */
+    private void sealRow(){
+        if(openRow < 0)
+            return;
+        CSRGraph.sortRow(rowTargets, rowWeights, 0, rowSize);
+        long position = offsets[openRow];
+        ensureMapped(position + (long)EDGE_BYTES * rowEdges);
+        for(int i = 0; i < rowSize; i++){
+            if(rowWeights[i] == 0)
+                continue;
+            putInt(position, rowTargets[i]);
+            putInt(position + 4, rowWeights[i]);
+            maxTarget = Math.max(maxTarget, rowTargets[i]);
+            position += EDGE_BYTES;
+        }
+        offsets[openRow + 1] = position;
+        numEdges += rowEdges;
+        resetRow();
+        openRow = -1;
+    }
+
+    private void resetRow(){
+        if(rowSize > 1024){ // Don't keep a hub's buffers around.
+            rowIndex = new IntIntHashMap();
+            rowTargets = new int[16];
+            rowWeights = new int[16];
+        } else {
+            for(int i = 0; i < rowSize; i++)
+                rowIndex.remove(rowTargets[i]);
+        }
+        rowSize = rowEdges = 0;
+    }
+
+    /* Maps the file up to the provided size. In append mode, whole segments are mapped, which extends the file. */
+    private void ensureMapped(long size){
+        int needed = (int)((size + segmentMask) >>> segmentBits);
+        if(!readOnly && needed <= segments.length)
+            return;
+        MappedByteBuffer[] newSegments = Arrays.copyOf(segments, needed);
+        try {
+            for(int i = readOnly ? 0 : segments.length; i < needed; i++){
+                long start = (long)i << segmentBits;
+                long length = readOnly ? Math.min(segmentMask + 1, size - start) : segmentMask + 1;
+                newSegments[i] = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                        start, length);
+                newSegments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch(IOException e){
+            throw new RuntimeException("MappedCSRGraph::ensureMapped(): Could not map the file: " + e.getMessage(), e);
+        }
+        segments = newSegments;
+    }
+
+    private void map(long size) throws IOException {
+        try {
+            ensureMapped(size);
+        } catch(RuntimeException e){
+            if(e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw e;
+        }
+    }
+
+    /* Returns the CRC32 of the bytes [0, end) of the file, with the checksum field read as 0. */
+    private int checksum(long end){
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for(int position = 0; position < HEADER_BYTES; position += 4)
+            header.putInt(position == CHECKSUM_POSITION ? 0 : getInt(position));
+        crc.update(header.array());
+        for(long start = HEADER_BYTES; start < end; ){
+            ByteBuffer segment = segments[(int)(start >>> segmentBits)].duplicate();
+            int from = (int)(start & segmentMask);
+            int to = (int)Math.min(segment.capacity(), from + (end - start));
+            segment.limit(to);
+            segment.position(from);
+            crc.update(segment);
+            start += to - from;
+        }
+        return (int)crc.getValue();
+    }
+
+    /* Writes the contents of buffer to channel, adds them to crc and empties buffer. */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /* Every value is aligned to its size and segments are a power of two larger than 8 bytes, so no value is ever split
+     * between two segments. */
+    private int getInt(long position){
+        return segments[(int)(position >>> segmentBits)].getInt((int)(position & segmentMask));
+    }
+
+    private long getLong(long position){
+        return segments[(int)(position >>> segmentBits)].getLong((int)(position & segmentMask));
+    }
+
+    private void putInt(long position, int value){
+        segments[(int)(position >>> segmentBits)].putInt((int)(position & segmentMask), value);
+    }
+
+    private void putLong(long position, long value){
+        segments[(int)(position >>> segmentBits)].putLong((int)(position & segmentMask), value);
+    }
+}
@@ -0,0 +1,239 @@
+package projects.graph;
+
+import org.junit.Test;
+import projects.graph.utils.IntIntHashMap;
+import projects.graph.utils.IntNeighborList;
+import projects.graph.utils.Neighbor;
+import projects.graph.utils.NeighborList;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>{@link NeighborListTests} tests that {@link IntNeighborList} behaves like the {@link NeighborList} it replaces, in
+ * both its unsorted and sorted modes.</p>
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see IntNeighborList
+ * @see NeighborList
+ */
+public class NeighborListTests {
+
+    private static NeighborList[] lists(){
+        return new NeighborList[]{new NeighborList(), new IntNeighborList(), new IntNeighborList(true)};
+    }
+
+    @Test
+    public void testInsertionsAndQueries(){
+        for(NeighborList list : lists()){
+            list.addBack(5, 50);
+            list.addFront(2, 20);
+            list.addBack(9, 90);
+            list.addFront(1, 10);
+            assertEquals("List should contain 4 neighbors.", 4, list.getCount());
+            assertTrue("List should contain node 9.", list.containsNeighbor(9));
+            assertFalse("List should not contain node 3.", list.containsNeighbor(3));
+            assertEquals("Weight of node 5 should be 50.", 50, list.getWeight(5));
+            assertEquals("Weight of a missing node should be 0.", 0, list.getWeight(3));
+            list.setWeight(5, 55);
+            assertEquals("Weight of node 5 should have been updated.", 55, list.getWeight(5));
+            list.remove(2);
+            list.remove(3);
+            assertEquals("List should contain 3 neighbors.", 3, list.getCount());
+            assertFalse("List should no longer contain node 2.", list.containsNeighbor(2));
+        }
+    }
+
+    @Test
+    public void testOrderAndGrowth(){
+        IntNeighborList unsorted = new IntNeighborList(), sorted = new IntNeighborList(true);
+        for(int i = 0; i < 100; i++){
+            int node = (i * 37) % 100;
+            if(i % 2 == 0) {
+                unsorted.addBack(node, i);
+                sorted.addBack(node, i);
+            } else {
+                unsorted.addFront(node, i);
+                sorted.addFront(node, i);
+            }
+        }
+        assertEquals("The unsorted list should keep the last front insertion first.", (99 * 37) % 100, unsorted.getNodeAt(0));
+        assertEquals("The unsorted list should keep the last back insertion last.", (98 * 37) % 100, unsorted.getNodeAt(99));
+        for(int i = 0; i < 100; i++)
+            assertEquals("The sorted list should be in ascending node order.", i, sorted.getNodeAt(i));
+        for(int i = 0; i < 100; i++)
+            assertEquals("Both lists should agree on weights.", unsorted.getWeight(i), sorted.getWeight(i));
+    }
+
+    @Test
+    public void testIteration(){
+        for(NeighborList list : lists()){
+            list.addBack(1, 10);
+            list.addBack(2, 20);
+            for(Neighbor n : list)
+                n.setWeight(n.getWeight() + 1);
+            assertEquals("Setting the weight through the iterator should update the list.", 11, list.getWeight(1));
+            assertEquals("Setting the weight through the iterator should update the list.", 21, list.getWeight(2));
+
+            Iterator<Neighbor> it = list.iterator();
+            it.next();
+            list.setWeight(2, 5);
+            it.next(); // Changing a weight is not a modification.
+            it = list.iterator();
+            it.next();
+            list.addBack(3, 30);
+            try {
+                it.next();
+                fail("The iterator should have failed fast after an insertion.");
+            } catch(ConcurrentModificationException ignored){
+                // Expected.
+            }
+        }
+        IntNeighborList list = new IntNeighborList();
+        list.addBack(1, 10);
+        Neighbor first = list.iterator().next();
+        list.addFront(0, 5); // May move node 1, e.g by growing the arrays.
+        try {
+            first.setWeight(11);
+            fail("A write through a stale element should fail fast.");
+        } catch(ConcurrentModificationException ignored){
+            // Expected.
+        }
+        assertEquals("A failed write should not change the list.", 5, list.getWeight(0));
+        assertEquals("A failed write should not change the list.", 10, list.getWeight(1));
+    }
+
+    @Test
+    public void testHashIndex(){
+        IntNeighborList hub = new IntNeighborList(4, false, 16);
+        NeighborList reference = new NeighborList();
+        for(int i = 0; i < 1000; i++){
+            int node = (i * 7919) % 600; // Repeats some nodes, to exercise duplicates.
+            if(i % 3 == 0) {
+                hub.addFront(node, i + 1);
+                reference.addFront(node, i + 1);
+            } else {
+                hub.addBack(node, i + 1);
+                reference.addBack(node, i + 1);
+            }
+            if(i == 15)
+                assertTrue("The list should have built its index upon reaching the threshold.", hub.isIndexed());
+        }
+        for(int node = 0; node < 700; node += 3){
+            hub.remove(node);
+            reference.remove(node);
+        }
+        for(int node = 0; node < 700; node++){
+            assertEquals("Indexed and linked lists should agree on node " + node + ".", reference.containsNeighbor(node),
+                    hub.containsNeighbor(node));
+            assertEquals("Indexed and linked lists should agree on the weight of node " + node + ".",
+                    reference.getWeight(node), hub.getWeight(node));
+        }
+        assertEquals("Indexed and linked lists should agree on the count.", reference.getCount(), hub.getCount());
+        while(hub.getCount() > 4)
+            hub.remove(hub.getNodeAt(0));
+        assertFalse("The list should have dropped its index after shrinking.", hub.isIndexed());
+    }
+
+    @Test
+    public void testIndexedRemovals(){
+        IntNeighborList hub = new IntNeighborList(10000, false, 32);
+        NeighborList reference = new NeighborList();
+        for(int i = 0; i < 10000; i++){
+            hub.addBack(i, i + 1);
+            reference.addBack(i, i + 1);
+        }
+        for(int i = 0; i < 10000; i++){
+            int node = (i % 2 == 0) ? i / 2 : 9999 - (i * 7) % 5000; // Fronts, middles and backs, some twice.
+            if(i % 5 == 0)
+                node = (i * 31) % 10000;
+            hub.remove(node);
+            reference.remove(node);
+            if(i % 500 == 0) {
+                for(int probe = node - 50; probe < node + 50; probe++){
+                    assertEquals("Indexed and linked lists should agree on node " + probe + ".",
+                            reference.containsNeighbor(probe), hub.containsNeighbor(probe));
+                    assertEquals("Indexed and linked lists should agree on the weight of node " + probe + ".",
+                            reference.getWeight(probe), hub.getWeight(probe));
+                }
+                hub.setWeight(node + 1, -7);
+                reference.setWeight(node + 1, -7);
+            }
+        }
+        assertEquals("Indexed and linked lists should agree on the count.", reference.getCount(), hub.getCount());
+        int position = 0;
+        for(Neighbor neighbor : reference){ // Removals should not have reordered the remaining elements.
+            assertEquals("The list should keep its order after removals.", neighbor.getNode(), hub.getNodeAt(position));
+            assertEquals("The list should keep its weights after removals.", neighbor.getWeight(), hub.getWeightAt(position++));
+        }
+        for(int node = 0; node < 10000; node++)
+            assertEquals("Indexed and linked lists should agree on node " + node + ".", reference.containsNeighbor(node),
+                    hub.containsNeighbor(node));
+    }
+
+    @Test
+    public void testIndexedRemovalsOfDuplicates(){
+        IntNeighborList hub = new IntNeighborList(4, false, 8);
+        NeighborList reference = new NeighborList();
+        for(int i = 0; i < 3000; i++){
+            int node = (i * 31) % 500; // Every node occurs six times, at both ends of the list.
+            if(i % 2 == 0) {
+                hub.addFront(node, i + 1);
+                reference.addFront(node, i + 1);
+            } else {
+                hub.addBack(node, i + 1);
+                reference.addBack(node, i + 1);
+            }
+        }
+        Random random = new Random(61);
+        for(int i = 0; i < 2500; i++){
+            int node = random.nextInt(520);
+            hub.remove(node);
+            reference.remove(node);
+            if(i % 7 == 0) {
+                hub.addBack(node % 500, -i);
+                reference.addBack(node % 500, -i);
+            }
+            if(i % 100 == 0)
+                for(int probe = 0; probe < 520; probe++)
+                    assertEquals("Indexed and linked lists should agree on the weight of node " + probe + ".",
+                            reference.getWeight(probe), hub.getWeight(probe));
+        }
+        assertEquals("Indexed and linked lists should agree on the count.", reference.getCount(), hub.getCount());
+        int position = 0;
+        for(Neighbor neighbor : reference)
+            assertEquals("The list should keep its order after removals.", neighbor.getNode(), hub.getNodeAt(position++));
+    }
+
+    @Test
+    public void testNegativeNodeIDs(){
+        IntNeighborList list = new IntNeighborList(4, false, 2);
+        try {
+            list.addBack(-1, 1);
+            fail("A negative node ID should be rejected before the list builds its index.");
+        } catch(RuntimeException ignored){
+            // Expected.
+        }
+        list.addBack(0, 1);
+        list.addBack(1, 1);
+        assertTrue("The list should have built its index upon reaching the threshold.", list.isIndexed());
+        try {
+            list.addFront(-2, 1);
+            fail("A negative node ID should be rejected by an indexed list.");
+        } catch(RuntimeException ignored){
+            // Expected.
+        }
+        assertEquals("Rejected node IDs should not be stored.", 2, list.getCount());
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(3, 4);
+        try {
+            map.remove(-1);
+            fail("A negative key should be rejected by remove().");
+        } catch(RuntimeException ignored){
+            // Expected.
+        }
+        assertEquals("A rejected removal should not change the size of the map.", 1, map.size());
+    }
+}
@@ -0,0 +1,21 @@
+package projects.graph;
+
+/**
+ * <p>A {@link NeighborVisitor} receives the out-edges of a node from {@link Graph#forEachNeighbor(int, NeighborVisitor)}
+ * as pairs of primitive <tt>int</tt>s. Unlike {@link Graph#getNeighbors(int)}, which boxes every neighbor into a freshly
+ * allocated {@link java.util.Set}, and {@link Graph#getEdgeWeight(int, int)}, which has to find the edge again,
+ * visiting the neighbors of a node allocates nothing per edge and reads every weight in the same pass.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see Graph#forEachNeighbor(int, NeighborVisitor)
+ */
+@FunctionalInterface
+public interface NeighborVisitor {
+
+    /**
+     * Called once for every out-edge of the visited node.
+     * @param neighbor The node the edge points to.
+     * @param weight The (positive) weight of the edge.
+     */
+    void visit(int neighbor, int weight);
+}
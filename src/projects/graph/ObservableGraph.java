@@ -0,0 +1,157 @@
+package projects.graph;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>{@link ObservableGraph} wraps another {@link Graph} and reports every mutation of it to a set of
+ * {@link EdgeListener}s. Queries are forwarded to the wrapped graph as they are. Every mutation first reads the weight
+ * that it is about to overwrite, applies itself to the wrapped graph, and then notifies the listeners, if the weight
+ * actually changed, in the order in which they were added.</p>
+ *
+ * <p>{@link #addEdges(int[], int[], int[])} validates the whole batch first, like the overrides of the other
+ * implementations, but then applies it one edge at a time, like {@link #deleteEdges(int[], int[])}, so that every
+ * listener sees every intermediate weight of an edge that appears more than once in a batch. The wrapped graph should
+ * not be mutated directly, since its listeners would miss those mutations. {@link ObservableGraph} is as thread-safe as
+ * the graph that it wraps, provided that mutations are not concurrent with each other; listeners may be added and
+ * removed at any time.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see EdgeListener
+ * @see DynamicShortestPaths
+ */
+public class ObservableGraph extends Graph {
+
+    private final Graph graph;
+    private final List<EdgeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an {@link ObservableGraph} over graph.
+     * @param graph The {@link Graph} to wrap. It should only be mutated through this instance from now on.
+     */
+    public ObservableGraph(Graph graph){
+        if(graph == null)
+            throw new RuntimeException("ObservableGraph::ObservableGraph(): Null graph provided.");
+        this.graph = graph;
+    }
+
+    /**
+     * Adds a listener, which will be notified of all subsequent mutations.
+     * @param listener The {@link EdgeListener} to add.
+     */
+    public void addListener(EdgeListener listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener, if it was added before.
+     * @param listener The {@link EdgeListener} to remove.
+     * @return <tt>true</tt> if, and only if, the listener had been added.
+     */
+    public boolean removeListener(EdgeListener listener){
+        return listeners.remove(listener);
+    }
+
+    @Override
+    public void addNode() {
+        graph.addNode();
+        int node = graph.getNumNodes() - 1;
+        for(EdgeListener listener : listeners)
+            listener.nodeAdded(node);
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        int oldWeight = graph.getEdgeWeight(source, dest);
+        graph.addEdge(source, dest, weight);
+        fire(source, dest, oldWeight, weight);
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        int oldWeight = graph.getEdgeWeight(source, dest);
+        graph.deleteEdge(source, dest);
+        fire(source, dest, oldWeight, 0);
+    }
+
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("ObservableGraph::addEdges()", graph.getNumNodes(), sources, dests, weights);
+        for(int i = 0; i < sources.length; i++)
+            addEdge(sources[i], dests[i], weights[i]);
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return graph.edgeBetween(source, dest);
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        return graph.getEdgeWeight(source, dest);
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        return graph.getNeighbors(node);
+    }
+
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        graph.forEachNeighbor(node, visitor);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return graph.getNumNodes();
+    }
+
+    @Override
+    public int getNumEdges() {
+        return graph.getNumEdges();
+    }
+
+    @Override
+    public void clear() {
+        graph.clear();
+        for(EdgeListener listener : listeners)
+            listener.cleared();
+    }
+
+    @Override
+    public CSRGraph transpose() {
+        return graph.transpose();
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, through the toCSRGraph() method of the wrapped
+     * graph.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return CSRGraph.fromGraph(graph);
+    }
+
+    /* The searches run in the workspaces of the wrapped graph, so that they are as thread-safe as its own. */
+    @Override
+    ShortestPathWorkspace searchWorkspace(){
+        return graph.searchWorkspace();
+    }
+
+    @Override
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        return graph.reverseSearchWorkspace();
+    }
+
+    private void fire(int source, int dest, int oldWeight, int newWeight){
+        if(oldWeight == newWeight)
+            return;
+        for(EdgeListener listener : listeners)
+            listener.edgeChanged(source, dest, oldWeight, newWeight);
+    }
+}
@@ -0,0 +1,215 @@
+package projects.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>{@link ParallelCountingSort} builds a {@link CSRGraph} out of an edge list that is split into several
+ * {@link EdgeChunk}s, such as the per-thread buffers of a parallel parser, on a {@link ForkJoinPool}. The sequential
+ * counting sort of {@link CSRGraph#fromEdges(int, int[], int[], int[], int)} needs a single pass over all the edges; this
+ * class splits the node ids into contiguous <b>ranges</b> instead, and proceeds in three parallel phases:</p>
+ * <ol>
+ *     <li>Every chunk validates its edges and counts how many of them fall into every range.</li>
+ *     <li>Every chunk scatters its edges into the slice of every range that the counts reserve for it. Slices are laid
+ *     out range-major and chunk-minor, so within a range the edges remain in chunk order, and therefore in file order.</li>
+ *     <li>Every range counting-sorts its own edges on the source node, and then sorts, de-duplicates and compacts its rows
+ *     through {@link CSRGraph#compactRows(int[], int[], int[], int, int, int)}.</li>
+ * </ol>
+ * <p>The sort is stable, so the semantics are exactly those of {@link CSRGraph#fromEdges(int, int[], int[], int[])}:
+ * the last weight of a duplicate edge is kept, and a weight of 0 deletes the edge. Since no two tasks ever write to the same
+ * slot, no phase needs any synchronization besides the join that ends it.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see CSRGraph
+ * @see EdgeListImporter
+ */
+class ParallelCountingSort {
+
+    /* The number of ranges per worker thread. More ranges than threads balance the load of skewed degree distributions. */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * The edges [from, to) of three parallel arrays.
+     */
+    static class EdgeChunk {
+        final int[] sources, dests, weights;
+        final int from, to;
+
+        EdgeChunk(int[] sources, int[] dests, int[] weights, int from, int to){
+            this.sources = sources;
+            this.dests = dests;
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private ParallelCountingSort(){
+        // Only static methods.
+    }
+
+    /**
+     * Builds a {@link CSRGraph} with numNodes nodes out of the edges of chunks, taken in chunk order.
+     * @param numNodes The number of nodes of the graph.
+     * @param chunks The edges of the graph.
+     * @param pool The pool to run the phases on.
+     * @return A {@link CSRGraph} instance containing the provided edges.
+     * @throws RuntimeException if a node is not in [0, numNodes), a weight is negative or there are more edges than a
+     * {@link CSRGraph} can hold.
+     */
+    static CSRGraph build(int numNodes, EdgeChunk[] chunks, ForkJoinPool pool){
+        if(numNodes < 0)
+            throw new RuntimeException("CSRGraph.fromEdges(): Negative number of nodes provided: " + numNodes + ".");
+        int[] bounds = ranges(numNodes, pool); // Range r holds the sources [bounds[r], bounds[r + 1]).
+        int numRanges = bounds.length - 1;
+
+        // Phase 1: validation and per-chunk range counts.
+        int[][] cursors = new int[chunks.length][numRanges];
+        forEach(pool, chunks.length, c -> {
+            EdgeChunk chunk = chunks[c];
+            int[] counts = cursors[c];
+            for(int i = chunk.from; i < chunk.to; i++){
+                int source = chunk.sources[i], dest = chunk.dests[i];
+                if(source < 0 || source >= numNodes || dest < 0 || dest >= numNodes)
+                    throw new RuntimeException("CSRGraph.fromEdges(): Edge " + source + "->" + dest + " is out of bounds.");
+                if(chunk.weights[i] < 0)
+                    throw new RuntimeException("CSRGraph.fromEdges(): Negative weight " + chunk.weights[i] + " provided.");
+                counts[rangeOf(source, numNodes, numRanges)]++;
+            }
+        });
+        int[] rangeStarts = new int[numRanges + 1];
+        long total = 0;
+        for(int r = 0; r < numRanges; r++){
+            rangeStarts[r] = (int)total;
+            for(int[] counts : cursors){ // Turns every count into the position where the chunk's slice starts.
+                int count = counts[r];
+                counts[r] = (int)total;
+                total += count;
+            }
+            if(total > Integer.MAX_VALUE - 8)
+                throw new RuntimeException("CSRGraph.fromEdges(): More than " + (Integer.MAX_VALUE - 8) + " edges provided.");
+        }
+        rangeStarts[numRanges] = (int)total;
+
+        // Phase 2: scatter into range-major, chunk-minor slices.
+        int numEdges = (int)total;
+        int[] rangeSources = new int[numEdges], rangeDests = new int[numEdges], rangeWeights = new int[numEdges];
+        forEach(pool, chunks.length, c -> {
+            EdgeChunk chunk = chunks[c];
+            int[] cursor = cursors[c];
+            for(int i = chunk.from; i < chunk.to; i++){
+                int slot = cursor[rangeOf(chunk.sources[i], numNodes, numRanges)]++;
+                rangeSources[slot] = chunk.sources[i];
+                rangeDests[slot] = chunk.dests[i];
+                rangeWeights[slot] = chunk.weights[i];
+            }
+        });
+
+        // Phase 3: per-range counting sort and row compaction. Range r only writes offsets (bounds[r], bounds[r + 1]].
+        int[] offsets = new int[numNodes + 1], targets = new int[numEdges], weights = new int[numEdges];
+        int[] compactedEnds = new int[numRanges];
+        forEach(pool, numRanges, r -> {
+            int low = bounds[r], high = bounds[r + 1], start = rangeStarts[r], end = rangeStarts[r + 1];
+            int[] cursor = new int[high - low + 1];
+            for(int i = start; i < end; i++)
+                cursor[rangeSources[i] - low + 1]++;
+            cursor[0] = start;
+            for(int node = low; node < high; node++){
+                cursor[node - low + 1] += cursor[node - low];
+                offsets[node + 1] = cursor[node - low + 1];
+            }
+            for(int i = start; i < end; i++){
+                int slot = cursor[rangeSources[i] - low]++;
+                targets[slot] = rangeDests[i];
+                weights[slot] = rangeWeights[i];
+            }
+            compactedEnds[r] = CSRGraph.compactRows(offsets, targets, weights, low, high, start);
+        });
+        return closeGaps(offsets, targets, weights, bounds, rangeStarts, compactedEnds, pool);
+    }
+
+    /**
+     * Splits [0, numNodes) into contiguous ranges of nodes, a few per worker thread of pool.
+     * @param numNodes The number of nodes.
+     * @param pool The pool that will process the ranges.
+     * @return The bounds of the ranges: range r holds the nodes [bounds[r], bounds[r + 1]).
+     */
+    static int[] ranges(int numNodes, ForkJoinPool pool){
+        int numRanges = Math.max(1, Math.min(numNodes, RANGES_PER_THREAD * pool.getParallelism()));
+        int[] bounds = new int[numRanges + 1];
+        for(int r = 0; r <= numRanges; r++)
+            bounds[r] = (int)(((long)r * numNodes + numRanges - 1) / numRanges);
+        return bounds;
+    }
+
+    /**
+     * Builds a {@link CSRGraph} out of ranges of rows that were compacted in parallel through
+     * {@link CSRGraph#compactRows(int[], int[], int[], int, int, int)}: compaction leaves a gap at the end of every range,
+     * which this method closes, in parallel too.
+     * @param offsets The row offsets, already compacted within every range.
+     * @param targets The target array.
+     * @param weights The weight array.
+     * @param bounds The bounds of the ranges of nodes, as returned by {@link #ranges(int, ForkJoinPool)}.
+     * @param rangeStarts The index of the first edge of every range, before compaction, followed by the number of edges.
+     * @param compactedEnds The index right after the last edge of every range, after compaction.
+     * @param pool The pool to copy on.
+     * @return A {@link CSRGraph} instance, which may adopt the provided arrays.
+     */
+    static CSRGraph closeGaps(int[] offsets, int[] targets, int[] weights, int[] bounds, int[] rangeStarts,
+                              int[] compactedEnds, ForkJoinPool pool){
+        int numRanges = bounds.length - 1;
+        int[] shifts = new int[numRanges];
+        int compacted = 0;
+        for(int r = 0; r < numRanges; r++){
+            shifts[r] = rangeStarts[r] - compacted;
+            compacted += compactedEnds[r] - rangeStarts[r];
+        }
+        if(compacted == targets.length)
+            return new CSRGraph(offsets, targets, weights);
+        int[] finalTargets = new int[compacted], finalWeights = new int[compacted];
+        forEach(pool, numRanges, r -> {
+            int length = compactedEnds[r] - rangeStarts[r];
+            System.arraycopy(targets, rangeStarts[r], finalTargets, rangeStarts[r] - shifts[r], length);
+            System.arraycopy(weights, rangeStarts[r], finalWeights, rangeStarts[r] - shifts[r], length);
+            for(int node = bounds[r] + 1; node <= bounds[r + 1]; node++)
+                offsets[node] -= shifts[r];
+        });
+        return new CSRGraph(offsets, finalTargets, finalWeights);
+    }
+
+    /* The inverse of the bounds computed by build(): the smallest source of range r is ceil(r * numNodes / numRanges). */
+    private static int rangeOf(int source, int numNodes, int numRanges){
+        return (int)((long)source * numRanges / numNodes);
+    }
+
+    /* Runs body for every index of [0, count) on pool, and returns once all of them are done. Also used by the row-parallel
+     * conversions of CSRGraph. */
+    static void forEach(ForkJoinPool pool, int count, IntConsumer body){
+        if(count > 0)
+            pool.invoke(new ForEach(body, 0, count));
+    }
+
+    private static class ForEach extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final IntConsumer body;
+        private final int from, to;
+
+        ForEach(IntConsumer body, int from, int to){
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1){
+                body.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEach(body, from, middle), new ForEach(body, middle, to));
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package projects.graph;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>{@link ShortestPathCache} is a bounded cache of the results of {@link Graph#shortestPath(int, int)}, for query streams
+ * that repeat the same (source, dest) pairs. Paths are stored as <tt>int[]</tt> arrays, and returned as read-only
+ * {@link List} views of them, so a cached path of k nodes costs 4k bytes plus a fixed overhead per entry; the total is
+ * kept below the byte budget of the instance. Two eviction policies are supported:</p>
+ * <ul>
+ *     <li>{@link Policy#LRU} evicts the least recently used entry.</li>
+ *     <li>{@link Policy#W_TINY_LFU} admits new entries into a small LRU <b>window</b> (1% of the budget), and moves the
+ *     entries that fall out of it into a segmented LRU main area only if they have been requested more often than the
+ *     entry that they would evict. Request frequencies are estimated by a count-min sketch of 4-bit counters, which are
+ *     halved periodically so that old popularity fades. Main entries that are hit again are promoted from its
+ *     <b>probation</b> segment to its <b>protected</b> segment (80% of the main area). So a burst of one-off queries
+ *     cannot flush the entries of frequently repeated queries, as it would under LRU.</li>
+ * </ul>
+ *
+ * <p>The cache follows the mutations of an {@link ObservableGraph}, and it never serves a stale path:</p>
+ * <ul>
+ *     <li>An insertion, or a decrease of a weight, can shorten any path, so it advances the <b>version</b> of the cache in
+ *     O(1) time, and entries of older versions are treated as misses and dropped when they are next requested, or
+ *     evicted in the meantime. {@link Graph#clear()} does the same.</li>
+ *     <li>A deletion, or an increase of a weight, cannot shorten any path, so a cached path stays a shortest path as long
+ *     as its own length is unchanged. Such mutations only advance a counter, and an entry that was cached or last checked
+ *     before the counter changed re-computes the length of its path, in O(k) edge lookups, on its next hit. Paths that
+ *     do not use the mutated edges are therefore still served from the cache.</li>
+ * </ul>
+ *
+ * <p>Like most classes of this package, {@link ShortestPathCache} is not thread-safe.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph#shortestPath(int, int)
+ * @see ObservableGraph
+ * @see DynamicShortestPaths
+ */
+public class ShortestPathCache implements EdgeListener {
+
+    /**
+     * The eviction policies of a {@link ShortestPathCache}.
+     */
+    public enum Policy {
+        /** Least recently used. */
+        LRU,
+        /** Window TinyLFU: frequency-based admission in front of a segmented LRU. */
+        W_TINY_LFU
+    }
+
+    /**
+     * The default byte budget of the cached paths.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * The estimated size of an entry besides its path, in bytes: the entry itself, its key and its slot in the map.
+     */
+    public static final int ENTRY_OVERHEAD = 96;
+
+    private static final int[] NO_PATH = new int[0];
+    private static final double WINDOW_SHARE = 0.01, PROTECTED_SHARE = 0.8;
+
+    /* A cached path. Every entry is in exactly one segment, whose doubly linked list runs from most to least recently used. */
+    private static class Entry {
+        final long key;
+        final int[] path;
+        final long length; // The sum of the weights of path, or -1 if there is no path.
+        final long version;
+        long checked; // The number of increases at the time the length of path was last found valid.
+        Segment segment;
+        Entry previous, next;
+
+        Entry(long key, int[] path, long length, long version, long checked){
+            this.key = key;
+            this.path = path;
+            this.length = length;
+            this.version = version;
+            this.checked = checked;
+        }
+
+        long bytes(){
+            return ENTRY_OVERHEAD + 4L * path.length;
+        }
+    }
+
+    private static class Segment {
+        Entry head, tail;
+        long bytes;
+
+        void addFirst(Entry entry){
+            entry.segment = this;
+            entry.previous = null;
+            entry.next = head;
+            if(head != null)
+                head.previous = entry;
+            else
+                tail = entry;
+            head = entry;
+            bytes += entry.bytes();
+        }
+
+        void remove(Entry entry){
+            if(entry.previous != null)
+                entry.previous.next = entry.next;
+            else
+                head = entry.next;
+            if(entry.next != null)
+                entry.next.previous = entry.previous;
+            else
+                tail = entry.previous;
+            entry.previous = entry.next = null;
+            entry.segment = null;
+            bytes -= entry.bytes();
+        }
+
+        void clear(){
+            head = tail = null;
+            bytes = 0;
+        }
+    }
+
+    private final ObservableGraph graph;
+    private final Policy policy;
+    private final long maxBytes, windowMaxBytes, mainMaxBytes, protectedMaxBytes;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Segment window = new Segment(), probation = new Segment(), protectedSegment = new Segment();
+    private final FrequencySketch sketch;
+    private final ShortestPathWorkspace workspace = new ShortestPathWorkspace();
+    private long version, increases;
+    private long hits, misses, evictions, invalidations;
+
+    /**
+     * Creates a {@link Policy#W_TINY_LFU} cache of {@link #DEFAULT_MAX_BYTES} bytes over graph.
+     * @param graph The {@link ObservableGraph} whose shortest paths to cache.
+     */
+    public ShortestPathCache(ObservableGraph graph){
+        this(graph, Policy.W_TINY_LFU, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache over graph, and subscribes to the mutations of graph.
+     * @param graph The {@link ObservableGraph} whose shortest paths to cache.
+     * @param policy The eviction {@link Policy}.
+     * @param maxBytes The maximum total size of the cached entries, in bytes, as estimated by {@link #ENTRY_OVERHEAD}
+     *                 plus 4 bytes per node of every path.
+     * @throws RuntimeException if maxBytes is not positive.
+     */
+    public ShortestPathCache(ObservableGraph graph, Policy policy, long maxBytes){
+        if(maxBytes <= 0)
+            throw new RuntimeException("ShortestPathCache::ShortestPathCache(): Byte budget should be positive, was: " +
+                    maxBytes + ".");
+        this.graph = graph;
+        this.policy = policy;
+        this.maxBytes = maxBytes;
+        windowMaxBytes = policy == Policy.W_TINY_LFU ? Math.max(1, (long)(maxBytes * WINDOW_SHARE)) : 0;
+        mainMaxBytes = maxBytes - windowMaxBytes;
+        protectedMaxBytes = (long)(mainMaxBytes * PROTECTED_SHARE);
+        sketch = policy == Policy.W_TINY_LFU ? new FrequencySketch(maxBytes / ENTRY_OVERHEAD) : null;
+        graph.addListener(this);
+    }
+
+    /**
+     * Returns the shortest path from source to dest, with the semantics of {@link Graph#shortestPath(int, int)}, from the
+     * cache if possible.
+     * @param source The source node of the path.
+     * @param dest The &quot; sink &quot; node of the path.
+     * @return A read-only {@link List} view of the path, which is empty if there is no path.
+     */
+    public List<Integer> shortestPath(int source, int dest){
+        long key = ((long)source << 32) | (dest & 0xFFFFFFFFL);
+        if(sketch != null)
+            sketch.increment(key);
+        Entry entry = entries.get(key);
+        if(entry != null){
+            if(isValid(entry)){
+                hits++;
+                touch(entry);
+                return asList(entry.path);
+            }
+            invalidations++;
+            discard(entry);
+        }
+        misses++;
+        List<Integer> path = graph.shortestPath(source, dest, workspace);
+        int[] nodes = path.isEmpty() ? NO_PATH : new int[path.size()];
+        for(int i = 0; i < nodes.length; i++)
+            nodes[i] = path.get(i);
+        entry = new Entry(key, nodes, lengthOf(nodes), version, increases);
+        if(entry.bytes() <= (policy == Policy.LRU ? maxBytes : mainMaxBytes))
+            admit(entry);
+        return asList(nodes);
+    }
+
+    @Override
+    public void edgeChanged(int source, int dest, int oldWeight, int newWeight) {
+        if(oldWeight == 0 || (newWeight != 0 && newWeight < oldWeight))
+            version++; // Any path may have become shorter.
+        else
+            increases++; // Only paths through source->dest may have changed, and only cached ones can tell.
+    }
+
+    @Override
+    public void cleared() {
+        version++;
+    }
+
+    /**
+     * Drops every entry. The counters are not reset.
+     */
+    public void invalidateAll(){
+        entries.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    /**
+     * Unsubscribes from the mutations of the graph, and drops every entry. The cache should not be used afterwards.
+     */
+    public void detach(){
+        graph.removeListener(this);
+        invalidateAll();
+    }
+
+    /**
+     * Returns the eviction policy of the cache.
+     * @return The {@link Policy} of the cache.
+     */
+    public Policy getPolicy(){
+        return policy;
+    }
+
+    /**
+     * Returns the number of entries in the cache, including stale entries that have not been dropped yet.
+     * @return The number of entries.
+     */
+    public int size(){
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated total size of the entries in the cache.
+     * @return The size of the entries, in bytes.
+     */
+    public long getBytes(){
+        return window.bytes + probation.bytes + protectedSegment.bytes;
+    }
+
+    /**
+     * Returns the maximum total size of the entries in the cache.
+     * @return The byte budget, in bytes.
+     */
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of queries served from the cache.
+     * @return The number of hits.
+     */
+    public long getHits(){
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries that required a search, including those that found a stale entry.
+     * @return The number of misses.
+     */
+    public long getMisses(){
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries that were evicted, or rejected by admission, to stay within the byte budget.
+     * @return The number of evictions.
+     */
+    public long getEvictions(){
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries that were found stale on a lookup and dropped.
+     * @return The number of invalidations.
+     */
+    public long getInvalidations(){
+        return invalidations;
+    }
+
+    /* Whether entry is still a shortest path. Only increases can have happened since it was cached, if its version is
+     * current, and they cannot shorten any path: if its own length is unchanged, it is still the shortest. */
+    private boolean isValid(Entry entry){
+        if(entry.version != version)
+            return false;
+        if(entry.checked != increases){
+            if(lengthOf(entry.path) != entry.length)
+                return false;
+            entry.checked = increases;
+        }
+        return true;
+    }
+
+    private long lengthOf(int[] path){
+        if(path.length == 0)
+            return -1;
+        long length = 0;
+        for(int i = 0; i + 1 < path.length; i++){
+            int weight = graph.getEdgeWeight(path[i], path[i + 1]);
+            if(weight == 0)
+                return -2; // An edge of the path was deleted; no cached length can match this.
+            length += weight;
+        }
+        return length;
+    }
+
+    private void touch(Entry entry){
+        Segment segment = entry.segment;
+        segment.remove(entry);
+        if(segment == probation && policy == Policy.W_TINY_LFU){
+            protectedSegment.addFirst(entry);
+            while(protectedSegment.bytes > protectedMaxBytes){ // Demotes the least recently used protected entries.
+                Entry demoted = protectedSegment.tail;
+                protectedSegment.remove(demoted);
+                probation.addFirst(demoted);
+            }
+        } else {
+            segment.addFirst(entry);
+        }
+    }
+
+    private void admit(Entry entry){
+        entries.put(entry.key, entry);
+        if(policy == Policy.LRU){
+            probation.addFirst(entry);
+            while(probation.bytes > maxBytes)
+                evict(probation.tail);
+            return;
+        }
+        window.addFirst(entry);
+        while(window.bytes > windowMaxBytes){
+            Entry candidate = window.tail;
+            window.remove(candidate);
+            contest(candidate);
+        }
+    }
+
+    /* Moves an entry that fell out of the window into the main area, if it is requested more often than every entry
+     * that it would evict. */
+    private void contest(Entry candidate){
+        int frequency = sketch.frequency(candidate.key);
+        while(probation.bytes + protectedSegment.bytes + candidate.bytes() > mainMaxBytes){
+            Entry victim = probation.tail != null ? probation.tail : protectedSegment.tail;
+            if(frequency <= sketch.frequency(victim.key)){
+                entries.remove(candidate.key);
+                evictions++;
+                return;
+            }
+            evict(victim);
+        }
+        probation.addFirst(candidate);
+    }
+
+    private void evict(Entry entry){
+        discard(entry);
+        evictions++;
+    }
+
+    private void discard(Entry entry){
+        entry.segment.remove(entry);
+        entries.remove(entry.key);
+    }
+
+    private static List<Integer> asList(int[] path){
+        return new IntArrayList(path);
+    }
+
+    /* A read-only view of an int[]. */
+    private static class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] values;
+
+        IntArrayList(int[] values){
+            this.values = values;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    /* A count-min sketch of 4-bit counters, four rows of 16 counters per long, whose counters are all halved once it has
+     * counted ten times as many requests as it has counters per row. */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+                0xD6E8FEB86659FD93L};
+        private final long[] table;
+        private final int rowMask, wordsPerRow, sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedEntries){
+            int counters = Integer.highestOneBit((int)Math.min(1 << 24, Math.max(64, expectedEntries)) * 2 - 1);
+            rowMask = counters - 1;
+            wordsPerRow = counters / 16;
+            table = new long[4 * wordsPerRow];
+            sampleSize = 10 * counters;
+        }
+
+        int frequency(long key){
+            int frequency = 15;
+            for(int row = 0; row < 4; row++){
+                int counter = counter(key, row);
+                frequency = Math.min(frequency, (int)(table[word(row, counter)] >>> shift(counter)) & 15);
+            }
+            return frequency;
+        }
+
+        void increment(long key){
+            for(int row = 0; row < 4; row++){
+                int counter = counter(key, row), word = word(row, counter), shift = shift(counter);
+                if(((table[word] >>> shift) & 15) != 15)
+                    table[word] += 1L << shift;
+            }
+            if(++additions == sampleSize){
+                for(int i = 0; i < table.length; i++)
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                additions /= 2;
+            }
+        }
+
+        private int counter(long key, int row){
+            long hash = (key + SEEDS[row]) * SEEDS[(row + 1) & 3];
+            return (int)(hash ^ (hash >>> 32)) & rowMask;
+        }
+
+        private int word(int row, int counter){
+            return row * wordsPerRow + (counter >>> 4);
+        }
+
+        private static int shift(int counter){
+            return (counter & 15) << 2;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package projects.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>{@link ShortestPathTests} tests {@link Graph#shortestPath(int, int)} and its variants. Since shortest path computation
+ * only uses the public interface of {@link Graph}, we run everything against {@link CSRGraph} and {@link DeltaCSRGraph}.</p>
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see Graph
+ * @see ShortestPathWorkspace
+ * @see DynamicShortestPaths
+ * @see ShortestPathCache
+ */
+public class ShortestPathTests {
+
+    /* 0 -> 1 (2), 0 -> 2 (5), 1 -> 2 (1), 1 -> 3 (7), 2 -> 3 (2), 3 -> 0 (1), 4 is isolated. */
+    private static CSRGraph smallGraph(){
+        return CSRGraph.fromEdges(5, new int[]{0, 0, 1, 1, 2, 3}, new int[]{1, 2, 2, 3, 3, 0}, new int[]{2, 5, 1, 7, 2, 1});
+    }
+
+    /* A seeded random graph with numEdges edges of weight in [1, maxWeight], duplicates and self-loops included. */
+    private static CSRGraph randomGraph(long seed, int numNodes, int numEdges, int maxWeight){
+        Random random = new Random(seed);
+        int[] sources = new int[numEdges], dests = new int[numEdges], weights = new int[numEdges];
+        for(int i = 0; i < numEdges; i++){
+            sources[i] = random.nextInt(numNodes);
+            dests[i] = random.nextInt(numNodes);
+            weights[i] = 1 + random.nextInt(maxWeight);
+        }
+        return CSRGraph.fromEdges(numNodes, sources, dests, weights);
+    }
+
+    @Test
+    public void testSimpleShortestPath(){
+        Graph graph = smallGraph();
+        assertEquals("Shortest path from 0 to 3 should go through 1 and 2.", Arrays.asList(0, 1, 2, 3), graph.shortestPath(0, 3));
+        assertEquals("Shortest path from 3 to 2 should go through 0 and 1.", Arrays.asList(3, 0, 1, 2), graph.shortestPath(3, 2));
+    }
+
+    @Test
+    public void testNoPath(){
+        Graph graph = smallGraph();
+        List<Integer> path = graph.shortestPath(0, 4);
+        assertNotNull("When there is no path, the returned list should be non-null.", path);
+        assertEquals("When there is no path, the returned list should be empty.", new ArrayList<Integer>(), path);
+    }
+
+    @Test
+    public void testSourceEqualsDest(){
+        Graph graph = smallGraph();
+        assertEquals("Shortest path from 0 to itself should be the shortest cycle through 0.",
+                Arrays.asList(0, 1, 2, 3, 0), graph.shortestPath(0, 0));
+        assertEquals("An isolated node should have no path to itself.", 0, graph.shortestPath(4, 4).size());
+    }
+
+    @Test
+    public void testWorkspaceReuse(){
+        Graph graph = smallGraph();
+        ShortestPathWorkspace ws = new ShortestPathWorkspace();
+        assertEquals("First query on a fresh workspace.", Arrays.asList(0, 1, 2, 3), graph.shortestPath(0, 3, ws));
+        assertEquals("Distance of 3 from 0 should be 5.", 5, ws.getDistance(3));
+        assertEquals("Second query on the same workspace.", Arrays.asList(2, 3, 0), graph.shortestPath(2, 0, ws));
+        assertEquals("Node 4 should be unreachable in the last search.", Graph.INFINITY, ws.getDistance(4));
+        assertFalse("Node 1 should not have been settled by a search that ended at 0.", ws.isSettled(1));
+    }
+
+    @Test
+    public void testShortestPathAfterMutations(){
+        DeltaCSRGraph graph = new DeltaCSRGraph(smallGraph());
+        graph.addEdge(0, 3, 3);
+        assertEquals("A new direct edge should become the shortest path.", Arrays.asList(0, 3), graph.shortestPath(0, 3));
+        graph.deleteEdge(0, 3);
+        graph.addNode();
+        graph.addEdge(3, 5, 1);
+        assertEquals("The new node should be reachable through 3.", Arrays.asList(0, 1, 2, 3, 5), graph.shortestPath(0, 5));
+    }
+
+    @Test
+    public void testBidirectionalShortestPath(){
+        Graph graph = smallGraph();
+        assertEquals("Bidirectional search should find the same path as Dijkstra.", Arrays.asList(0, 1, 2, 3), graph.bidirectionalShortestPath(0, 3));
+        assertEquals("Bidirectional search should find the same path as Dijkstra.", Arrays.asList(3, 0, 1, 2), graph.bidirectionalShortestPath(3, 2));
+        assertEquals("Bidirectional search should return an empty path for unreachable nodes.", 0, graph.bidirectionalShortestPath(0, 4).size());
+        assertEquals("Bidirectional search should handle cycles through the source.", Arrays.asList(0, 1, 2, 3, 0), graph.bidirectionalShortestPath(0, 0));
+    }
+
+    @Test
+    public void testAStarWithCoordinates(){
+        // A 3x3 grid with unit-length horizontal and vertical edges in both directions, all of weight 10.
+        int side = 3, numNodes = side * side;
+        double[] x = new double[numNodes], y = new double[numNodes];
+        List<Integer> sources = new ArrayList<>(), dests = new ArrayList<>();
+        for(int node = 0; node < numNodes; node++){
+            x[node] = node % side;
+            y[node] = node / side;
+            if(node % side + 1 < side){ sources.add(node); dests.add(node + 1); sources.add(node + 1); dests.add(node); }
+            if(node + side < numNodes){ sources.add(node); dests.add(node + side); sources.add(node + side); dests.add(node); }
+        }
+        int[] s = sources.stream().mapToInt(Integer::intValue).toArray(), d = dests.stream().mapToInt(Integer::intValue).toArray();
+        int[] w = new int[s.length];
+        Arrays.fill(w, 10);
+        CSRGraph graph = CSRGraph.fromEdges(numNodes, s, d, w);
+
+        CoordinateHeuristic heuristic = CoordinateHeuristic.fit(graph, x, y);
+        assertEquals("The fitted cost per unit should be the weight of a unit-length edge.", 10.0, heuristic.getCostPerUnit(), 1e-9);
+        List<Integer> path = graph.shortestPath(0, 8, heuristic);
+        assertEquals("A* should find a path of 4 edges across the grid.", 5, path.size());
+        assertEquals("A* path should start at the source.", Integer.valueOf(0), path.get(0));
+        assertEquals("A* path should end at the destination.", Integer.valueOf(8), path.get(4));
+        assertEquals("The trivial heuristic should make A* behave like Dijkstra.", graph.shortestPath(2, 6).size(),
+                graph.shortestPath(2, 6, (node, dest) -> 0).size());
+    }
+
+    @Test
+    public void testContractionHierarchy(){
+        CSRGraph graph = smallGraph();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        for(int source = 0; source < graph.getNumNodes(); source++)
+            for(int dest = 0; dest < graph.getNumNodes(); dest++)
+                assertEquals("The hierarchy should return the same path as Dijkstra for " + source + "->" + dest + ".",
+                        graph.shortestPath(source, dest), hierarchy.shortestPath(source, dest));
+        assertEquals("Distance from 1 to 0 should be 4.", 4, hierarchy.getDistance(1, 0));
+        assertEquals("Distance from 0 to 4 should be infinite.", Graph.INFINITY, hierarchy.getDistance(0, 4));
+    }
+
+    @Test
+    public void testContractionHierarchyOnRandomGraph(){
+        CSRGraph graph = randomGraph(67, 1000, 3000, 100);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        Random random = new Random(71);
+        int[] sources = new int[20], targets = new int[100];
+        for(int i = 0; i < sources.length; i++)
+            sources[i] = random.nextInt(graph.getNumNodes());
+        for(int i = 0; i < targets.length; i++)
+            targets[i] = random.nextInt(graph.getNumNodes());
+        int[][] expected = DistanceTable.manyToMany(graph, sources, targets);
+        for(int i = 0; i < sources.length; i++)
+            for(int j = 0; j < targets.length; j++){
+                int source = sources[i], dest = targets[j];
+                String pair = source + "->" + dest;
+                if(source == dest)
+                    continue; // Dijkstra looks for a cycle, the distance table does not.
+                assertEquals("The hierarchy should agree with Dijkstra on the distance of " + pair + ".", expected[i][j],
+                        hierarchy.getDistance(source, dest));
+                List<Integer> path = hierarchy.shortestPath(source, dest);
+                List<Integer> dijkstra = graph.shortestPath(source, dest);
+                assertEquals("The hierarchy should find a path for " + pair + " iff Dijkstra does.", dijkstra.isEmpty(),
+                        path.isEmpty());
+                if(path.isEmpty())
+                    continue;
+                assertEquals("The path of " + pair + " should start at the source.", Integer.valueOf(source), path.get(0));
+                assertEquals("The path of " + pair + " should end at the destination.", Integer.valueOf(dest),
+                        path.get(path.size() - 1));
+                assertEquals("The unpacked path of " + pair + " should be as long as the one of Dijkstra.",
+                        length(graph, dijkstra), length(graph, path));
+                assertEquals("The unpacked path of " + pair + " should be as long as its distance.", expected[i][j],
+                        length(graph, path));
+            }
+    }
+
+    @Test
+    public void testDistanceTable(){
+        CSRGraph graph = smallGraph();
+        int[][] all = DistanceTable.allPairs(graph);
+        assertEquals("All-pairs table should have a row per node.", graph.getNumNodes(), all.length);
+        assertArrayEquals("Distances from node 0.", new int[]{0, 2, 3, 5, Graph.INFINITY}, all[0]);
+        assertArrayEquals("Distances from the isolated node 4.", new int[]{Graph.INFINITY, Graph.INFINITY, Graph.INFINITY, Graph.INFINITY, 0}, all[4]);
+
+        int[][] some = DistanceTable.manyToMany(graph, new int[]{3, 1}, new int[]{2, 0, 2});
+        assertArrayEquals("Distances from node 3 to the targets.", new int[]{4, 1, 4}, some[0]);
+        assertArrayEquals("Distances from node 1 to the targets.", new int[]{1, 4, 1}, some[1]);
+    }
+
+    @Test
+    public void testDeltaStepping(){
+        CSRGraph graph = smallGraph();
+        int[][] all = DistanceTable.allPairs(graph);
+        for(int delta = 1; delta <= 5; delta++)
+            for(int source = 0; source < graph.getNumNodes(); source++)
+                assertArrayEquals("Delta-stepping with delta " + delta + " should agree with Dijkstra from " + source + ".",
+                        all[source], DeltaStepping.distances(graph, source, delta));
+        assertArrayEquals("The default delta should agree with Dijkstra.", all[0], DeltaStepping.distances(graph, 0));
+    }
+
+    @Test
+    public void testDeltaSteppingOnRandomGraph(){
+        CSRGraph graph = randomGraph(73, 5000, 30000, 100);
+        int[] sources = {0, 1, 2500, 4999}, targets = new int[graph.getNumNodes()];
+        for(int i = 0; i < targets.length; i++)
+            targets[i] = i;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[][] expected = DistanceTable.manyToMany(graph, sources, targets, pool);
+            // Small deltas make many small buckets; large ones make frontiers above the threshold of a single task.
+            int[] deltas = {1, 10, DeltaStepping.defaultDelta(graph), 1000, Graph.INFINITY};
+            for(int delta : deltas)
+                for(int i = 0; i < sources.length; i++)
+                    assertArrayEquals("Delta-stepping with delta " + delta + " should agree with Dijkstra from " +
+                            sources[i] + ".", expected[i], DeltaStepping.distances(graph, sources[i], delta, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDynamicShortestPaths(){
+        int numNodes = 60;
+        ObservableGraph graph = new ObservableGraph(new DeltaCSRGraph());
+        for(int i = 0; i < numNodes; i++)
+            graph.addNode();
+        Random random = new Random(61);
+        for(int i = 0; i < 3 * numNodes; i++)
+            graph.addEdge(random.nextInt(numNodes), random.nextInt(numNodes), 1 + random.nextInt(10));
+        DynamicShortestPaths paths = new DynamicShortestPaths(graph, 0);
+        int[] all = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            all[i] = i;
+        int hub = numNodes - 1; // Half the updates go to the in-edges of the hub, which get a hash index and lose it.
+        for(int update = 0; update < 500; update++){
+            int source = random.nextInt(numNodes), dest = update % 2 == 0 ? hub : random.nextInt(numNodes);
+            if(update % 3 == 0 || update >= 400)
+                graph.deleteEdge(source, dest);
+            else
+                graph.addEdge(source, dest, 1 + random.nextInt(10)); // Insertions, decreases and increases.
+            if(update % 7 == 0)
+                graph.addNode();
+            int[] expected = DistanceTable.manyToMany(graph, new int[]{0}, all)[0];
+            for(int node = 0; node < numNodes; node++){
+                assertEquals("Distance of " + node + " after update " + update + ".", expected[node], paths.distance(node));
+                List<Integer> path = paths.pathTo(node);
+                int length = 0;
+                for(int i = 0; i + 1 < path.size(); i++)
+                    length += graph.getEdgeWeight(path.get(i), path.get(i + 1));
+                if(expected[node] != Graph.INFINITY)
+                    assertEquals("The path to " + node + " should have the maintained length.", expected[node], length);
+            }
+        }
+
+        // On a chain, changing the weight of an edge close to its end should only touch the nodes after it.
+        ObservableGraph chain = new ObservableGraph(new DeltaCSRGraph());
+        for(int i = 0; i < 1000; i++)
+            chain.addNode();
+        for(int i = 0; i + 1 < 1000; i++)
+            chain.addEdge(i, i + 1, 1);
+        DynamicShortestPaths chainPaths = new DynamicShortestPaths(chain, 0);
+        chain.addEdge(996, 997, 5);
+        assertEquals("An increase should be repaired.", 1003, chainPaths.distance(999));
+        assertTrue("An increase should only touch its subtree.", chainPaths.getLastRepairSize() <= 6);
+        chain.addEdge(996, 997, 2);
+        assertEquals("A decrease should be repaired.", 1000, chainPaths.distance(999));
+        assertTrue("A decrease should only touch the improved nodes.", chainPaths.getLastRepairSize() <= 3);
+        chainPaths.detach();
+        chain.deleteEdge(0, 1);
+        assertEquals("A detached instance should not be updated.", 1000, chainPaths.distance(999));
+    }
+
+    @Test
+    public void testShortestPathCache(){
+        int numNodes = 40;
+        for(ShortestPathCache.Policy policy : ShortestPathCache.Policy.values()){
+            ObservableGraph graph = new ObservableGraph(new DeltaCSRGraph());
+            for(int i = 0; i < numNodes; i++)
+                graph.addNode();
+            Random random = new Random(67);
+            for(int i = 0; i < 4 * numNodes; i++)
+                graph.addEdge(random.nextInt(numNodes), random.nextInt(numNodes), 1 + random.nextInt(10));
+            ShortestPathCache cache = new ShortestPathCache(graph, policy, 1 << 16);
+            for(int query = 0; query < 3000; query++){
+                if(query % 50 == 0){ // Insertions, deletions, increases and decreases.
+                    int source = random.nextInt(numNodes), dest = random.nextInt(numNodes);
+                    if(random.nextBoolean())
+                        graph.deleteEdge(source, dest);
+                    else
+                        graph.addEdge(source, dest, 1 + random.nextInt(10));
+                }
+                int source = random.nextInt(8), dest = random.nextInt(8); // Heavy repetition.
+                List<Integer> path = cache.shortestPath(source, dest), expected = graph.shortestPath(source, dest);
+                assertEquals(policy + ": cached path from " + source + " to " + dest + " should have the right length.",
+                        length(graph, expected), length(graph, path));
+                assertEquals(policy + ": cached path should exist iff a path exists.", expected.isEmpty(), path.isEmpty());
+                assertTrue(policy + ": the byte budget should be respected.", cache.getBytes() <= cache.getMaxBytes());
+            }
+            assertEquals(policy + ": every query should be counted.", 3000, cache.getHits() + cache.getMisses());
+            assertTrue(policy + ": repeated queries should hit.", cache.getHits() > 1000);
+            assertTrue(policy + ": mutations should invalidate entries.", cache.getInvalidations() > 0);
+        }
+
+        // A scan of one-off queries should not flush a hot entry out of a small W-TinyLFU cache.
+        ObservableGraph chain = new ObservableGraph(new DeltaCSRGraph());
+        for(int i = 0; i < 100; i++)
+            chain.addNode();
+        for(int i = 0; i + 1 < 100; i++)
+            chain.addEdge(i, i + 1, 1);
+        ShortestPathCache cache = new ShortestPathCache(chain, ShortestPathCache.Policy.W_TINY_LFU,
+                10 * (ShortestPathCache.ENTRY_OVERHEAD + 4 * 100));
+        for(int i = 0; i < 5; i++)
+            cache.shortestPath(0, 99);
+        long hits = cache.getHits();
+        for(int round = 0; round < 4; round++){
+            for(int source = 1 + 20 * round; source <= 20 * (round + 1); source++) // More one-offs than fit at once.
+                cache.shortestPath(source, 99);
+            cache.shortestPath(0, 99);
+        }
+        assertEquals("The hot entry should survive the scan.", hits + 4, cache.getHits());
+        assertTrue("The scan should have caused evictions.", cache.getEvictions() > 0);
+    }
+
+    /* Runs shortestPath(), its A* variant and bidirectionalShortestPath() on graph from 8 threads at once, through the
+     * workspaces of graph, and checks every path against a search of reference in a workspace owned by the thread.
+     * Returns the first failure, or null. */
+    @Test
+    public void testConcurrentContractionHierarchyQueries() throws InterruptedException {
+        CSRGraph graph = randomGraph(73, 1000, 3000, 100);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        int[] nodes = new int[graph.getNumNodes()];
+        for(int i = 0; i < nodes.length; i++)
+            nodes[i] = i;
+        int[][] expected = DistanceTable.manyToMany(graph, Arrays.copyOf(nodes, 40), nodes);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++){
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random queries = new Random(seed);
+                ShortestPathWorkspace forward = new ShortestPathWorkspace(), backward = new ShortestPathWorkspace();
+                try {
+                    for(int query = 0; query < 2000; query++){
+                        int source = queries.nextInt(40); // Never dest, whose distance would be a cycle.
+                        int dest = (source + 1 + queries.nextInt(nodes.length - 1)) % nodes.length;
+                        int distance = hierarchy.getDistance(source, dest, forward, backward);
+                        if(distance != expected[source][dest])
+                            failure.set(new AssertionError("Wrong distance from " + source + " to " + dest + ": " + distance));
+                    }
+                } catch(RuntimeException e){
+                    failure.set(e);
+                }
+            });
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+        assertNull("Concurrent queries with their own workspaces should not interfere: " + failure.get(), failure.get());
+    }
+
+    @Test
+    public void testConcurrentDeltaCSRGraphSearches() throws InterruptedException {
+        CSRGraph reference = randomGraph(83, 5000, 25000, 100);
+        DeltaCSRGraph graph = new DeltaCSRGraph(reference);
+        Throwable failure = concurrentSearchFailure(graph, reference);
+        assertNull("Concurrent searches of a DeltaCSRGraph should not interfere: " + failure, failure);
+    }
+
+    @Test
+    public void testConcurrentMappedCSRGraphSearches() throws InterruptedException, IOException {
+        CSRGraph reference = randomGraph(89, 5000, 25000, 100);
+        Path file = Files.createTempFile("graph", ".csr");
+        try {
+            MappedCSRGraph.write(reference, file);
+            try(MappedCSRGraph graph = MappedCSRGraph.open(file)){
+                Throwable failure = concurrentSearchFailure(graph, reference);
+                assertNull("Concurrent searches of a read-only MappedCSRGraph should not interfere: " + failure, failure);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testConcurrentObservableGraphSearches() throws InterruptedException {
+        CSRGraph reference = randomGraph(97, 5000, 25000, 100);
+        ConcurrentGraph wrapped = new ConcurrentGraph();
+        for(int node = 0; node < reference.getNumNodes(); node++)
+            wrapped.addNode();
+        for(int node = 0; node < reference.getNumNodes(); node++){
+            int source = node;
+            reference.forEachNeighbor(node, (dest, weight) -> wrapped.addEdge(source, dest, weight));
+        }
+        Throwable failure = concurrentSearchFailure(new ObservableGraph(wrapped), reference);
+        assertNull("Concurrent searches of an ObservableGraph over a ConcurrentGraph should not interfere: " + failure,
+                failure);
+    }
+
+    private static Throwable concurrentSearchFailure(Graph graph, CSRGraph reference) throws InterruptedException {
+        int numNodes = reference.getNumNodes();
+        CSRGraph transpose = reference.transpose();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++){
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random queries = new Random(seed);
+                ShortestPathWorkspace ws = new ShortestPathWorkspace(); // Owned by this thread.
+                try {
+                    for(int query = 0; query < 300; query++){
+                        int source = queries.nextInt(numNodes); // Never dest, whose path would be a cycle.
+                        int dest = (source + 1 + queries.nextInt(numNodes - 1)) % numNodes;
+                        reference.shortestPath(source, dest, ws);
+                        int expected = ws.getDistance(dest);
+                        for(List<Integer> path : Arrays.asList(graph.shortestPath(source, dest),
+                                graph.shortestPath(source, dest, (node, target) -> 0),
+                                graph.bidirectionalShortestPath(source, dest, transpose))){
+                            if(path.isEmpty() ? expected != Graph.INFINITY : path.get(0) != source ||
+                                    path.get(path.size() - 1) != dest || length(reference, path) != expected)
+                                failure.set(new AssertionError("Wrong path from " + source + " to " + dest + ": " + path));
+                        }
+                    }
+                } catch(RuntimeException | AssertionError e){
+                    failure.set(e);
+                }
+            });
+        }
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+        return failure.get();
+    }
+
+    private static long length(Graph graph, List<Integer> path){
+        long length = 0;
+        for(int i = 0; i + 1 < path.size(); i++){
+            assertTrue("Every edge of a path should exist.", graph.edgeBetween(path.get(i), path.get(i + 1)));
+            length += graph.getEdgeWeight(path.get(i), path.get(i + 1));
+        }
+        return length;
+    }
+}
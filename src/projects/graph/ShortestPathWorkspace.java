@@ -0,0 +1,131 @@
+package projects.graph;
+
+import projects.graph.utils.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>{@link ShortestPathWorkspace} holds all the O(V) state that a shortest path search over a {@link Graph} requires: the
+ * tentative distances, the predecessors, the settled flags and an {@link IndexedMinHeap}. Allocating and zeroing those
+ * arrays for every query would cost O(V) even for searches that only touch a handful of nodes, so a workspace is instead
+ * <b>reused</b> across queries. Every array entry is tagged with the number of the search that last wrote it, so that
+ * starting a new search is an O(1) operation and entries written by previous searches are simply ignored.</p>
+ *
+ * <p>A workspace grows automatically to fit the graph it is used on, and it can be used on different graphs. It is
+ * <b>not</b> thread-safe: concurrent searches need one workspace each.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph#shortestPath(int, int, ShortestPathWorkspace)
+ * @see IndexedMinHeap
+ */
+public class ShortestPathWorkspace {
+
+    int[] dist, prev;
+    private int[] reached, settled; // reached[v] == epoch iff dist[v] and prev[v] were written by the current search.
+    private int epoch;
+    final IndexedMinHeap heap;
+
+    /**
+     * Creates an empty workspace, which will grow on first use.
+     */
+    public ShortestPathWorkspace(){
+        this(0);
+    }
+
+    /**
+     * Creates a workspace pre-sized for graphs with up to numNodes nodes.
+     * @param numNodes The number of nodes to pre-size the workspace for.
+     */
+    public ShortestPathWorkspace(int numNodes){
+        dist = new int[numNodes];
+        prev = new int[numNodes];
+        reached = new int[numNodes];
+        settled = new int[numNodes];
+        heap = new IndexedMinHeap(numNodes);
+        epoch = 0;
+    }
+
+    /* Prepares the workspace for a new search over a graph with numNodes nodes. O(1), unless the workspace needs to grow
+     * or the epoch counter wraps around. */
+    void reset(int numNodes){
+        if(numNodes > dist.length){
+            int capacity = Math.max(numNodes, dist.length + (dist.length >> 1));
+            dist = Arrays.copyOf(dist, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            reached = Arrays.copyOf(reached, capacity);
+            settled = Arrays.copyOf(settled, capacity);
+            heap.ensureCapacity(capacity);
+        }
+        heap.clear();
+        if(++epoch == Integer.MAX_VALUE){
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            epoch = 1;
+        }
+    }
+
+    /* Records a tentative distance and predecessor for node. */
+    void reach(int node, int distance, int predecessor){
+        dist[node] = distance;
+        prev[node] = predecessor;
+        reached[node] = epoch;
+    }
+
+    void settle(int node){
+        settled[node] = epoch;
+    }
+
+    boolean isReached(int node){
+        return reached[node] == epoch;
+    }
+
+    /**
+     * Queries the workspace about whether the last search settled the provided node, i.e whether its distance from
+     * the source is final.
+     * @param node The node to query about.
+     * @return <tt>true</tt> if, and only if, the last search settled node.
+     */
+    public boolean isSettled(int node){
+        return node < settled.length && settled[node] == epoch;
+    }
+
+    /**
+     * Returns the distance from the source of the last search to node, or {@link Graph#INFINITY} if the search did not
+     * reach node. The distance is only guaranteed to be final if {@link #isSettled(int)} returns true.
+     * @param node The node whose distance we want.
+     * @return The distance to node.
+     */
+    public int getDistance(int node){
+        return node < reached.length && reached[node] == epoch ? dist[node] : Graph.INFINITY;
+    }
+
+    /**
+     * Returns the predecessor of node in the shortest path tree of the last search, or -1 if node is the source or was
+     * not reached.
+     * @param node The node whose predecessor we want.
+     * @return The predecessor of node.
+     */
+    public int getPredecessor(int node){
+        return node < reached.length && reached[node] == epoch ? prev[node] : -1;
+    }
+
+    /* Follows the predecessors from dest back to source. The loop always runs at least once, so that a cycle through
+     * source is reconstructed correctly when source == dest. */
+    List<Integer> pathTo(int source, int dest){
+        if(!isSettled(dest))
+            return new ArrayList<>();
+        List<Integer> path = new ArrayList<>();
+        path.add(dest);
+        int node = dest;
+        do {
+            node = prev[node];
+            path.add(node);
+        } while(node != source);
+        Collections.reverse(path);
+        return path;
+    }
+}
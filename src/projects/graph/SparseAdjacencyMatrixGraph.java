@@ -1,5 +1,6 @@
 package projects.graph;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -31,6 +32,7 @@ import java.util.Set;
  * @see Graph
  * @see AdjacencyMatrixGraph
  * @see AdjacencyListGraph
+ * @see IndexedSparseAdjacencyMatrixGraph
  */
 public class SparseAdjacencyMatrixGraph extends Graph {
 
@@ -131,6 +133,19 @@ public class SparseAdjacencyMatrixGraph extends Graph {
         throw UNIMPL_METHOD;
     }
 
+    /**
+     * Visits the edges of the list whose source is node, in list order. Like {@link #getNeighbors(int)}, this is an O(E)
+     * operation, but it neither boxes the neighbors nor looks up their weights again.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        for(EdgeData e : list)
+            if(e.source == node)
+                visitor.visit(e.dest, e.weight);
+    }
+
     /* Methods specific to this class follow. */
 
     /**
@@ -163,4 +178,31 @@ public class SparseAdjacencyMatrixGraph extends Graph {
     public AdjacencyListGraph toAdjacencyListGraph(){
         throw UNIMPL_METHOD;
     }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}. Since the list is unordered, this is a
+     * counting sort of the list's elements on their source node, followed by a sort of every row on the target node.
+     * This is an O(V + E log(deg)) operation.
+     *
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        int numNodes = getNumNodes();
+        int[] offsets = new int[numNodes + 1];
+        for(EdgeData e : list)
+            offsets[e.source + 1]++;
+        for(int i = 0; i < numNodes; i++)
+            offsets[i + 1] += offsets[i];
+        int[] cursor = Arrays.copyOf(offsets, numNodes);
+        int[] targets = new int[offsets[numNodes]], weights = new int[offsets[numNodes]];
+        for(EdgeData e : list){
+            int edge = cursor[e.source]++;
+            targets[edge] = e.dest;
+            weights[edge] = e.weight;
+        }
+        for(int i = 0; i < numNodes; i++)
+            CSRGraph.sortRow(targets, weights, offsets[i], offsets[i + 1]);
+        return new CSRGraph(offsets, targets, weights);
+    }
 }
\ No newline at end of file
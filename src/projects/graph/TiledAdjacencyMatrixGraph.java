@@ -0,0 +1,254 @@
+package projects.graph;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>{@link TiledAdjacencyMatrixGraph} is a {@link Graph} implemented as an adjacency matrix that is split into square
+ * <b>tiles</b> of {@link #TILE_SIZE} x {@link #TILE_SIZE} cells. Every tile is a single flat <tt>int</tt> array in row-major
+ * order, and the tiles themselves are referenced from a square tile index, so that M(i, j) lives in cell
+ * (i mod {@link #TILE_SIZE}, j mod {@link #TILE_SIZE}) of tile (i / {@link #TILE_SIZE}, j / {@link #TILE_SIZE}).</p>
+ *
+ * <p>Compared to the int[][] of {@link AdjacencyMatrixGraph}, whose addNode() re-allocates and copies the whole matrix
+ * in O(V^2) time, this layout has the following advantages:</p>
+ *  <ol>
+ *      <li>{@link #addNode()} never copies cells. New nodes fall into tiles that already exist or that have not been
+ *      allocated yet, and the tile index doubles its side when it runs out of room, which only copies O((V / {@link #TILE_SIZE})^2)
+ *      references. Growth is therefore amortized O(V / {@link #TILE_SIZE}) per node.</li>
+ *      <li>Tiles are allocated <b>lazily</b>, on the first edge that falls into them, so all-zero blocks of the matrix
+ *      occupy no memory.</li>
+ *      <li>Row scans ({@link #forEachNeighbor(int, NeighborVisitor)}) read {@link #TILE_SIZE} contiguous cells per tile, while
+ *      column scans ({@link #forEachPredecessor(int, NeighborVisitor)}) read cells that are {@link #TILE_SIZE} cells
+ *      apart within the same tile, instead of a whole matrix row apart. Both skip unallocated tiles entirely.</li>
+ *  </ol>
+ *
+ * <p>{@link #edgeBetween(int, int)}, {@link #getEdgeWeight(int, int)}, {@link #addEdge(int, int, int)} and
+ * {@link #deleteEdge(int, int)} remain O(1) operations. Bulk loads of a known number of nodes should use
+ * {@link #TiledAdjacencyMatrixGraph(int)}, which sizes the tile index up-front.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see AdjacencyMatrixGraph
+ */
+public class TiledAdjacencyMatrixGraph extends Graph {
+
+    private static final int TILE_BITS = 6;
+
+    /**
+     * The number of rows and columns of every tile.
+     */
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private int[][] tiles; // side x side tile references, in row-major order. A null tile is all zeroes.
+    private int side;
+    private int numNodes, numEdges;
+
+    /**
+     * Creates an empty {@link TiledAdjacencyMatrixGraph}.
+     */
+    public TiledAdjacencyMatrixGraph(){
+        this(0);
+    }
+
+    /**
+     * Creates an empty {@link TiledAdjacencyMatrixGraph} whose tile index has room for capacity nodes, so that the first
+     * capacity calls to {@link #addNode()} never grow it.
+     * @param capacity The number of nodes to pre-size the graph for.
+     * @throws RuntimeException if capacity &lt; 0.
+     */
+    public TiledAdjacencyMatrixGraph(int capacity){
+        if(capacity < 0)
+            throw new RuntimeException("TiledAdjacencyMatrixGraph::TiledAdjacencyMatrixGraph(): Negative capacity " +
+                    capacity + " provided.");
+        side = Math.max(1, (capacity + TILE_MASK) >>> TILE_BITS);
+        tiles = new int[side * side][];
+        numNodes = numEdges = 0;
+    }
+
+    @Override
+    public void addNode() {
+        if(numNodes >> TILE_BITS == side)
+            growIndex(2 * side);
+        numNodes++;
+    }
+
+    @Override
+    public void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("TiledAdjacencyMatrixGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("TiledAdjacencyMatrixGraph::addEdge(): Edge " + source + "->" + dest + " is out of bounds.");
+        set(source, dest, weight);
+    }
+
+    /**
+     * Adds a batch of edges in a single pass, after checking the whole batch once.
+     * @param sources The source node of every edge.
+     * @param dests The sink node of every edge.
+     * @param weights The weight of every edge.
+     * @throws RuntimeException if the arrays differ in length, a node is out of bounds or a weight is negative.
+     */
+    @Override
+    public void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("TiledAdjacencyMatrixGraph::addEdges()", numNodes, sources, dests, weights);
+        for(int i = 0; i < sources.length; i++)
+            set(sources[i], dests[i], weights[i]);
+    }
+
+    @Override
+    public void deleteEdges(int[] sources, int[] dests) {
+        if(sources.length != dests.length)
+            throw new RuntimeException("TiledAdjacencyMatrixGraph::deleteEdges(): The arrays of the batch differ in length.");
+        for(int i = 0; i < sources.length; i++)
+            if(contains(sources[i]) && contains(dests[i]))
+                set(sources[i], dests[i], 0);
+    }
+
+    /* Writes a cell, allocating its tile if needed, and keeps the edge count up to date. */
+    private void set(int source, int dest, int weight){
+        int tileIndex = (source >>> TILE_BITS) * side + (dest >>> TILE_BITS);
+        int[] tile = tiles[tileIndex];
+        if(tile == null){
+            if(weight == 0)
+                return;
+            tiles[tileIndex] = tile = new int[TILE_SIZE * TILE_SIZE];
+        }
+        int cell = ((source & TILE_MASK) << TILE_BITS) | (dest & TILE_MASK);
+        if(tile[cell] == 0 && weight != 0)
+            numEdges++;
+        else if(tile[cell] != 0 && weight == 0)
+            numEdges--;
+        tile[cell] = weight;
+    }
+
+    @Override
+    public void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            addEdge(source, dest, 0);
+    }
+
+    @Override
+    public boolean edgeBetween(int source, int dest) {
+        return getEdgeWeight(source, dest) != 0;
+    }
+
+    @Override
+    public int getEdgeWeight(int source, int dest) {
+        if(!contains(source) || !contains(dest))
+            return 0;
+        int[] tile = tiles[(source >>> TILE_BITS) * side + (dest >>> TILE_BITS)];
+        return tile == null ? 0 : tile[((source & TILE_MASK) << TILE_BITS) | (dest & TILE_MASK)];
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits the row of node, in ascending column order, skipping unallocated tiles. This is an O(V) operation that
+     * allocates nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        int rowOfTiles = (node >>> TILE_BITS) * side, rowInTile = (node & TILE_MASK) << TILE_BITS;
+        int usedTiles = (numNodes + TILE_MASK) >>> TILE_BITS;
+        for(int t = 0; t < usedTiles; t++){
+            int[] tile = tiles[rowOfTiles + t];
+            if(tile == null)
+                continue;
+            int firstColumn = t << TILE_BITS;
+            for(int j = 0; j < TILE_SIZE; j++)
+                if(tile[rowInTile + j] != 0)
+                    visitor.visit(firstColumn + j, tile[rowInTile + j]);
+        }
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public void clear() {
+        side = 1;
+        tiles = new int[1][];
+        numNodes = numEdges = 0;
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Visits the column of node, i.e all the edges that point <b>to</b> node, in ascending row order, skipping
+     * unallocated tiles. This is an O(V) operation that allocates nothing.
+     * @param node The node whose in-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call with the source and the weight of every in-edge.
+     */
+    public void forEachPredecessor(int node, NeighborVisitor visitor){
+        int columnOfTiles = node >>> TILE_BITS, columnInTile = node & TILE_MASK;
+        int usedTiles = (numNodes + TILE_MASK) >>> TILE_BITS;
+        for(int t = 0; t < usedTiles; t++){
+            int[] tile = tiles[t * side + columnOfTiles];
+            if(tile == null)
+                continue;
+            int firstRow = t << TILE_BITS;
+            for(int i = 0; i < TILE_SIZE; i++){
+                int weight = tile[(i << TILE_BITS) | columnInTile];
+                if(weight != 0)
+                    visitor.visit(firstRow + i, weight);
+            }
+        }
+    }
+
+    /**
+     * Returns the transpose of this graph, built through column scans in O(V^2 / {@link #TILE_SIZE}^2 + A) time,
+     * where A is the number of cells in allocated tiles. Like {@link #toCSRGraph()}, blocks of columns are scanned in
+     * parallel.
+     * @return The transpose of this graph.
+     */
+    @Override
+    public CSRGraph transpose(){
+        return toCSRGraph(true);
+    }
+
+    /**
+     * Returns a representation of the {@link Graph} as a {@link CSRGraph}, built through row scans. Blocks of rows are
+     * scanned in parallel on the common {@link ForkJoinPool} and then concatenated in row-major order.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return toCSRGraph(false);
+    }
+
+    private CSRGraph toCSRGraph(boolean transposed){
+        // Both scans visit their cells in ascending order, so the rows come out sorted.
+        return CSRGraph.fromRowScans(numNodes, numEdges, transposed ? this::forEachPredecessor : this::forEachNeighbor, true,
+                ForkJoinPool.commonPool());
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    private void growIndex(int newSide){
+        int[][] newTiles = new int[newSide * newSide][];
+        for(int t = 0; t < side; t++)
+            System.arraycopy(tiles, t * side, newTiles, t * newSide, side);
+        tiles = newTiles;
+        side = newSide;
+    }
+}
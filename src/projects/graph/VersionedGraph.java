@@ -0,0 +1,423 @@
+package projects.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>{@link VersionedGraph} is a mutable {@link Graph} that hands out cheap, immutable {@link Snapshot}s of itself, so
+ * that long-running analytics, like a full {@link #shortestPath(int, int)} or a count of components, can run against a
+ * consistent version of the graph while its edges keep changing. Every node owns a <b>row</b>, the targets of its
+ * out-edges in ascending order and their weights, and the rows are grouped into blocks of {@link #BLOCK_SIZE} nodes.
+ * Rows and blocks are <b>copy-on-write</b>:</p>
+ * <ul>
+ *     <li>Every row and every block is stamped with the version in which it was created. {@link #snapshot()} copies only
+ *     the (V / {@link #BLOCK_SIZE})-long array of blocks, and then advances the version of the graph, so the rows and
+ *     blocks that the {@link Snapshot} references can never be written to again.</li>
+ *     <li>The first mutation of a row after a snapshot copies it, along with the block that holds it, and every later
+ *     mutation until the next snapshot modifies the copy in place. So a snapshot costs O(V / {@link #BLOCK_SIZE})
+ *     time, and the mutations that follow it pay O(deg) for every node that they touch, while all other rows remain
+ *     shared between the graph and all of its snapshots.</li>
+ *     <li>A row or block that no {@link Snapshot} references any more is simply garbage collected, so old versions are
+ *     reclaimed as soon as the last snapshot that uses them becomes unreachable.</li>
+ * </ul>
+ * <p>All public methods of {@link VersionedGraph} are thread-safe, and they are serialized with each other. A
+ * {@link Snapshot} is immutable, so any number of threads can read it without any synchronization at all, and readers of
+ * snapshots never block writers of the graph, nor each other. This includes the shortest path methods of {@link Graph}
+ * that do not take a {@link ShortestPathWorkspace}: both classes keep one workspace per thread for them.</p>
+ *
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ *
+ * @see Graph
+ * @see ConcurrentGraph
+ * @see CSRGraph
+ */
+public class VersionedGraph extends Graph {
+
+    /**
+     * The number of nodes per block of rows.
+     */
+    public static final int BLOCK_SIZE = 256;
+
+    private static final int BLOCK_BITS = Integer.numberOfTrailingZeros(BLOCK_SIZE);
+
+    /* The out-edges of a node. Only ever written to while its version is the version of the graph. */
+    static class Row {
+        final long version;
+        int[] targets, weights;
+        int size;
+
+        Row(long version, int[] targets, int[] weights, int size){
+            this.version = version;
+            this.targets = targets;
+            this.weights = weights;
+            this.size = size;
+        }
+
+        int indexOf(int dest){
+            return Arrays.binarySearch(targets, 0, size, dest);
+        }
+    }
+
+    /* BLOCK_SIZE consecutive rows. Only ever written to while its version is the version of the graph. */
+    private static class Block {
+        final long version;
+        final Row[] rows;
+
+        Block(long version, Row[] rows){
+            this.version = version;
+            this.rows = rows;
+        }
+    }
+
+    private static final Row EMPTY_ROW = new Row(-1, new int[0], new int[0], 0); // Shared by every node without edges.
+
+    private Block[] blocks = new Block[4];
+    private int numNodes, numEdges;
+    private long version;
+    private Snapshot latest; // The last snapshot, if nothing changed since it was taken.
+    private final ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new),
+            reverseWorkspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new);
+
+    /**
+     * Creates an empty {@link VersionedGraph}.
+     */
+    public VersionedGraph(){
+        // Nothing to initialize.
+    }
+
+    @Override
+    public synchronized void addNode() {
+        int block = numNodes >>> BLOCK_BITS;
+        if(block == blocks.length)
+            blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+        if(blocks[block] == null){ // Otherwise, the row of the new node is already an empty row.
+            Row[] rows = new Row[BLOCK_SIZE];
+            Arrays.fill(rows, EMPTY_ROW);
+            blocks[block] = new Block(version, rows);
+        }
+        numNodes++;
+        latest = null;
+    }
+
+    @Override
+    public synchronized void addEdge(int source, int dest, int weight) {
+        if(weight < 0)
+            throw new RuntimeException("VersionedGraph::addEdge(): Negative weight " + weight + " provided.");
+        if(!contains(source) || !contains(dest))
+            throw new RuntimeException("VersionedGraph::addEdge(): Edge " + source + "->" + dest + " is out of bounds.");
+        set(source, dest, weight);
+    }
+
+    @Override
+    public synchronized void deleteEdge(int source, int dest) {
+        if(contains(source) && contains(dest))
+            set(source, dest, 0);
+    }
+
+    @Override
+    public synchronized void addEdges(int[] sources, int[] dests, int[] weights) {
+        checkBatch("VersionedGraph::addEdges()", numNodes, sources, dests, weights);
+        for(int i = 0; i < sources.length; i++)
+            set(sources[i], dests[i], weights[i]);
+    }
+
+    @Override
+    public synchronized boolean edgeBetween(int source, int dest) {
+        return contains(source) && row(blocks, source).indexOf(dest) >= 0;
+    }
+
+    @Override
+    public synchronized int getEdgeWeight(int source, int dest) {
+        if(!contains(source))
+            return 0;
+        Row row = row(blocks, source);
+        int index = row.indexOf(dest);
+        return index >= 0 ? row.weights[index] : 0;
+    }
+
+    @Override
+    public Set<Integer> getNeighbors(int node) {
+        Set<Integer> neighbors = new HashSet<>();
+        forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+        return neighbors;
+    }
+
+    /**
+     * Visits the out-edges of node, in ascending order of target node, as of the time of the call. The row is copied
+     * under the lock of the graph and visited without it, so the visitor may freely call other methods of the graph,
+     * including mutators. Traversals of the whole graph should rather run over a {@link #snapshot()}, which copies
+     * nothing.
+     * @param node The node whose out-edges we want to visit.
+     * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+     */
+    @Override
+    public void forEachNeighbor(int node, NeighborVisitor visitor) {
+        int[] targets, weights;
+        synchronized (this){
+            if(!contains(node))
+                return;
+            Row row = row(blocks, node);
+            targets = Arrays.copyOf(row.targets, row.size);
+            weights = Arrays.copyOf(row.weights, row.size);
+        }
+        for(int i = 0; i < targets.length; i++)
+            visitor.visit(targets[i], weights[i]);
+    }
+
+    @Override
+    public synchronized int getNumNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public synchronized int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public synchronized void clear() {
+        blocks = new Block[4]; // Existing snapshots keep their own copy of the old blocks.
+        numNodes = numEdges = 0;
+        version++;
+        latest = null;
+    }
+
+    /* Methods specific to this class follow. */
+
+    /**
+     * Returns an immutable {@link Snapshot} of the current version of the graph. This costs O(V / {@link #BLOCK_SIZE})
+     * time, or O(1) if the graph has not changed since the last snapshot, in which case that snapshot is returned
+     * again.
+     * @return A {@link Snapshot} of the graph.
+     */
+    public synchronized Snapshot snapshot(){
+        if(latest == null){
+            latest = new Snapshot(Arrays.copyOf(blocks, (numNodes + BLOCK_SIZE - 1) >>> BLOCK_BITS), numNodes, numEdges,
+                    version);
+            version++; // Freezes every row and block that the snapshot can reach.
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the version of the graph, which is advanced by every {@link #snapshot()} that follows a mutation, and by
+     * {@link #clear()}.
+     * @return The version of the graph.
+     */
+    public synchronized long getVersion(){
+        return version;
+    }
+
+    /**
+     * Returns a representation of the current version of the {@link Graph} as a {@link CSRGraph}, built out of a
+     * {@link Snapshot}, without holding the lock of the graph.
+     * @return A {@link CSRGraph} instance.
+     */
+    @Override
+    public CSRGraph toCSRGraph(){
+        return snapshot().toCSRGraph();
+    }
+
+    /* One workspace per thread, so that the shortest path methods of Graph are thread-safe too. */
+    @Override
+    ShortestPathWorkspace searchWorkspace(){
+        return workspaces.get();
+    }
+
+    @Override
+    ShortestPathWorkspace reverseSearchWorkspace(){
+        return reverseWorkspaces.get();
+    }
+
+    private boolean contains(int node){
+        return node >= 0 && node < numNodes;
+    }
+
+    private static Row row(Block[] blocks, int node){
+        return blocks[node >>> BLOCK_BITS].rows[node & (BLOCK_SIZE - 1)];
+    }
+
+    private Block writableBlock(int block){
+        Block current = blocks[block];
+        if(current.version != version)
+            blocks[block] = current = new Block(version, current.rows.clone());
+        return current;
+    }
+
+    /* Sets the weight of source->dest, copying its row and block first if a snapshot may share them. */
+    private void set(int source, int dest, int weight){
+        Row row = row(blocks, source);
+        int index = row.indexOf(dest);
+        if(index < 0 && weight == 0)
+            return; // Deleting a missing edge should not copy anything.
+        if(row.version != version){
+            Block block = writableBlock(source >>> BLOCK_BITS);
+            int capacity = index < 0 ? Math.max(4, row.size + 1 + (row.size >>> 2)) : row.targets.length;
+            row = new Row(version, Arrays.copyOf(row.targets, capacity), Arrays.copyOf(row.weights, capacity), row.size);
+            block.rows[source & (BLOCK_SIZE - 1)] = row;
+        }
+        latest = null;
+        if(index >= 0){
+            if(weight != 0){
+                row.weights[index] = weight;
+                return;
+            }
+            System.arraycopy(row.targets, index + 1, row.targets, index, row.size - index - 1);
+            System.arraycopy(row.weights, index + 1, row.weights, index, row.size - index - 1);
+            row.size--;
+            numEdges--;
+            return;
+        }
+        int insertion = -index - 1;
+        if(row.size == row.targets.length){
+            row.targets = Arrays.copyOf(row.targets, Math.max(4, 2 * row.size));
+            row.weights = Arrays.copyOf(row.weights, row.targets.length);
+        }
+        System.arraycopy(row.targets, insertion, row.targets, insertion + 1, row.size - insertion);
+        System.arraycopy(row.weights, insertion, row.weights, insertion + 1, row.size - insertion);
+        row.targets[insertion] = dest;
+        row.weights[insertion] = weight;
+        row.size++;
+        numEdges++;
+    }
+
+    /**
+     * <p>An immutable version of a {@link VersionedGraph}, returned by {@link VersionedGraph#snapshot()}. It shares every
+     * row that has not changed since with the graph and with the other snapshots, and it is safe to read from any
+     * number of threads without synchronization. Like {@link CSRGraph}, its mutators all throw an
+     * {@link UnsupportedOperationException}.</p>
+     *
+     * @see VersionedGraph
+     */
+    public static class Snapshot extends Graph {
+
+        private final Block[] blocks;
+        private final int numNodes, numEdges;
+        private final long version;
+        private final ThreadLocal<ShortestPathWorkspace> workspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new),
+                reverseWorkspaces = ThreadLocal.withInitial(ShortestPathWorkspace::new);
+
+        private Snapshot(Block[] blocks, int numNodes, int numEdges, long version){
+            this.blocks = blocks;
+            this.numNodes = numNodes;
+            this.numEdges = numEdges;
+            this.version = version;
+        }
+
+        @Override
+        public void addNode() {
+            throw new UnsupportedOperationException("Snapshot::addNode(): Snapshot instances are immutable.");
+        }
+
+        @Override
+        public void addEdge(int source, int dest, int weight) {
+            throw new UnsupportedOperationException("Snapshot::addEdge(): Snapshot instances are immutable.");
+        }
+
+        @Override
+        public void deleteEdge(int source, int dest) {
+            throw new UnsupportedOperationException("Snapshot::deleteEdge(): Snapshot instances are immutable.");
+        }
+
+        @Override
+        public void addEdges(int[] sources, int[] dests, int[] weights) {
+            throw new UnsupportedOperationException("Snapshot::addEdges(): Snapshot instances are immutable.");
+        }
+
+        @Override
+        public void deleteEdges(int[] sources, int[] dests) {
+            throw new UnsupportedOperationException("Snapshot::deleteEdges(): Snapshot instances are immutable.");
+        }
+
+        @Override
+        public boolean edgeBetween(int source, int dest) {
+            return contains(source) && row(source).indexOf(dest) >= 0;
+        }
+
+        @Override
+        public int getEdgeWeight(int source, int dest) {
+            if(!contains(source))
+                return 0;
+            Row row = row(source);
+            int index = row.indexOf(dest);
+            return index >= 0 ? row.weights[index] : 0;
+        }
+
+        @Override
+        public Set<Integer> getNeighbors(int node) {
+            Set<Integer> neighbors = new HashSet<>();
+            forEachNeighbor(node, (neighbor, weight) -> neighbors.add(neighbor));
+            return neighbors;
+        }
+
+        /**
+         * Visits the row of node, in ascending order of target node. This is an O(deg(node)) scan of two contiguous
+         * arrays, which allocates nothing.
+         * @param node The node whose out-edges we want to visit.
+         * @param visitor The {@link NeighborVisitor} to call for every out-edge.
+         */
+        @Override
+        public void forEachNeighbor(int node, NeighborVisitor visitor) {
+            if(!contains(node))
+                return;
+            Row row = row(node);
+            for(int i = 0; i < row.size; i++)
+                visitor.visit(row.targets[i], row.weights[i]);
+        }
+
+        @Override
+        public int getNumNodes() {
+            return numNodes;
+        }
+
+        @Override
+        public int getNumEdges() {
+            return numEdges;
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Snapshot::clear(): Snapshot instances are immutable.");
+        }
+
+        /**
+         * Returns the version of the {@link VersionedGraph} that this snapshot captured.
+         * @return The version of the snapshot.
+         */
+        public long getVersion(){
+            return version;
+        }
+
+        /**
+         * Returns a representation of the snapshot as a {@link CSRGraph}. Since the rows are already sorted, this is an
+         * O(V + E) operation.
+         * @return A {@link CSRGraph} instance.
+         */
+        @Override
+        public CSRGraph toCSRGraph(){
+            return CSRGraph.fromRowScans(numNodes, numEdges, this::forEachNeighbor, true, ForkJoinPool.commonPool());
+        }
+
+        /* One workspace per thread, so that any number of threads can search the same snapshot. */
+        @Override
+        ShortestPathWorkspace searchWorkspace(){
+            return workspaces.get();
+        }
+
+        @Override
+        ShortestPathWorkspace reverseSearchWorkspace(){
+            return reverseWorkspaces.get();
+        }
+
+        /* The row of node, shared with the graph and other snapshots. Package-private for tests. */
+        Row row(int node){
+            return VersionedGraph.row(blocks, node);
+        }
+
+        private boolean contains(int node){
+            return node >= 0 && node < numNodes;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package projects.graph.clients;
+
+import projects.graph.CSRGraph;
+import projects.graph.DeltaStepping;
+import projects.graph.DistanceTable;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/** <p>DeltaSteppingTimingClient compares {@link DeltaStepping} with the sequential Dijkstra's algorithm of
+ * {@link projects.graph.Graph} in the task of computing the distances from one source to all nodes of a random sparse
+ * {@link CSRGraph}, for several values of delta and several pool sizes.</p>
+ * <p>Usage: <tt>DeltaSteppingTimingClient [numNodes] [averageDegree] [maxWeight]</tt></p>
+ * @author <a href ="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ */
+public class DeltaSteppingTimingClient {
+
+    private static Random r = new Random(47);
+    private static final int NUM_RUNS = 5;
+
+    /**
+     * <p>Runner method.</p>
+     * @param args  cmd args
+     */
+    public static void main(String[] args){
+        int numNodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int averageDegree = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int maxWeight = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        CSRGraph g = randomGraph(numNodes, averageDegree, maxWeight);
+        int[] allNodes = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            allNodes[i] = i;
+        System.out.println("Random graph with " + g.getNumNodes() + " nodes and " + g.getNumEdges() + " edges.");
+
+        int[] expected = null;
+        long startingMillis = System.currentTimeMillis();
+        for(int i = 0; i < NUM_RUNS; i++)
+            expected = DistanceTable.manyToMany(g, new int[]{0}, allNodes)[0];
+        long endingMillis = System.currentTimeMillis();
+        System.out.println("Sequential Dijkstra: " + (endingMillis - startingMillis) / NUM_RUNS + " ms per source.");
+
+        int defaultDelta = DeltaStepping.defaultDelta(g);
+        int[] deltas = {1, defaultDelta / 4, defaultDelta, 4 * defaultDelta, maxWeight};
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] parallelisms = cores == 1 ? new int[]{1} : new int[]{1, cores};
+        for(int parallelism : parallelisms){
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            for(int delta : deltas){
+                if(delta < 1)
+                    continue;
+                int[] actual = null;
+                startingMillis = System.currentTimeMillis();
+                for(int i = 0; i < NUM_RUNS; i++)
+                    actual = DeltaStepping.distances(g, 0, delta, pool);
+                endingMillis = System.currentTimeMillis();
+                System.out.println("Delta-stepping with delta = " + delta + (delta == defaultDelta ? " (default)" : "")
+                        + " on " + parallelism + " thread(s): " + (endingMillis - startingMillis) / NUM_RUNS
+                        + " ms per source." + (Arrays.equals(expected, actual) ? "" : " WRONG DISTANCES!"));
+            }
+            pool.shutdown();
+        }
+    }
+
+    private static CSRGraph randomGraph(int numNodes, int averageDegree, int maxWeight){
+        int numEdges = numNodes * averageDegree;
+        int[] sources = new int[numEdges], dests = new int[numEdges], weights = new int[numEdges];
+        for(int i = 0; i < numEdges; i++){
+            sources[i] = i / averageDegree;
+            dests[i] = r.nextInt(numNodes);
+            weights[i] = 1 + r.nextInt(maxWeight);
+        }
+        return CSRGraph.fromEdges(numNodes, sources, dests, weights);
+    }
+}
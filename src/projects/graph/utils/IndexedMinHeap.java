@@ -0,0 +1,206 @@
+package projects.graph.utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>{@link IndexedMinHeap} is a binary min-heap over <b>int</b> ids in the range [0, capacity), each associated with an
+ * <b>int</b> key. Besides the usual insertion and extraction of the minimum, it supports {@link #decreaseKey(int, int)}
+ * in O(log n) time, since it keeps track of the position of every id within the heap. This is exactly the priority queue
+ * that Dijkstra's algorithm needs, and it involves no boxing and no per-element allocation whatsoever.</p>
+ *
+ * <p>{@link #clear()} only costs O(n), where n is the number of elements <b>currently</b> in the heap, so an instance can be
+ * reused across many searches over a large id space without paying for the entire capacity every time.</p>
+ *
+ * @author <a href="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ */
+public class IndexedMinHeap {
+
+    private int[] heap;      // heap[i] is the id stored at position i of the heap.
+    private int[] keys;      // keys[id] is the key of id, meaningful only while id is in the heap.
+    private int[] positions; // positions[id] is the position of id in the heap, or -1 if id is not in the heap.
+    private int size;
+
+    /**
+     * Creates a heap for ids in [0, capacity).
+     * @param capacity The initial capacity of the id space.
+     */
+    public IndexedMinHeap(int capacity){
+        heap = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    /**
+     * Grows the id space so that it includes [0, capacity). Has no effect if the heap is already large enough.
+     * @param capacity The requested capacity of the id space.
+     */
+    public void ensureCapacity(int capacity){
+        int old = positions.length;
+        if(capacity > old){
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old, capacity, -1);
+        }
+    }
+
+    /**
+     * Queries the heap about its size.
+     * @return The number of ids currently in the heap.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Queries the heap about emptiness.
+     * @return <tt>true</tt> if, and only if, the heap contains no ids.
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Queries the heap about the existence of an id.
+     * @param id The id to look for.
+     * @return <tt>true</tt> if, and only if, id is currently in the heap.
+     */
+    public boolean contains(int id){
+        return positions[id] >= 0;
+    }
+
+    /**
+     * Returns the key associated with an id currently in the heap.
+     * @param id The id whose key we want.
+     * @return The key of id.
+     * @throws NoSuchElementException if id is not in the heap.
+     */
+    public int getKey(int id){
+        if(!contains(id))
+            throw new NoSuchElementException("IndexedMinHeap::getKey(): Id " + id + " is not in the heap.");
+        return keys[id];
+    }
+
+    /**
+     * Inserts id with the given key if it is not in the heap, or lowers its key if the given key is smaller than its
+     * current one. Otherwise, has no effect.
+     * @param id The id to insert or update.
+     * @param key The new key of id.
+     * @return <tt>true</tt> if, and only if, the heap was modified.
+     */
+    public boolean insertOrDecrease(int id, int key){
+        if(!contains(id)){
+            insert(id, key);
+            return true;
+        }
+        if(key < keys[id]){
+            decreaseKey(id, key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts id with the given key.
+     * @param id The id to insert.
+     * @param key The key of id.
+     * @throws IllegalStateException if id is already in the heap.
+     */
+    public void insert(int id, int key){
+        if(contains(id))
+            throw new IllegalStateException("IndexedMinHeap::insert(): Id " + id + " is already in the heap.");
+        keys[id] = key;
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the key of an id that is already in the heap.
+     * @param id The id whose key we want to lower.
+     * @param key The new key, which should not be greater than the current one.
+     * @throws NoSuchElementException if id is not in the heap.
+     * @throws IllegalArgumentException if key is greater than the current key of id.
+     */
+    public void decreaseKey(int id, int key){
+        if(!contains(id))
+            throw new NoSuchElementException("IndexedMinHeap::decreaseKey(): Id " + id + " is not in the heap.");
+        if(key > keys[id])
+            throw new IllegalArgumentException("IndexedMinHeap::decreaseKey(): New key " + key + " is greater than " + keys[id] + ".");
+        keys[id] = key;
+        siftUp(positions[id]);
+    }
+
+    /**
+     * Returns the minimum key in the heap, without removing anything.
+     * @return The minimum key.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public int peekKey(){
+        if(size == 0)
+            throw new NoSuchElementException("IndexedMinHeap::peekKey(): Heap is empty.");
+        return keys[heap[0]];
+    }
+
+    /**
+     * Removes and returns the id with the minimum key.
+     * @return The id with the minimum key.
+     * @throws NoSuchElementException if the heap is empty.
+     */
+    public int extractMin(){
+        if(size == 0)
+            throw new NoSuchElementException("IndexedMinHeap::extractMin(): Heap is empty.");
+        int min = heap[0];
+        positions[min] = -1;
+        if(--size > 0){
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Empties the heap in O(n) time, where n is the number of ids currently in the heap.
+     */
+    public void clear(){
+        for(int i = 0; i < size; i++)
+            positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int position){
+        int id = heap[position], key = keys[id];
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(keys[heap[parent]] <= key)
+                break;
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void siftDown(int position){
+        int id = heap[position], key = keys[id];
+        while(true){
+            int child = 2 * position + 1;
+            if(child >= size)
+                break;
+            if(child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+                child++;
+            if(keys[heap[child]] >= key)
+                break;
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+}
@@ -0,0 +1,168 @@
+package projects.graph.utils;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link IntIntHashMap} is a hash map from <b>non-negative</b> <tt>int</tt> keys to <tt>int</tt> values, which avoids
+ * the boxing, the entry objects and the pointer chasing of a {@link java.util.HashMap}&lt;Integer, Integer&gt;. Keys and
+ * values are stored in two parallel arrays whose length is a power of two, and collisions are resolved with
+ * <b>open addressing</b> and <b>linear probing</b>: a key that hashes to an occupied slot is stored in the next free one.</p>
+ *
+ * <p>The table is kept at most half full, so that an unsuccessful search only probes a couple of slots on average.
+ * Removals use <b>backward-shift deletion</b> instead of tombstones: the entries that follow the removed one in its probe
+ * run are moved back, so the table never fills up with deleted slots.</p>
+ *
+ * @author <a href="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see IntNeighborList
+ */
+public class IntIntHashMap {
+
+    private static final int FREE = -1; // Keys are non-negative, so a negative key marks a free slot.
+
+    private int[] keys, values;
+    private int mask, size;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty map which can hold expectedSize keys without growing.
+     *
+     * @param expectedSize The number of keys to pre-size the map for.
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * expectedSize - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Returns the value associated with key, or defaultValue if key is not in the map.
+     *
+     * @param key          A non-negative key.
+     * @param defaultValue The value to return if key is not in the map.
+     * @return The value associated with key, or defaultValue.
+     */
+    public int get(int key, int defaultValue) {
+        for (int slot = hash(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return values[slot];
+        return defaultValue;
+    }
+
+    /**
+     * Queries the map about whether it contains key.
+     *
+     * @param key A non-negative key.
+     * @return <tt>true</tt> if, and only if, key is in the map.
+     */
+    public boolean containsKey(int key) {
+        for (int slot = hash(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return true;
+        return false;
+    }
+
+    /**
+     * Associates key with value, replacing any previous value.
+     *
+     * @param key   A non-negative key.
+     * @param value The value to associate key with.
+     * @throws RuntimeException if key is negative.
+     */
+    public void put(int key, int value) {
+        if (key < 0)
+            throw new RuntimeException("IntIntHashMap::put(): Keys should be non-negative, was: " + key + ".");
+        int slot = hash(key) & mask;
+        for (; keys[slot] != FREE; slot = (slot + 1) & mask)
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) >> 1)
+            rehash(2 * (mask + 1));
+    }
+
+    /**
+     * If existent, removes key from the map. Otherwise, has no effect.
+     *
+     * @param key A non-negative key.
+     * @return <tt>true</tt> if, and only if, key was in the map.
+     * @throws RuntimeException if key is negative.
+     */
+    public boolean remove(int key) {
+        if (key < 0)
+            throw new RuntimeException("IntIntHashMap::remove(): Keys should be non-negative, was: " + key + ".");
+        int slot = hash(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == FREE)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        // Backward shift: move back every entry of the probe run that would no longer be reachable.
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) { // home is not in (free, next].
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * Queries the map about its size.
+     *
+     * @return The number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the keys of the map, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys, oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE)
+                continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != FREE)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /* The finalizer of MurmurHash3, so that consecutive node IDs do not fill consecutive slots. */
+    private static int hash(int key) {
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        return key ^ (key >>> 16);
+    }
+}
@@ -0,0 +1,524 @@
+package projects.graph.utils;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>{@link IntNeighborList} is a {@link NeighborList} that stores its (node, weight) pairs in two growable, parallel
+ * <tt>int</tt> arrays instead of a chain of list nodes and {@link Neighbor} objects. An edge therefore costs 8 bytes
+ * instead of the roughly 50 bytes of a list node, its {@link Neighbor} and their object headers, and scanning a list
+ * walks contiguous memory instead of following two references per edge.</p>
+ *
+ * <p>Since it is-a {@link NeighborList}, an {@link IntNeighborList} can be stored wherever a {@link NeighborList} can,
+ * including the array of {@link projects.graph.AdjacencyListGraph}. The elements are kept in a window
+ * [start, end) of the arrays, with free room at both sides, so that both {@link #addFront(int, int)} and
+ * {@link #addBack(int, int)} are amortized O(1).</p>
+ *
+ * <p>A list can optionally be created in <b>sorted</b> mode, where the pairs are kept in ascending order of node ID.
+ * In that mode, {@link #containsNeighbor(int)}, {@link #getWeight(int)} and {@link #setWeight(int, int)} are O(log n)
+ * binary searches, while {@link #addFront(int, int)} and {@link #addBack(int, int)} both insert the pair at its sorted
+ * position, which is O(n) in the worst case.</p>
+ *
+ * <p>Unsorted lists are <b>adaptive</b>: lookups are linear scans over the compact arrays while the list is short, but
+ * once its count reaches an index threshold ({@link #DEFAULT_INDEX_THRESHOLD} by default), the list also builds an
+ * {@link IntIntHashMap} from node ID to array position, which makes {@link #containsNeighbor(int)},
+ * {@link #getWeight(int)} and {@link #setWeight(int, int)} O(1) on high-degree nodes. The index is dropped again if
+ * removals bring the count below half the threshold. Sorted lists never build an index, since they already offer binary
+ * search.</p>
+ *
+ * <p>Without an index, {@link #remove(int)} shifts the elements that follow the removed one, to preserve their order.
+ * Shifting would also move every following element in the index, so an indexed list instead marks the removed slot as a
+ * <b>tombstone</b>, and only compacts its arrays and rebuilds its index once tombstones make up half of its window, which
+ * keeps removals amortized O(1) without reordering the list. Tombstones at either end of the window are simply cut off.
+ * Positional access, {@link #copyTo(int[], int[], int)} and {@link #iterator()} compact the arrays first, if needed.
+ * If a node ID occurs more than once, the list also chains its occurrences together, so that a removal moves the index
+ * entry of the node to its next occurrence in O(1) time, too.</p>
+ *
+ * <p>Node IDs must be non-negative, since they are the keys of the index.</p>
+ *
+ * <p>The iterator is fail-fast in the same way as the one of {@link NeighborList}: a call to {@link Iterator#next()}
+ * after an insertion or removal throws a {@link ConcurrentModificationException}, while {@link #setWeight(int, int)}
+ * does not count as a modification. The {@link Neighbor} instances returned by the iterator are views of the arrays,
+ * so that calling {@link Neighbor#setWeight(int)} on them updates the list, as it does for a {@link NeighborList}; since
+ * insertions and removals move the elements, such a call throws a {@link ConcurrentModificationException} if the list
+ * has been modified after the instance was returned.
+ * Code that does not need {@link Neighbor} instances at all can avoid allocating them by looping over the positions
+ * with {@link #getCount()}, {@link #getNodeAt(int)} and {@link #getWeightAt(int)}.</p>
+ *
+ * @author <a href="mailto:jason.filippou@gmail.com">Jason Filippou</a>
+ * @see NeighborList
+ * @see IntIntHashMap
+ * @see projects.graph.AdjacencyListGraph
+ */
+public class IntNeighborList extends NeighborList {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * The count at which unsorted lists build a hash index, unless they are created with a different threshold.
+     */
+    public static final int DEFAULT_INDEX_THRESHOLD = 32;
+
+    private int[] nodes, weights;
+    private int start, end; // The elements live in [start, end).
+    private final boolean sorted;
+    private int modCount; // Incremented by every insertion or removal, to make the iterator fail-fast.
+    private final int indexThreshold;
+    private IntIntHashMap index; // Node ID to the array position of its first occurrence, or null while the list is short.
+    /* While the list is indexed and some node ID occurs more than once, every occurrence of a node points to the next one,
+     * or -1, and the first occurrence points back to the last one, so that both ends of the chain are O(1) away.
+     * Both arrays are null otherwise. */
+    private int[] nextOccurrence, previousOccurrence;
+    private int tombstones; // The number of removed slots in [start, end). Only indexed lists leave any behind.
+
+    private static final int REMOVED = -1; // Node IDs are non-negative in indexed lists, so this marks a tombstone.
+
+    /**
+     * Simple constructor. Creates an unsorted list.
+     */
+    public IntNeighborList() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty list, which keeps its elements in ascending order of node ID if, and only if, sorted is true.
+     *
+     * @param sorted Whether the list should keep its elements sorted.
+     */
+    public IntNeighborList(boolean sorted) {
+        this(DEFAULT_CAPACITY, sorted);
+    }
+
+    /**
+     * Creates an empty list with room for capacity elements before it needs to grow.
+     *
+     * @param capacity The number of elements to pre-size the list for.
+     * @param sorted   Whether the list should keep its elements sorted.
+     * @throws RuntimeException if capacity &lt; 0.
+     */
+    public IntNeighborList(int capacity, boolean sorted) {
+        this(capacity, sorted, DEFAULT_INDEX_THRESHOLD);
+    }
+
+    /**
+     * Creates an empty list with room for capacity elements before it needs to grow, which builds a hash index once its
+     * count reaches indexThreshold. The threshold has no effect on sorted lists.
+     *
+     * @param capacity       The number of elements to pre-size the list for.
+     * @param sorted         Whether the list should keep its elements sorted.
+     * @param indexThreshold The count at which an unsorted list builds its hash index.
+     * @throws RuntimeException if capacity &lt; 0 or indexThreshold &lt; 1.
+     */
+    public IntNeighborList(int capacity, boolean sorted, int indexThreshold) {
+        if (indexThreshold < 1)
+            throw new RuntimeException("IntNeighborList::IntNeighborList(): Index threshold should be positive, was: " + indexThreshold + ".");
+        if (capacity < 0)
+            throw new RuntimeException("IntNeighborList::IntNeighborList(): Capacity should be non-negative, was: " + capacity + ".");
+        nodes = new int[Math.max(capacity, 1)];
+        weights = new int[nodes.length];
+        start = end = 0;
+        this.sorted = sorted;
+        modCount = 0;
+        this.indexThreshold = indexThreshold;
+        index = null;
+        tombstones = 0;
+    }
+
+    /**
+     * Non-default constructor which initializes the list as an unsorted single-element list.
+     *
+     * @param node   The ID of the neighbor node.
+     * @param weight The weight associated with the edge to the neighbor node.
+     */
+    public IntNeighborList(int node, int weight) {
+        this();
+        addBack(node, weight);
+    }
+
+    /**
+     * Queries the list about whether it keeps its elements sorted by node ID.
+     *
+     * @return <tt>true</tt> if, and only if, the list was created in sorted mode.
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Stores the (node, weight) pair at the back of the list, or at its sorted position if the list is sorted.
+     *
+     * @param node   The ID of the neighbor node.
+     * @param weight The weight associated with the edge to the neighbor node.
+     * @throws RuntimeException if node &lt; 0.
+     */
+    @Override
+    public void addBack(int node, int weight) {
+        checkNode("addBack", node);
+        if (sorted) {
+            insertAt(insertionPoint(node), node, weight);
+            return;
+        }
+        if (end == nodes.length)
+            grow();
+        nodes[end] = node;
+        weights[end++] = weight;
+        modCount++;
+        if (index != null) {
+            int first = index.get(node, -1);
+            if (first >= 0) { // The first occurrence keeps its place in the index; the new one ends its chain.
+                ensureOccurrences();
+                int last = previousOccurrence[first];
+                nextOccurrence[last] = end - 1;
+                nextOccurrence[end - 1] = -1;
+                previousOccurrence[end - 1] = last;
+                previousOccurrence[first] = end - 1;
+            } else {
+                index.put(node, end - 1);
+                if (nextOccurrence != null) {
+                    nextOccurrence[end - 1] = -1;
+                    previousOccurrence[end - 1] = end - 1;
+                }
+            }
+        } else if (end - start >= indexThreshold) {
+            buildIndex();
+        }
+    }
+
+    /**
+     * Stores the (node, weight) pair at the front of the list, or at its sorted position if the list is sorted.
+     *
+     * @param node   The ID of the neighbor node.
+     * @param weight The weight associated with the edge to the neighbor node.
+     * @throws RuntimeException if node &lt; 0.
+     */
+    @Override
+    public void addFront(int node, int weight) {
+        checkNode("addFront", node);
+        if (sorted) {
+            insertAt(insertionPoint(node), node, weight);
+            return;
+        }
+        if (start == 0)
+            grow();
+        nodes[--start] = node;
+        weights[start] = weight;
+        modCount++;
+        if (index != null) {
+            int first = index.get(node, -1);
+            if (first >= 0) { // The new element now starts the chain of node.
+                ensureOccurrences();
+                nextOccurrence[start] = first;
+                previousOccurrence[start] = previousOccurrence[first];
+                previousOccurrence[first] = start;
+            } else if (nextOccurrence != null) {
+                nextOccurrence[start] = -1;
+                previousOccurrence[start] = start;
+            }
+            index.put(node, start);
+        } else if (end - start >= indexThreshold)
+            buildIndex();
+    }
+
+    @Override
+    public boolean containsNeighbor(int node) {
+        return indexOf(node) >= 0;
+    }
+
+    @Override
+    public void remove(int node) {
+        int position = indexOf(node);
+        if (position >= 0) {
+            if (index != null) {
+                removeIndexed(node, position);
+            } else {
+                System.arraycopy(nodes, position + 1, nodes, position, end - position - 1);
+                System.arraycopy(weights, position + 1, weights, position, end - position - 1);
+                end--;
+            }
+        }
+        modCount++; // Like NeighborList, we count every call as a modification.
+    }
+
+    /* Leaves a tombstone at position, which holds the first occurrence of node, and moves the index entry of node to its
+     * next occurrence, if any. */
+    private void removeIndexed(int node, int position) {
+        nodes[position] = REMOVED;
+        tombstones++;
+        int next = nextOccurrence == null ? -1 : nextOccurrence[position];
+        if (next >= 0) {
+            previousOccurrence[next] = previousOccurrence[position];
+            index.put(node, next);
+        } else {
+            index.remove(node);
+        }
+        while (start < end && nodes[start] == REMOVED) {
+            start++;
+            tombstones--;
+        }
+        while (end > start && nodes[end - 1] == REMOVED) {
+            end--;
+            tombstones--;
+        }
+        if (end - start - tombstones < indexThreshold / 2) {
+            index = null;
+            nextOccurrence = previousOccurrence = null;
+            compact();
+        } else if (2 * tombstones >= end - start) {
+            compact();
+        }
+    }
+
+    @Override
+    public void setWeight(int node, int weight) {
+        int index = indexOf(node);
+        if (index >= 0)
+            weights[index] = weight;
+        // Like NeighborList, we do not count this as a modification.
+    }
+
+    @Override
+    public int getWeight(int node) {
+        int index = indexOf(node);
+        return index >= 0 ? weights[index] : 0;
+    }
+
+    @Override
+    public int getCount() {
+        return end - start - tombstones;
+    }
+
+    /**
+     * Returns the node ID stored at the provided position of the list.
+     *
+     * @param position A position in [0, {@link #getCount()}).
+     * @return The node ID stored at position.
+     * @throws IndexOutOfBoundsException if position is not in [0, {@link #getCount()}).
+     */
+    public int getNodeAt(int position) {
+        compact();
+        return nodes[checkPosition(position)];
+    }
+
+    /**
+     * Returns the weight stored at the provided position of the list.
+     *
+     * @param position A position in [0, {@link #getCount()}).
+     * @return The weight stored at position.
+     * @throws IndexOutOfBoundsException if position is not in [0, {@link #getCount()}).
+     */
+    public int getWeightAt(int position) {
+        compact();
+        return weights[checkPosition(position)];
+    }
+
+    /**
+     * Copies the node IDs and weights of the list, in list order, into the provided arrays, starting at offset.
+     *
+     * @param nodeIDs    The array to copy the node IDs into.
+     * @param weightsOut The array to copy the weights into.
+     * @param offset     The index of nodeIDs and weightsOut to start copying at.
+     */
+    public void copyTo(int[] nodeIDs, int[] weightsOut, int offset) {
+        compact();
+        System.arraycopy(nodes, start, nodeIDs, offset, end - start);
+        System.arraycopy(weights, start, weightsOut, offset, end - start);
+    }
+
+    @Override
+    public Iterator<Neighbor> iterator() {
+        compact();
+        return new IntNeighborListIterator();
+    }
+
+    private int checkPosition(int position) {
+        if (position < 0 || position >= end - start)
+            throw new IndexOutOfBoundsException("IntNeighborList::checkPosition(): Position " + position +
+                    " is out of bounds for a list of " + (end - start) + " elements.");
+        return start + position;
+    }
+
+    /**
+     * Queries the list about whether it currently maintains a hash index over its node IDs.
+     *
+     * @return <tt>true</tt> if, and only if, lookups in the list are currently hash lookups.
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /* Returns the array index of the first occurrence of node, or -1 if node is not in the list. */
+    private int indexOf(int node) {
+        if (index != null)
+            return index.get(node, -1);
+        if (sorted) {
+            int index = Arrays.binarySearch(nodes, start, end, node);
+            return index >= 0 ? index : -1;
+        }
+        for (int i = start; i < end; i++)
+            if (nodes[i] == node)
+                return i;
+        return -1;
+    }
+
+    /* Returns the array index at which node should be inserted to keep the list sorted. */
+    private int insertionPoint(int node) {
+        int index = Arrays.binarySearch(nodes, start, end, node);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void insertAt(int index, int node, int weight) {
+        if (end == nodes.length) {
+            int offset = start;
+            grow();
+            index += start - offset;
+        }
+        System.arraycopy(nodes, index, nodes, index + 1, end - index);
+        System.arraycopy(weights, index, weights, index + 1, end - index);
+        nodes[index] = node;
+        weights[index] = weight;
+        end++;
+        modCount++;
+    }
+
+    /* Doubles the capacity and centers the elements, leaving room at both sides. */
+    private void grow() {
+        compact();
+        int count = end - start, capacity = Math.max(2 * nodes.length, DEFAULT_CAPACITY);
+        int newStart = sorted ? 0 : (capacity - count) / 2; // Sorted lists only ever grow at the back.
+        int[] newNodes = new int[capacity], newWeights = new int[capacity];
+        System.arraycopy(nodes, start, newNodes, newStart, count);
+        System.arraycopy(weights, start, newWeights, newStart, count);
+        nodes = newNodes;
+        weights = newWeights;
+        start = newStart;
+        end = newStart + count;
+        if (index != null)
+            buildIndex();
+    }
+
+    /* Moves the elements over the tombstones, keeping their order, and rebuilds the index if there is one. */
+    private void compact() {
+        if (tombstones == 0)
+            return;
+        int count = start;
+        for (int i = start; i < end; i++) {
+            if (nodes[i] != REMOVED) {
+                nodes[count] = nodes[i];
+                weights[count++] = weights[i];
+            }
+        }
+        end = count;
+        tombstones = 0;
+        if (index != null)
+            buildIndex();
+    }
+
+    /* Indexes every element, visiting them from the back so that the first occurrence of a duplicate wins, and chains
+     * the occurrences of duplicates together. Expects the list to have no tombstones. */
+    private void buildIndex() {
+        index = new IntIntHashMap(end - start);
+        nextOccurrence = previousOccurrence = null;
+        for (int i = end - 1; i >= start; i--) {
+            int first = index.get(nodes[i], -1);
+            if (first >= 0) {
+                ensureOccurrences();
+                nextOccurrence[i] = first;
+                previousOccurrence[i] = previousOccurrence[first];
+                previousOccurrence[first] = i;
+            } else if (nextOccurrence != null) {
+                nextOccurrence[i] = -1;
+                previousOccurrence[i] = i;
+            }
+            index.put(nodes[i], i);
+        }
+    }
+
+    /* Allocates the occurrence chains once the first duplicate shows up, when every element is still the only
+     * occurrence of its node ID. */
+    private void ensureOccurrences() {
+        if (nextOccurrence != null)
+            return;
+        nextOccurrence = new int[nodes.length];
+        previousOccurrence = new int[nodes.length];
+        for (int i = start; i < end; i++) {
+            nextOccurrence[i] = -1;
+            previousOccurrence[i] = i;
+        }
+    }
+
+    private static void checkNode(String method, int node) {
+        if (node < 0)
+            throw new RuntimeException("IntNeighborList::" + method + "(): Node IDs should be non-negative, was: " + node + ".");
+    }
+
+    /* A Neighbor that reads from and writes through to a position of the arrays. Insertions and removals move the
+     * elements, so writes through an Entry that was created before one of them are rejected. */
+    private class Entry extends Neighbor {
+        private final int index;
+        private final int expectedModCount;
+
+        Entry(int index) {
+            super(nodes[index], weights[index]);
+            this.index = index;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void setWeight(int weight) {
+            checkForComodification("setWeight");
+            super.setWeight(weight);
+            weights[index] = weight;
+        }
+
+        @Override
+        public void setNode(int node) {
+            if (sorted)
+                throw new UnsupportedOperationException("IntNeighborList.Entry::setNode(): Cannot change the node ID " +
+                        "of an element of a sorted list.");
+            checkForComodification("setNode");
+            checkNode("setNode", node);
+            super.setNode(node);
+            nodes[index] = node;
+            if (IntNeighborList.this.index != null)
+                buildIndex();
+        }
+
+        private void checkForComodification(String method) {
+            if (modCount != expectedModCount) // The element may have moved since this Entry was created...
+                throw new ConcurrentModificationException("IntNeighborList.Entry::" + method + "(): The list was " +
+                        "modified after this element was returned.");
+        }
+    }
+
+    private class IntNeighborListIterator implements Iterator<Neighbor> {
+
+        private int current;
+        private final int expectedModCount;
+
+        IntNeighborListIterator() {
+            current = start;
+            expectedModCount = modCount; // All modifications until this iterator is constructed are not relevant.
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current < end;
+        }
+
+        @Override
+        public Neighbor next() {
+            if (modCount != expectedModCount) // Some other method modified the collection before we called next()...
+                throw new ConcurrentModificationException("IntNeighborListIterator::next(): Encountered a concurrent modification.");
+            if (current >= end)
+                throw new NoSuchElementException("IntNeighborListIterator::next(): No more elements.");
+            return new Entry(current++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("This Iterator does not implement remove().");
+        }
+    }
+}